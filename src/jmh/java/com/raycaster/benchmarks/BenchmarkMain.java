@@ -0,0 +1,37 @@
+package com.raycaster.benchmarks;
+
+/**
+ * Entry point of benchmarks.jar.
+ * 
+ * Same as org.openjdk.jmh.Main, but writes the results as JSON to
+ * jmh-result.json unless a result format or file is given, so runs can be
+ * compared between releases.
+ */
+public final class BenchmarkMain {
+
+	private BenchmarkMain() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		boolean hasResultOption = false;
+
+		for (String arg : args) {
+			if (arg.equals("-rf") || arg.equals("-rff")) {
+				hasResultOption = true;
+			}
+		}
+
+		String[] jmhArgs = args;
+
+		if (!hasResultOption) {
+			jmhArgs = new String[args.length + 4];
+			jmhArgs[0] = "-rf";
+			jmhArgs[1] = "json";
+			jmhArgs[2] = "-rff";
+			jmhArgs[3] = "jmh-result.json";
+			System.arraycopy(args, 0, jmhArgs, 4, args.length);
+		}
+
+		org.openjdk.jmh.Main.main(jmhArgs);
+	}
+}
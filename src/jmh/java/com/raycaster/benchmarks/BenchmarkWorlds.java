@@ -0,0 +1,177 @@
+package com.raycaster.benchmarks;
+
+import java.awt.Color;
+
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.Bitmap.PowerOf2IntBitmap;
+import com.raycaster.Entities.Player;
+import com.raycaster.Renderer.EpicRayRenderingAttributes;
+import com.raycaster.Tile.ITile;
+import com.raycaster.Tile.ITileMap;
+import com.raycaster.Tile.Tile;
+import com.raycaster.Tile.TileMap;
+import com.raycaster.Tile.World;
+import com.raycaster.utils.ResourceManager;
+
+/**
+ * Worlds and textures for the benchmarks, all generated in memory without
+ * any window or image file.
+ */
+final class BenchmarkWorlds {
+
+	private static boolean s_texturesRegistered = false;
+
+	private BenchmarkWorlds() {
+	}
+
+	/**
+	 * Registers three generated textures as bitmap 0, 1 and 2 of the
+	 * ResourceManager, which is what TileMap.autoGenerate() uses.
+	 */
+	static synchronized void registerTextures() {
+		if (s_texturesRegistered) {
+			return;
+		}
+
+		final ResourceManager rm = ResourceManager.getInstance();
+
+		rm.addBitmap(texture(256, 0x8b4513, 0xdeb887));
+		rm.addBitmap(texture(256, 0x404040, 0xa0a0a0));
+		rm.addBitmap(texture(256, 0x228b22, 0x006400));
+
+		s_texturesRegistered = true;
+	}
+
+	/**
+	 * A checker board with a gradient, so neighbouring texels differ.
+	 * 
+	 * @param size
+	 *            power of 2
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	static PowerOf2IntBitmap texture(final int size, final int a, final int b) {
+		final PowerOf2IntBitmap bmp = new PowerOf2IntBitmap(size, size);
+
+		for (int x = 0; x < size; ++x) {
+			for (int y = 0; y < size; ++y) {
+				final int base = (((x ^ y) & 16) != 0) ? a : b;
+				bmp.putPixel(x, y, base ^ ((x * 255 / size) << 8));
+			}
+		}
+
+		return bmp;
+	}
+
+	/**
+	 * A map filled by TileMap.autoGenerate(): border walls, pillars and
+	 * textured floor.
+	 * 
+	 * @param size
+	 * @return
+	 */
+	static World autoGenerated(final int size) {
+		registerTextures();
+
+		final TileMap map = new TileMap(size, size, true);
+		map.autoGenerate();
+
+		return new World(map);
+	}
+
+	/**
+	 * A map with walls only around the border and textured floor and ceiling
+	 * everywhere else, so rays travel far.
+	 * 
+	 * @param size
+	 * @return
+	 */
+	static World openFloor(final int size) {
+		registerTextures();
+
+		final ResourceManager rm = ResourceManager.getInstance();
+
+		return openFloor(size, rm.getBitmap(0), rm.getBitmap(2), rm.getBitmap(1));
+	}
+
+	/**
+	 * openFloor(size) with the given textures
+	 * 
+	 * @param size
+	 * @param wallTexture
+	 * @param floorTexture
+	 * @param ceilTexture
+	 * @return
+	 */
+	static World openFloor(final int size, final IntBitmap wallTexture, final IntBitmap floorTexture,
+			final IntBitmap ceilTexture) {
+		final EpicRayRenderingAttributes wallRa = new EpicRayRenderingAttributes();
+		wallRa.m_wallTexture = wallTexture;
+
+		final EpicRayRenderingAttributes floorRa = new EpicRayRenderingAttributes();
+		floorRa.m_floorTexture = floorTexture;
+		floorRa.m_ceilTexture = ceilTexture;
+
+		return openFloor(size, wallRa, floorRa);
+	}
+
+	/**
+	 * openFloor(size) with the textures of the given attributes
+	 * 
+	 * @param size
+	 * @param wallRa
+	 *            of the border walls, made textured and blue
+	 * @param floorRa
+	 *            of all other tiles, made textured
+	 * @return
+	 */
+	static World openFloor(final int size, final EpicRayRenderingAttributes wallRa,
+			final EpicRayRenderingAttributes floorRa) {
+		wallRa.m_wallColor = Color.blue.getRGB();
+		wallRa.m_textured = true;
+
+		floorRa.m_textured = true;
+
+		final ITile wall = new Tile("BenchWall", true, true, wallRa);
+		final ITile floor = new Tile("BenchFloor", false, false, floorRa);
+
+		final TileMap map = new TileMap(size, size, true);
+
+		for (int y = 0; y < size; ++y) {
+			for (int x = 0; x < size; ++x) {
+				final boolean border = x == 0 || y == 0 || x == size - 1 || y == size - 1;
+				map.setTileAt(x, y, border ? wall : floor);
+			}
+		}
+
+		return new World(map);
+	}
+
+	/**
+	 * A camera on the first free tile from the middle of the world on
+	 * 
+	 * @param world
+	 * @return
+	 */
+	static Player camera(final World world) {
+		final ITileMap map = world.getTileMap();
+
+		int x = map.getWidth() >> 1;
+		final int y = map.getHeight() >> 1;
+
+		while (map.getTileAt(x, y).isSolid()) {
+			++x;
+		}
+
+		return new Player(x, y, 1, 1, null, world);
+	}
+
+	static int width(final String resolution) {
+		return Integer.parseInt(resolution.substring(0, resolution.indexOf('x')));
+	}
+
+	static int height(final String resolution) {
+		return Integer.parseInt(resolution.substring(resolution.indexOf('x') + 1));
+	}
+}
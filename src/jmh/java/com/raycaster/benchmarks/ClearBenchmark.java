@@ -0,0 +1,57 @@
+package com.raycaster.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.Bitmap.FastFloatBitmap;
+import com.raycaster.Bitmap.FastIntBitmap;
+
+/**
+ * Clearing a frame and a z-buffer, done once per rendered frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ClearBenchmark {
+
+	@Param({ "640x480", "1920x1080" })
+	public String resolution;
+
+	private FastIntBitmap m_bitmap;
+	private FastFloatBitmap m_zBuffer;
+
+	@Setup
+	public void setup() {
+		final int w = BenchmarkWorlds.width(resolution);
+		final int h = BenchmarkWorlds.height(resolution);
+
+		m_bitmap = new FastIntBitmap(w, h);
+		m_zBuffer = new FastFloatBitmap(w, h);
+	}
+
+	@Benchmark
+	public FastIntBitmap clearInt() {
+		m_bitmap.clear(0x404040);
+		return m_bitmap;
+	}
+
+	@Benchmark
+	public FastFloatBitmap clearFloat() {
+		m_zBuffer.clear(Float.MAX_VALUE);
+		return m_zBuffer;
+	}
+}
@@ -0,0 +1,69 @@
+package com.raycaster.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.Entities.CollisionDetector;
+import com.raycaster.Entities.DynamicEntity;
+import com.raycaster.Tile.World;
+
+/**
+ * Finding the colliding pairs of many entities of the size of the player,
+ * detect() on a world whose entities move a little each tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CollisionBenchmark {
+
+	private static final int MAP_SIZE = 256;
+	private static final int ENTITY_SIZE = 10;
+
+	@Param({ "1000", "10000" })
+	public int entities;
+
+	private World m_world;
+	private CollisionDetector m_detector;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+
+		m_world = BenchmarkWorlds.openFloor(MAP_SIZE);
+		m_detector = new CollisionDetector();
+
+		for (int i = 0; i < entities; ++i) {
+			final DynamicEntity entity = new DynamicEntity(1 + random.nextInt(MAP_SIZE - 2),
+					1 + random.nextInt(MAP_SIZE - 2), ENTITY_SIZE, ENTITY_SIZE, null, m_world);
+
+			entity.setSpeed(3);
+			entity.setMovementDir(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1);
+		}
+	}
+
+	@Benchmark
+	public int detect() {
+		return m_detector.detect(m_world.getEntities());
+	}
+
+	@Benchmark
+	public World tick() {
+		m_world.onUpdate(1 / 150f);
+		return m_world;
+	}
+}
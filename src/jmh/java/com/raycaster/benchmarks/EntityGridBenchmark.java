@@ -0,0 +1,111 @@
+package com.raycaster.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.Entities.IEntity;
+import com.raycaster.Tile.EntityGrid;
+
+/**
+ * Neighbour queries of the EntityGrid against testing every entity, and
+ * moving all entities by a small step.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class EntityGridBenchmark {
+
+	private static final int MAP_SIZE = 256;
+	private static final float RADIUS = 4;
+
+	@Param({ "1000", "10000" })
+	public int entities;
+
+	private final EntityGrid m_grid = new EntityGrid();
+
+	private float m_x[];
+	private float m_y[];
+	private int m_slots[];
+
+	private final List<IEntity> m_found = new ArrayList<IEntity>();
+
+	private int m_query;
+	private float m_step = 0.01f;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+
+		// the grid does not care whether the entities are distinct
+		final IEntity entity = BenchmarkWorlds.camera(BenchmarkWorlds.openFloor(8));
+
+		m_x = new float[entities];
+		m_y = new float[entities];
+		m_slots = new int[entities];
+
+		for (int i = 0; i < entities; ++i) {
+			m_x[i] = random.nextFloat() * MAP_SIZE;
+			m_y[i] = random.nextFloat() * MAP_SIZE;
+			m_slots[i] = m_grid.add(entity, m_x[i], m_y[i]);
+		}
+	}
+
+	@Benchmark
+	public int queryRadius() {
+		final int i = m_query++ % entities;
+
+		m_found.clear();
+		return m_grid.queryRadius(m_x[i], m_y[i], RADIUS, m_found);
+	}
+
+	@Benchmark
+	public int queryAll() {
+		final int q = m_query++ % entities;
+		final float r2 = RADIUS * RADIUS;
+
+		int found = 0;
+		for (int i = 0; i < entities; ++i) {
+			final float dx = m_x[i] - m_x[q];
+			final float dy = m_y[i] - m_y[q];
+
+			if (dx * dx + dy * dy <= r2) {
+				++found;
+			}
+		}
+
+		return found;
+	}
+
+	@Benchmark
+	public int move() {
+		int crossed = 0;
+
+		m_step = -m_step;
+		for (int i = 0; i < entities; ++i) {
+			m_x[i] += m_step;
+
+			if (m_grid.move(m_slots[i], m_x[i], m_y[i])) {
+				++crossed;
+			}
+		}
+
+		return crossed;
+	}
+}
@@ -0,0 +1,80 @@
+package com.raycaster.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.ECS.EntityStore;
+import com.raycaster.Entities.DynamicEntity;
+import com.raycaster.Tile.World;
+
+/**
+ * One tick of many moving entities, entities in the EntityStore moved by
+ * the MovementSystem against DynamicEntity objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class EntityStoreBenchmark {
+
+	private static final int MAP_SIZE = 256;
+	private static final float TIME_DIFF = 1 / 150f;
+
+	@Param({ "10000", "100000" })
+	public int entities;
+
+	private World m_storeWorld;
+	private World m_objectWorld;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+
+		m_storeWorld = BenchmarkWorlds.openFloor(MAP_SIZE);
+		m_objectWorld = BenchmarkWorlds.openFloor(MAP_SIZE);
+
+		final EntityStore store = m_storeWorld.getEntityStore();
+
+		for (int i = 0; i < entities; ++i) {
+			final int x = 1 + random.nextInt(MAP_SIZE - 2);
+			final int y = 1 + random.nextInt(MAP_SIZE - 2);
+			final float vx = random.nextFloat() * 2 - 1;
+			final float vy = random.nextFloat() * 2 - 1;
+
+			final int index = store.indexOf(store.create(x, y, 1, 1));
+			store.m_vx[index] = vx;
+			store.m_vy[index] = vy;
+			store.m_speed[index] = 3;
+
+			final DynamicEntity entity = new DynamicEntity(x, y, 1, 1, null, m_objectWorld);
+			entity.setSpeed(3);
+			entity.setMovementDir(vx, vy);
+		}
+	}
+
+	@Benchmark
+	public World store() {
+		m_storeWorld.onUpdate(TIME_DIFF);
+		return m_storeWorld;
+	}
+
+	@Benchmark
+	public World objects() {
+		m_objectWorld.onUpdate(TIME_DIFF);
+		return m_objectWorld;
+	}
+}
@@ -0,0 +1,46 @@
+package com.raycaster.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.Bitmap.PowerOf2IntBitmap;
+import com.raycaster.utils.ResourceManager;
+
+/**
+ * Mip map generation of ResourceManager.createTexture() for one texture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MipMapBenchmark {
+
+	@Param({ "64", "256", "1024" })
+	public int size;
+
+	private PowerOf2IntBitmap m_base;
+
+	@Setup
+	public void setup() {
+		m_base = BenchmarkWorlds.texture(size, 0x8b4513, 0xdeb887);
+	}
+
+	@Benchmark
+	public IntBitmap createTexture() {
+		return ResourceManager.getInstance().createTexture(m_base);
+	}
+}
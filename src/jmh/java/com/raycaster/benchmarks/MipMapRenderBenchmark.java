@@ -0,0 +1,102 @@
+package com.raycaster.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.Bitmap.TextureAtlas;
+import com.raycaster.Renderer.CameraPose;
+import com.raycaster.Renderer.EpicRayRenderer;
+import com.raycaster.Renderer.EpicRayRenderingAttributes;
+import com.raycaster.Tile.World;
+import com.raycaster.utils.ResourceManager;
+
+/**
+ * A single threaded frame of a large open floor with high resolution
+ * textures, with and without mip maps. Most of the floor and ceiling is far
+ * away, so without mip maps nearly every texel fetch misses the cache.
+ * 
+ * textures: plain bitmaps, mip maps, or mip maps in a TextureAtlas
+ * referenced by id.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MipMapRenderBenchmark {
+
+	@Param({ "1280x720" })
+	public String resolution;
+
+	@Param({ "1024" })
+	public int textureSize;
+
+	@Param({ "plain", "mipmap", "atlas" })
+	public String textures;
+
+	private EpicRayRenderer m_renderer;
+
+	@Setup
+	public void setup() {
+		final IntBitmap wall = texture(0x8b4513, 0xdeb887);
+		final IntBitmap floor = texture(0x228b22, 0x006400);
+		final IntBitmap ceil = texture(0x404040, 0xa0a0a0);
+
+		final EpicRayRenderingAttributes wallRa = new EpicRayRenderingAttributes();
+		final EpicRayRenderingAttributes floorRa = new EpicRayRenderingAttributes();
+
+		TextureAtlas atlas = null;
+
+		if (textures.equals("atlas")) {
+			atlas = TextureAtlas.build(Arrays.asList(wall, floor, ceil));
+
+			wallRa.m_wallTextureId = 0;
+			floorRa.m_floorTextureId = 1;
+			floorRa.m_ceilTextureId = 2;
+		} else {
+			wallRa.m_wallTexture = wall;
+			floorRa.m_floorTexture = floor;
+			floorRa.m_ceilTexture = ceil;
+		}
+
+		final World world = BenchmarkWorlds.openFloor(256, wallRa, floorRa);
+
+		// looking along the floor towards the far wall
+		final CameraPose camera = new CameraPose(2.5f, 128.5f, 1, 0);
+
+		m_renderer = new EpicRayRenderer(world, camera,
+				BenchmarkWorlds.width(resolution), BenchmarkWorlds.height(resolution), 0, 0);
+		m_renderer.setTextureAtlas(atlas);
+	}
+
+	private IntBitmap texture(final int a, final int b) {
+		final IntBitmap texture = BenchmarkWorlds.texture(textureSize, a, b);
+
+		return textures.equals("plain") ? texture : ResourceManager.getInstance().createTexture(texture);
+	}
+
+	@TearDown
+	public void tearDown() {
+		m_renderer.close();
+	}
+
+	@Benchmark
+	public void render() {
+		m_renderer.render();
+	}
+}
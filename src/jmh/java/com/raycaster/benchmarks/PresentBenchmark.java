@@ -0,0 +1,99 @@
+package com.raycaster.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.Bitmap.FastIntBitmap;
+import com.raycaster.Renderer.EpicRayRenderer;
+import com.raycaster.Tile.World;
+
+/**
+ * Cost of getting a column major frame into a row major image raster, the
+ * copy done by Viewport3D.present() in PresentMode.TRANSPOSE.
+ * 
+ * legacyLoop is the per pixel loop Viewport3D used before the blocked
+ * transpose.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PresentBenchmark {
+
+	@Param({ "640x480", "1920x1080" })
+	public String resolution;
+
+	private int m_width;
+	private int m_height;
+
+	private EpicRayRenderer m_renderer;
+	private FastIntBitmap m_frame;
+	private int[] m_raster;
+
+	@Setup
+	public void setup() {
+		m_width = BenchmarkWorlds.width(resolution);
+		m_height = BenchmarkWorlds.height(resolution);
+
+		final World world = BenchmarkWorlds.autoGenerated(64);
+		m_renderer = new EpicRayRenderer(world, BenchmarkWorlds.camera(world), m_width, m_height);
+		m_renderer.render();
+
+		m_frame = (FastIntBitmap) m_renderer.getRenderResult();
+		m_raster = new int[m_width * m_height];
+	}
+
+	@TearDown
+	public void tearDown() {
+		m_renderer.close();
+	}
+
+	@Benchmark
+	public int[] legacyLoop() {
+		final int[] src = m_frame.m_pixels;
+		final int length = m_width * m_height;
+
+		int i2 = 0;
+		int x = 0;
+		int y = 0;
+
+		for (int i = 0; i < length; ++i) {
+			m_raster[i2] = src[i];
+
+			i2 += m_width;
+			++y;
+
+			if (y == m_height) {
+				i2 = ++x;
+				y = 0;
+			}
+		}
+		return m_raster;
+	}
+
+	@Benchmark
+	public int[] blockedTranspose() {
+		m_frame.copyColumnsTo(m_raster, 0, m_width);
+		return m_raster;
+	}
+
+	@Benchmark
+	public int[] blockedTransposeThreaded() {
+		m_renderer.copyToRowMajor(m_raster);
+		return m_raster;
+	}
+}
@@ -0,0 +1,81 @@
+package com.raycaster.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.Bitmap.FastFloatBitmap;
+import com.raycaster.Bitmap.FastIntBitmap;
+import com.raycaster.Renderer.EpicRayRay;
+import com.raycaster.Tile.ITileMap;
+
+/**
+ * A single EpicRayRay.cast() of a 1080 pixel column.
+ * 
+ * "wall" looks at a wall right in front of the camera, the column is mostly
+ * wall texture. "open" looks across a 512x512 open floor, the ray visits
+ * hundreds of tiles and draws floor and ceiling for each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RayCastBenchmark {
+
+	@Param({ "wall", "open" })
+	public String view;
+
+	private static final int HEIGHT = 1080;
+	private static final int MAP_SIZE = 512;
+
+	private ITileMap m_map;
+	private FastFloatBitmap m_zBuffer;
+	private EpicRayRay m_ray;
+
+	private float m_x;
+	private float m_y;
+	private float m_dirX;
+	private float m_dirY;
+
+	@Setup
+	public void setup() {
+		m_map = BenchmarkWorlds.openFloor(MAP_SIZE).getTileMap();
+
+		final FastIntBitmap column = new FastIntBitmap(1, HEIGHT);
+		m_zBuffer = new FastFloatBitmap(1, HEIGHT);
+
+		m_ray = new EpicRayRay(HEIGHT, column.getIntCursor(), m_zBuffer.getFloatCursor());
+
+		if (view.equals("wall")) {
+			m_x = 1.6f;
+			m_y = MAP_SIZE / 2 + 0.5f;
+			m_dirX = -1.0f;
+			m_dirY = 0.1f;
+		} else {
+			m_x = MAP_SIZE / 2 + 0.5f;
+			m_y = MAP_SIZE / 2 + 0.5f;
+			m_dirX = 0.8f;
+			m_dirY = 0.3f;
+		}
+	}
+
+	@Benchmark
+	public void cast() {
+		m_zBuffer.clear(Float.MAX_VALUE);
+
+		m_ray.reset(m_x, m_y, m_dirX, m_dirY);
+		m_ray.cast(m_map);
+	}
+}
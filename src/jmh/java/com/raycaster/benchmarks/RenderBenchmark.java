@@ -0,0 +1,57 @@
+package com.raycaster.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.Renderer.EpicRayRenderer;
+import com.raycaster.Tile.World;
+
+/**
+ * A whole frame of EpicRayRenderer.render() on the render threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+	@Param({ "640x480", "1280x720", "1920x1080" })
+	public String resolution;
+
+	@Param({ "64", "1024" })
+	public int mapSize;
+
+	private EpicRayRenderer m_renderer;
+
+	@Setup
+	public void setup() {
+		final World world = BenchmarkWorlds.autoGenerated(mapSize);
+
+		m_renderer = new EpicRayRenderer(world, BenchmarkWorlds.camera(world),
+				BenchmarkWorlds.width(resolution), BenchmarkWorlds.height(resolution));
+	}
+
+	@TearDown
+	public void tearDown() {
+		m_renderer.close();
+	}
+
+	@Benchmark
+	public void render() {
+		m_renderer.render();
+	}
+}
@@ -0,0 +1,73 @@
+package com.raycaster.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.ECS.StoredEntity;
+import com.raycaster.Entities.Sprite;
+import com.raycaster.Renderer.CameraPose;
+import com.raycaster.Renderer.EpicRayRenderer;
+import com.raycaster.Tile.World;
+
+/**
+ * A frame of EpicRayRenderer.render() with many entity sprites on an open
+ * floor, 0 sprites for the cost of the walls and floor alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SpriteBenchmark {
+
+	private static final int MAP_SIZE = 128;
+
+	@Param({ "640x480", "1280x720" })
+	public String resolution;
+
+	@Param({ "0", "1000", "5000" })
+	public int sprites;
+
+	private EpicRayRenderer m_renderer;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+		final World world = BenchmarkWorlds.openFloor(MAP_SIZE);
+		final Sprite sprite = new Sprite(0, 0, 32, 32, BenchmarkWorlds.texture(64, 0xff0000, 0xff00ff));
+
+		for (int i = 0; i < sprites; ++i) {
+			new StoredEntity(1.5f + random.nextFloat() * (MAP_SIZE - 3), 1.5f + random.nextFloat() * (MAP_SIZE - 3),
+					1, 1, sprite, world);
+		}
+
+		final float middle = MAP_SIZE * 0.5f;
+
+		m_renderer = new EpicRayRenderer(world, new CameraPose(middle, middle, 0.6f, 0.8f),
+				BenchmarkWorlds.width(resolution), BenchmarkWorlds.height(resolution));
+	}
+
+	@TearDown
+	public void tearDown() {
+		m_renderer.close();
+	}
+
+	@Benchmark
+	public void render() {
+		m_renderer.render();
+	}
+}
@@ -0,0 +1,107 @@
+package com.raycaster.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.utils.ResourceManager;
+
+/**
+ * Loading a texture pack at startup, one file after the other with
+ * loadBitmap() or all at once with loadBitmaps(). Single shot, every load
+ * adds the whole pack to the ResourceManager.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 8)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx2g" })
+public class TextureLoadBenchmark {
+
+	@Param({ "500" })
+	public int count;
+
+	@Param({ "64" })
+	public int size;
+
+	private File m_directory;
+	private final List<URL> m_files = new ArrayList<URL>();
+
+	@Setup
+	public void setup() throws IOException {
+		m_directory = new File(System.getProperty("java.io.tmpdir"), "epicray-textures-" + size);
+		m_directory.mkdirs();
+
+		for (int i = 0; i < count; ++i) {
+			final File file = new File(m_directory, i + ".png");
+
+			if (!file.exists()) {
+				ImageIO.write(image(size, i), "png", file);
+			}
+
+			m_files.add(file.toURI().toURL());
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (int i = 0; i < count; ++i) {
+			new File(m_directory, i + ".png").delete();
+		}
+
+		m_directory.delete();
+	}
+
+	/*
+	 * Some pattern, so the files do not compress to nothing
+	 */
+	private static BufferedImage image(int size, int seed) {
+		final BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_4BYTE_ABGR);
+
+		for (int x = 0; x < size; ++x) {
+			for (int y = 0; y < size; ++y) {
+				image.setRGB(x, y, 0xff000000 | ((x * 7 + seed) & 0xff) << 16 | ((y * 3) & 0xff) << 8 | ((x ^ y) & 0xff));
+			}
+		}
+
+		return image;
+	}
+
+	@Benchmark
+	public IntBitmap sequential() {
+		final ResourceManager rm = ResourceManager.getInstance();
+
+		IntBitmap last = null;
+		for (URL file : m_files) {
+			last = rm.loadBitmap(file);
+		}
+
+		return last;
+	}
+
+	@Benchmark
+	public List<IntBitmap> parallel() {
+		return ResourceManager.getInstance().loadBitmaps(m_files);
+	}
+}
@@ -0,0 +1,70 @@
+package com.raycaster.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.raycaster.Entities.DynamicEntity;
+import com.raycaster.Entities.IEntity;
+import com.raycaster.Tile.World;
+
+/**
+ * One tick of many moving entities, World.onUpdate() against calling
+ * onUpdate() of every entity one after the other.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class WorldTickBenchmark {
+
+	private static final int MAP_SIZE = 256;
+	private static final float TIME_DIFF = 1 / 150f;
+
+	@Param({ "1000", "10000" })
+	public int entities;
+
+	private World m_world;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42);
+
+		m_world = BenchmarkWorlds.openFloor(MAP_SIZE);
+
+		for (int i = 0; i < entities; ++i) {
+			final DynamicEntity entity = new DynamicEntity(1 + random.nextInt(MAP_SIZE - 2),
+					1 + random.nextInt(MAP_SIZE - 2), 1, 1, null, m_world);
+
+			entity.setSpeed(3);
+			entity.setMovementDir(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1);
+		}
+	}
+
+	@Benchmark
+	public World world() {
+		m_world.onUpdate(TIME_DIFF);
+		return m_world;
+	}
+
+	@Benchmark
+	public World sequential() {
+		for (IEntity entity : m_world.getEntities()) {
+			entity.onUpdate(TIME_DIFF);
+		}
+		return m_world;
+	}
+}
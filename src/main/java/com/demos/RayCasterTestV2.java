@@ -4,9 +4,11 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.io.File;
 import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.Application.App;
-import com.raycaster.Bitmap.IBitmap;
 import com.raycaster.Tile.TileMap;
 import com.raycaster.utils.Game;
 import com.raycaster.utils.ResourceManager;
@@ -21,29 +23,16 @@ public class RayCasterTestV2 extends App {
 		this.setDebug(true);
 		
 
-		IBitmap<Integer> bmp = null;
+		// indices 0, 1, 2 are used by TileMap.autoGenerate()
+		final List<URL> textures = new ArrayList<URL>();
 		try {
-			bmp = ResourceManager.getInstance().loadBitmap(new File("AppData/assets/CheepTexture.png").toURI().toURL());
+			textures.add(new File("AppData/assets/CheepTexture.png").toURI().toURL());
+			textures.add(new File("AppData/assets/CrappyHiresTexture.png").toURI().toURL());
+			textures.add(new File("AppData/assets/Grass.png").toURI().toURL());
 		} catch(MalformedURLException e) {
 			e.printStackTrace();
 		}
-		ResourceManager.getInstance().createTexture(bmp);
-
-		IBitmap<Integer> bmp1 = null;
-		try {
-			bmp1 = ResourceManager.getInstance().loadBitmap(new File("AppData/assets/CrappyHiresTexture.png").toURI().toURL());
-		} catch (MalformedURLException e) {
-			e.printStackTrace();
-		}
-		ResourceManager.getInstance().createTexture(bmp1);
-		
-		IBitmap<Integer> floorTex = null;
-		try {
-			floorTex = ResourceManager.getInstance().loadBitmap(new File("AppData/assets/Grass.png").toURI().toURL());
-		} catch (MalformedURLException e) {
-			e.printStackTrace();
-		}
-		ResourceManager.getInstance().createTexture(floorTex);
+		ResourceManager.getInstance().loadBitmaps(textures);
 
 		TileMap map = new TileMap(40, 40, true);
 		map.autoGenerate();
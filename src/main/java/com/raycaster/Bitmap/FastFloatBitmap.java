@@ -1,5 +1,7 @@
 package com.raycaster.Bitmap;
 
+import java.util.Arrays;
+
 import com.raycaster.utils.Tuple;
 
 /**
@@ -9,7 +11,7 @@ import com.raycaster.utils.Tuple;
  * 
  */
 
-public class FastFloatBitmap implements IBitmap<Float> {
+public class FastFloatBitmap implements FloatBitmap {
 
 	private final int m_width;
 	private final int m_height;
@@ -68,13 +70,50 @@ public class FastFloatBitmap implements IBitmap<Float> {
 
 	@Override
 	public void drawBitmap(IBitmap<Float> bitmap, int destX, int destY) {
-		// TODO: What the hell is this? Performance...
-		int maxX = Math.max(bitmap.getWidth() + destX, getWidth());
-		int maxY = Math.max(bitmap.getHeight() + destY, getHeight());
+		if (bitmap instanceof FloatBitmap) {
+			drawBitmap((FloatBitmap) bitmap, destX, destY);
+			return;
+		}
+
+		final int srcX = Math.max(0, -destX);
+		final int srcY = Math.max(0, -destY);
+		final int endX = Math.min(bitmap.getWidth(), m_width - destX);
+		final int endY = Math.min(bitmap.getHeight(), m_height - destY);
+
+		for (int x = srcX; x < endX; x++) {
+			for (int y = srcY; y < endY; y++) {
+				putPixel(x + destX, y + destY, bitmap.getPixel(x, y).floatValue());
+			}
+		}
+	}
+
+	@Override
+	public void drawBitmap(final FloatBitmap bitmap, final int destX, final int destY) {
+		// clip source rectangle to this bitmap
+		final int srcX = Math.max(0, -destX);
+		final int srcY = Math.max(0, -destY);
+		final int endX = Math.min(bitmap.getWidth(), m_width - destX);
+		final int endY = Math.min(bitmap.getHeight(), m_height - destY);
 
-		for (int x = 0; x < maxX; x++) {
-			for (int y = 0; y < maxY; y++) {
-				putPixel(x + destX, y + destY, bitmap.getPixel(x, y));
+		if (srcX >= endX || srcY >= endY) {
+			return;
+		}
+
+		if (bitmap instanceof FastFloatBitmap) {
+			// both vertical first: copy column by column
+			final FastFloatBitmap src = (FastFloatBitmap) bitmap;
+			final int length = endY - srcY;
+
+			for (int x = srcX; x < endX; ++x) {
+				System.arraycopy(src.m_pixels, src.pointToIndex(x, srcY),
+						m_pixels, pointToIndex(x + destX, srcY + destY), length);
+			}
+			return;
+		}
+
+		for (int x = srcX; x < endX; ++x) {
+			for (int y = srcY; y < endY; ++y) {
+				m_pixels[pointToIndex(x + destX, y + destY)] = bitmap.getNative(x, y);
 			}
 		}
 	}
@@ -89,6 +128,16 @@ public class FastFloatBitmap implements IBitmap<Float> {
 		return Float.valueOf(m_pixels[index]);
 	}
 
+	@Override
+	public final float getNative(final int x, final int y) {
+		return m_pixels[pointToIndex(x, y)];
+	}
+
+	@Override
+	public final float getNative(final int index) {
+		return m_pixels[index];
+	}
+
 	@Override
 	public final void putPixel(int x, int y, Float color) {
 		m_pixels[pointToIndex(x, y)] = color;
@@ -99,13 +148,24 @@ public class FastFloatBitmap implements IBitmap<Float> {
 		m_pixels[index] = color;
 	}
 
+	@Override
+	public final void putPixel(final int x, final int y, final float value) {
+		m_pixels[pointToIndex(x, y)] = value;
+	}
+
+	@Override
+	public final void putPixel(final int index, final float value) {
+		m_pixels[index] = value;
+	}
+
 	@Override
 	public final void clear(final Float col) {
-		final float c = col; // no conversion every time.
+		clear(col.floatValue()); // no conversion every time.
+	}
 
-		for (int i = 0; i < m_length; ++i) {
-			m_pixels[i] = c;
-		}
+	@Override
+	public final void clear(final float c) {
+		Arrays.fill(m_pixels, 0, m_length, c);
 	}
 
 	@Override
@@ -113,6 +173,11 @@ public class FastFloatBitmap implements IBitmap<Float> {
 		return new FastFloatBitmapCursor(this);
 	}
 
+	@Override
+	public final FloatCursor getFloatCursor() {
+		return new FastFloatBitmapCursor(this);
+	}
+
 	@Override
 	public final int getLength() {
 		return m_length;
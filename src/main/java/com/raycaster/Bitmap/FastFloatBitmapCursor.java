@@ -1,6 +1,6 @@
 package com.raycaster.Bitmap;
 
-public class FastFloatBitmapCursor extends BitmapCursor<Float> {
+public class FastFloatBitmapCursor extends BitmapCursor<Float> implements FloatCursor {
 	protected FastFloatBitmap m_bitmap;
 
 	public FastFloatBitmapCursor(FastFloatBitmap bmp) {
@@ -31,7 +31,8 @@ public class FastFloatBitmapCursor extends BitmapCursor<Float> {
 		return m_bitmap.m_pixels[m_posIndex];
 	}
 	
-	public float getNative() {
+	@Override
+	public final float getNative() {
 		return m_bitmap.m_pixels[m_posIndex];
 	}
 
@@ -40,7 +41,8 @@ public class FastFloatBitmapCursor extends BitmapCursor<Float> {
 		m_bitmap.m_pixels[m_posIndex] = value;
 	}
 
-	public void set(float value) {
+	@Override
+	public final void set(float value) {
 		m_bitmap.m_pixels[m_posIndex] = value;
 	}
 
@@ -55,7 +57,7 @@ public class FastFloatBitmapCursor extends BitmapCursor<Float> {
 	}
 
 	@Override
-	public ICursor1D<Float> copy() {
+	public FastFloatBitmapCursor copy() {
 		return new FastFloatBitmapCursor(m_bitmap, m_posIndex, m_offset);
 	}
 
@@ -64,9 +66,19 @@ public class FastFloatBitmapCursor extends BitmapCursor<Float> {
 		return m_bitmap.m_pixels[++m_posIndex];
 	}
 
+	@Override
+	public final float nextNative() {
+		return m_bitmap.m_pixels[++m_posIndex];
+	}
+
 	@Override
 	public Float prev() {
 		return m_bitmap.m_pixels[--m_posIndex];
 	}
 
+	@Override
+	public final float prevNative() {
+		return m_bitmap.m_pixels[--m_posIndex];
+	}
+
 }
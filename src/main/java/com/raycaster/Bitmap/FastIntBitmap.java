@@ -1,4 +1,6 @@
 package com.raycaster.Bitmap;
+import java.util.Arrays;
+
 import com.raycaster.utils.Tuple;
 
 /**
@@ -8,7 +10,7 @@ import com.raycaster.utils.Tuple;
  * 
  */
 
-public class FastIntBitmap extends AbstractBitmap<Integer> {
+public class FastIntBitmap extends AbstractBitmap<Integer> implements IntBitmap {
 
 	private final int m_width;
 	private final int m_height;
@@ -57,6 +59,16 @@ public class FastIntBitmap extends AbstractBitmap<Integer> {
 		return Integer.valueOf(m_pixels[index]);
 	}
 
+	@Override
+	public int getNative(final int x, final int y) {
+		return m_pixels[pointToIndex(x, y)];
+	}
+
+	@Override
+	public final int getNative(final int index) {
+		return m_pixels[index];
+	}
+
 	@Override
 	public void putPixel(final int x, final int y, final Integer color) {
 		m_pixels[pointToIndex(x, y)] = color;
@@ -67,20 +79,114 @@ public class FastIntBitmap extends AbstractBitmap<Integer> {
 		m_pixels[index] = color;
 	}
 
+	@Override
+	public void putPixel(final int x, final int y, final int color) {
+		m_pixels[pointToIndex(x, y)] = color;
+	}
+
+	@Override
+	public final void putPixel(final int index, final int color) {
+		m_pixels[index] = color;
+	}
+
 	@Override
 	public void clear(final Integer col) {
-		final int c = col; // no conversion every time.
+		clear(col.intValue()); // no conversion every time.
+	}
+
+	@Override
+	public final void clear(final int col) {
+		Arrays.fill(m_pixels, 0, m_length, col);
+	}
 
-		for (int i = 0; i < m_length; ++i) {
-			m_pixels[i] = c;
+	@Override
+	public void drawBitmap(final IBitmap<Integer> bitmap, final int destX, final int destY) {
+		if (bitmap instanceof IntBitmap) {
+			drawBitmap((IntBitmap) bitmap, destX, destY);
+		} else {
+			super.drawBitmap(bitmap, destX, destY);
 		}
 	}
 
+	@Override
+	public void drawBitmap(final IntBitmap bitmap, final int destX, final int destY) {
+		// clip source rectangle to this bitmap
+		final int srcX = Math.max(0, -destX);
+		final int srcY = Math.max(0, -destY);
+		final int endX = Math.min(bitmap.getWidth(), m_width - destX);
+		final int endY = Math.min(bitmap.getHeight(), m_height - destY);
+
+		if (srcX >= endX || srcY >= endY) {
+			return;
+		}
+
+		if (bitmap instanceof FastIntBitmap) {
+			// both vertical first: copy column by column
+			final FastIntBitmap src = (FastIntBitmap) bitmap;
+			final int length = endY - srcY;
+
+			for (int x = srcX; x < endX; ++x) {
+				System.arraycopy(src.m_pixels, src.pointToIndex(x, srcY),
+						m_pixels, pointToIndex(x + destX, srcY + destY), length);
+			}
+			return;
+		}
+
+		for (int x = srcX; x < endX; ++x) {
+			for (int y = srcY; y < endY; ++y) {
+				putPixel(x + destX, y + destY, bitmap.getNative(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Copy the columns startX (inclusive) to endX (exclusive) into a horizontal
+	 * first array of the same size, like the raster of a BufferedImage.
+	 * 
+	 * The transpose is done in square blocks, so reads and writes both stay
+	 * within a few cache lines instead of striding across the whole image for
+	 * every pixel.
+	 * 
+	 * @param dest
+	 * @param startX
+	 * @param endX
+	 */
+	public final void copyColumnsTo(final int[] dest, final int startX, final int endX) {
+		final int[] src = m_pixels;
+		final int width = m_width;
+		final int height = m_height;
+
+		for (int bx = startX; bx < endX; bx += TRANSPOSE_BLOCK) {
+			final int ex = Math.min(bx + TRANSPOSE_BLOCK, endX);
+
+			for (int by = 0; by < height; by += TRANSPOSE_BLOCK) {
+				final int ey = Math.min(by + TRANSPOSE_BLOCK, height);
+
+				for (int y = by; y < ey; ++y) {
+					int d = y * width + bx;
+					int s = bx * height + y;
+
+					for (int x = bx; x < ex; ++x, ++d, s += height) {
+						dest[d] = src[s];
+					}
+				}
+			}
+		}
+	}
+
+	// block edge in pixels for copyColumnsTo, 32*32 ints = 4kB per block
+	private static final int TRANSPOSE_BLOCK = 32;
+
 	@Override
 	public BitmapCursor<Integer> getCursor() {
 		return new FastIntBitmapCursor(this);
 	}
 
+	@Override
+	public IntCursor getIntCursor() {
+		return new FastIntBitmapCursor(this);
+	}
+
 	@Override
 	public final int getLength() {
 		return m_length;
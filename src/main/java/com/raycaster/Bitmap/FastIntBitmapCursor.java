@@ -1,6 +1,6 @@
 package com.raycaster.Bitmap;
 
-public class FastIntBitmapCursor extends BitmapCursor<Integer> {
+public class FastIntBitmapCursor extends BitmapCursor<Integer> implements IntCursor {
 	protected FastIntBitmap m_bitmap;
 
 	public FastIntBitmapCursor(FastIntBitmap bmp) {
@@ -31,6 +31,7 @@ public class FastIntBitmapCursor extends BitmapCursor<Integer> {
 		return m_bitmap.m_pixels[m_posIndex];
 	}
 	
+	@Override
 	public final int getNative() {
 		return m_bitmap.m_pixels[m_posIndex];
 	}
@@ -40,6 +41,7 @@ public class FastIntBitmapCursor extends BitmapCursor<Integer> {
 		m_bitmap.m_pixels[m_posIndex] = value;
 	}
 
+	@Override
 	public final void set(int value) {
 		m_bitmap.m_pixels[m_posIndex] = value;
 	}
@@ -49,6 +51,11 @@ public class FastIntBitmapCursor extends BitmapCursor<Integer> {
 		return m_bitmap.m_pixels[++m_posIndex];
 	}
 
+	@Override
+	public final int nextNative() {
+		return m_bitmap.m_pixels[++m_posIndex];
+	}
+
 	@Override
 	public final void nextX() {
 		m_posIndex += m_bitmap.getHeight();
@@ -60,7 +67,7 @@ public class FastIntBitmapCursor extends BitmapCursor<Integer> {
 	}
 
 	@Override
-	public final ICursor1D<Integer> copy() {
+	public final FastIntBitmapCursor copy() {
 		return new FastIntBitmapCursor(m_bitmap, m_posIndex, m_offset);
 	}
 
@@ -68,4 +75,9 @@ public class FastIntBitmapCursor extends BitmapCursor<Integer> {
 	public final Integer prev() {
 		return m_bitmap.m_pixels[--m_posIndex];
 	}
+
+	@Override
+	public final int prevNative() {
+		return m_bitmap.m_pixels[--m_posIndex];
+	}
 }
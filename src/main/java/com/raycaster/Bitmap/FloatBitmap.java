@@ -0,0 +1,69 @@
+package com.raycaster.Bitmap;
+
+/**
+ * A Bitmap of float values, which can be accessed without boxing every pixel
+ * into a Float.
+ * 
+ * Use these methods on per pixel paths instead of the generic ones from
+ * IBitmap.
+ */
+public interface FloatBitmap extends IBitmap<Float> {
+
+	/**
+	 * Get value of pixel at position x, y
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public float getNative(int x, int y);
+
+	/**
+	 * Get value of pixel at index
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public float getNative(int index);
+
+	/**
+	 * Set pixel at position x, y to value
+	 * 
+	 * @param x
+	 * @param y
+	 * @param value
+	 */
+	public void putPixel(int x, int y, float value);
+
+	/**
+	 * Set pixel at index to value
+	 * 
+	 * @param index
+	 * @param value
+	 */
+	public void putPixel(int index, float value);
+
+	/**
+	 * Fills the hole bitmap with specific value
+	 * 
+	 * @param value
+	 */
+	public void clear(float value);
+
+	/**
+	 * Draw an other Bitmap on this Bitmap, clipped to the bounds of this
+	 * Bitmap
+	 * 
+	 * @param bitmap
+	 * @param destX
+	 * @param destY
+	 */
+	public void drawBitmap(FloatBitmap bitmap, int destX, int destY);
+
+	/**
+	 * Get a cursor on this bitmap
+	 * 
+	 * @return
+	 */
+	public FloatCursor getFloatCursor();
+}
@@ -0,0 +1,34 @@
+package com.raycaster.Bitmap;
+
+/**
+ * A cursor on a FloatBitmap which reads and writes floats without boxing.
+ */
+public interface FloatCursor extends ICursor2D<Float> {
+
+	/**
+	 * Value at the cursors position.
+	 * 
+	 * @return
+	 */
+	public float getNative();
+
+	/**
+	 * Set the value at the cursors position
+	 * 
+	 * @param value
+	 */
+	public void set(float value);
+
+	/**
+	 * Move the cursor to the next position and getNative()
+	 */
+	public float nextNative();
+
+	/**
+	 * bck() and getNative()
+	 */
+	public float prevNative();
+
+	@Override
+	public FloatCursor copy();
+}
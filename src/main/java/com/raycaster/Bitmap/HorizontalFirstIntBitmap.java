@@ -0,0 +1,162 @@
+package com.raycaster.Bitmap;
+
+import java.util.Arrays;
+
+import com.raycaster.utils.Tuple;
+
+/**
+ * A Horizontal First int Bitmap, laid out like the raster of a
+ * BufferedImage.TYPE_INT_RGB. It can wrap an existing pixel array, so
+ * renderers can draw straight into an image without copying.
+ */
+
+public class HorizontalFirstIntBitmap extends AbstractBitmap<Integer> implements IntBitmap {
+
+	private final int m_width;
+	private final int m_height;
+	private final int m_length;
+
+	public final int m_pixels[];
+
+	public HorizontalFirstIntBitmap(final int width, final int height) {
+		this(width, height, new int[width * height]);
+	}
+
+	/**
+	 * @param width
+	 * @param height
+	 * @param pixels
+	 *            pixel storage, at least width*height long, row by row
+	 */
+	public HorizontalFirstIntBitmap(final int width, final int height, final int[] pixels) {
+		if (pixels.length < width * height) {
+			throw new IllegalArgumentException("pixel array too small for " + width + "x" + height);
+		}
+
+		m_width = width;
+		m_height = height;
+		m_length = m_width * m_height;
+
+		m_pixels = pixels;
+	}
+
+	@Override
+	public final int pointToIndex(final int x, final int y) {
+		return (y * m_width + x);
+	}
+
+	@Override
+	public final Tuple<Integer, Integer> indexToPoint(final int index) {
+		int x = index % m_width;
+		int y = (index - x) / m_width;
+
+		return new Tuple<Integer, Integer>(x, y);
+	}
+
+	@Override
+	public final int getWidth() {
+		return m_width;
+	}
+
+	@Override
+	public final int getHeight() {
+		return m_height;
+	}
+
+	@Override
+	public final Integer getPixel(final int x, final int y) {
+		return m_pixels[pointToIndex(x, y)];
+	}
+
+	@Override
+	public final Integer getPixel(final int index) {
+		return Integer.valueOf(m_pixels[index]);
+	}
+
+	@Override
+	public final int getNative(final int x, final int y) {
+		return m_pixels[pointToIndex(x, y)];
+	}
+
+	@Override
+	public final int getNative(final int index) {
+		return m_pixels[index];
+	}
+
+	@Override
+	public final void putPixel(final int x, final int y, final Integer color) {
+		m_pixels[pointToIndex(x, y)] = color;
+	}
+
+	@Override
+	public final void putPixel(final int index, final Integer color) {
+		m_pixels[index] = color;
+	}
+
+	@Override
+	public final void putPixel(final int x, final int y, final int color) {
+		m_pixels[pointToIndex(x, y)] = color;
+	}
+
+	@Override
+	public final void putPixel(final int index, final int color) {
+		m_pixels[index] = color;
+	}
+
+	@Override
+	public final void clear(final Integer col) {
+		clear(col.intValue());
+	}
+
+	@Override
+	public final void clear(final int col) {
+		Arrays.fill(m_pixels, 0, m_length, col);
+	}
+
+	@Override
+	public final void drawBitmap(final IBitmap<Integer> bitmap, final int destX, final int destY) {
+		if (bitmap instanceof IntBitmap) {
+			drawBitmap((IntBitmap) bitmap, destX, destY);
+		} else {
+			super.drawBitmap(bitmap, destX, destY);
+		}
+	}
+
+	@Override
+	public final void drawBitmap(final IntBitmap bitmap, final int destX, final int destY) {
+		// clip source rectangle to this bitmap
+		final int srcX = Math.max(0, -destX);
+		final int srcY = Math.max(0, -destY);
+		final int endX = Math.min(bitmap.getWidth(), m_width - destX);
+		final int endY = Math.min(bitmap.getHeight(), m_height - destY);
+
+		for (int y = srcY; y < endY; ++y) {
+			for (int x = srcX; x < endX; ++x) {
+				m_pixels[pointToIndex(x + destX, y + destY)] = bitmap.getNative(x, y);
+			}
+		}
+	}
+
+	/**
+	 * Returns a cursor which walks down the columns, see IntColumnCursor
+	 */
+	@Override
+	public final IntColumnCursor getIntCursor() {
+		return new IntColumnCursor(this);
+	}
+
+	@Override
+	public final BitmapCursor<Integer> getCursor() {
+		return new IntColumnCursor(this);
+	}
+
+	@Override
+	public final int getLength() {
+		return m_length;
+	}
+
+	@Override
+	public final IBitmap<Integer> loadFromFile(String filename) {
+		return null;
+	}
+}
@@ -0,0 +1,69 @@
+package com.raycaster.Bitmap;
+
+/**
+ * A Bitmap of int colors, which can be accessed without boxing every pixel
+ * into an Integer.
+ * 
+ * Use these methods on per pixel paths instead of the generic ones from
+ * IBitmap.
+ */
+public interface IntBitmap extends IBitmap<Integer> {
+
+	/**
+	 * Get Color of pixel at position x, y
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int getNative(int x, int y);
+
+	/**
+	 * Get Color of pixel at index
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public int getNative(int index);
+
+	/**
+	 * Set pixel at position x, y to color
+	 * 
+	 * @param x
+	 * @param y
+	 * @param color
+	 */
+	public void putPixel(int x, int y, int color);
+
+	/**
+	 * Set pixel at index to color
+	 * 
+	 * @param index
+	 * @param color
+	 */
+	public void putPixel(int index, int color);
+
+	/**
+	 * Fills the hole bitmap with specific color
+	 * 
+	 * @param col
+	 */
+	public void clear(int col);
+
+	/**
+	 * Draw an other Bitmap on this Bitmap, clipped to the bounds of this
+	 * Bitmap
+	 * 
+	 * @param bitmap
+	 * @param destX
+	 * @param destY
+	 */
+	public void drawBitmap(IntBitmap bitmap, int destX, int destY);
+
+	/**
+	 * Get a cursor on this bitmap
+	 * 
+	 * @return
+	 */
+	public IntCursor getIntCursor();
+}
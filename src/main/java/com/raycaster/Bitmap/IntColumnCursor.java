@@ -0,0 +1,124 @@
+package com.raycaster.Bitmap;
+
+import com.raycaster.utils.Tuple;
+
+/**
+ * A cursor on a HorizontalFirstIntBitmap which moves along a column: fwd()
+ * and bck() step a whole row, and positions relative to the offset are rows.
+ * 
+ * This gives it the same one dimensional behaviour as a FastIntBitmapCursor
+ * on a vertical first bitmap, so column renderers can use either.
+ */
+public class IntColumnCursor extends BitmapCursor<Integer> implements IntCursor {
+	protected final HorizontalFirstIntBitmap m_bitmap;
+	protected final int[] m_pixels;
+	protected final int m_stride;
+
+	public IntColumnCursor(final HorizontalFirstIntBitmap bmp) {
+		super(bmp);
+		m_bitmap = bmp;
+		m_pixels = bmp.m_pixels;
+		m_stride = bmp.getWidth();
+	}
+
+	public IntColumnCursor(final HorizontalFirstIntBitmap bmp, final int index, final int offset) {
+		super(bmp, index, offset);
+		m_bitmap = bmp;
+		m_pixels = bmp.m_pixels;
+		m_stride = bmp.getWidth();
+	}
+
+	@Override
+	public final Integer get() {
+		return m_pixels[m_posIndex];
+	}
+
+	@Override
+	public final int getNative() {
+		return m_pixels[m_posIndex];
+	}
+
+	@Override
+	public final void set(final Integer value) {
+		m_pixels[m_posIndex] = value;
+	}
+
+	@Override
+	public final void set(final int value) {
+		m_pixels[m_posIndex] = value;
+	}
+
+	@Override
+	public final void setPosition(final int index) {
+		m_posIndex = index * m_stride + m_offset;
+	}
+
+	@Override
+	public final int getRelativePosition() {
+		return (m_posIndex - m_offset) / m_stride;
+	}
+
+	@Override
+	public final void fwd() {
+		m_posIndex += m_stride;
+	}
+
+	@Override
+	public final void fwd(final int n) {
+		m_posIndex += n * m_stride;
+	}
+
+	@Override
+	public final void bck() {
+		m_posIndex -= m_stride;
+	}
+
+	@Override
+	public final void bck(final int n) {
+		m_posIndex -= n * m_stride;
+	}
+
+	@Override
+	public final Integer next() {
+		m_posIndex += m_stride;
+		return m_pixels[m_posIndex];
+	}
+
+	@Override
+	public final int nextNative() {
+		m_posIndex += m_stride;
+		return m_pixels[m_posIndex];
+	}
+
+	@Override
+	public final Integer prev() {
+		m_posIndex -= m_stride;
+		return m_pixels[m_posIndex];
+	}
+
+	@Override
+	public final int prevNative() {
+		m_posIndex -= m_stride;
+		return m_pixels[m_posIndex];
+	}
+
+	@Override
+	public final void nextX() {
+		++m_posIndex;
+	}
+
+	@Override
+	public final void nextY() {
+		m_posIndex += m_stride;
+	}
+
+	@Override
+	public final Tuple<Integer, Integer> getPositionXY() {
+		return m_bitmap.indexToPoint(m_posIndex);
+	}
+
+	@Override
+	public final IntColumnCursor copy() {
+		return new IntColumnCursor(m_bitmap, m_posIndex, m_offset);
+	}
+}
@@ -0,0 +1,34 @@
+package com.raycaster.Bitmap;
+
+/**
+ * A cursor on an IntBitmap which reads and writes ints without boxing.
+ */
+public interface IntCursor extends ICursor2D<Integer> {
+
+	/**
+	 * Value at the cursors position.
+	 * 
+	 * @return
+	 */
+	public int getNative();
+
+	/**
+	 * Set the value at the cursors position
+	 * 
+	 * @param value
+	 */
+	public void set(int value);
+
+	/**
+	 * Move the cursor to the next position and getNative()
+	 */
+	public int nextNative();
+
+	/**
+	 * bck() and getNative()
+	 */
+	public int prevNative();
+
+	@Override
+	public IntCursor copy();
+}
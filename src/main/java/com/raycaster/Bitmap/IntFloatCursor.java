@@ -0,0 +1,79 @@
+package com.raycaster.Bitmap;
+
+/**
+ * Moves an IntCursor and a FloatCursor together, for example a color buffer
+ * and its z-buffer.
+ *
+ * Unlike CombinedCursor, values are read and written as primitives and no
+ * Tuple is created.
+ */
+public final class IntFloatCursor {
+
+	private final IntCursor m_cursor1;
+	private final FloatCursor m_cursor2;
+
+	public IntFloatCursor(final IntCursor c1, final FloatCursor c2) {
+		m_cursor1 = c1;
+		m_cursor2 = c2;
+	}
+
+	public final int getInt() {
+		return m_cursor1.getNative();
+	}
+
+	public final float getFloat() {
+		return m_cursor2.getNative();
+	}
+
+	public final void set(final int a, final float b) {
+		m_cursor1.set(a);
+		m_cursor2.set(b);
+	}
+
+	public final void setPosition(final int index) {
+		m_cursor1.setPosition(index);
+		m_cursor2.setPosition(index);
+	}
+
+	public final void setAbsolutePosition(final int index) {
+		m_cursor1.setAbsolutePosition(index);
+		m_cursor2.setAbsolutePosition(index);
+	}
+
+	public final void fwd() {
+		m_cursor1.fwd();
+		m_cursor2.fwd();
+	}
+
+	public final void fwd(final int n) {
+		m_cursor1.fwd(n);
+		m_cursor2.fwd(n);
+	}
+
+	public final void bck() {
+		m_cursor1.bck();
+		m_cursor2.bck();
+	}
+
+	public final void bck(final int n) {
+		m_cursor1.bck(n);
+		m_cursor2.bck(n);
+	}
+
+	public final void reset() {
+		m_cursor1.reset();
+		m_cursor2.reset();
+	}
+
+	public final IntFloatCursor copy() {
+		return new IntFloatCursor(m_cursor1.copy(), m_cursor2.copy());
+	}
+
+	public final IntCursor getCursor1() {
+		return m_cursor1;
+	}
+
+	public final FloatCursor getCursor2() {
+		return m_cursor2;
+	}
+}
@@ -0,0 +1,197 @@
+package com.raycaster.Bitmap;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MipMapBuilder
+ *
+ * Builds mip map pyramids down to 1x1. Every level is filtered from the one
+ * before with a 2x2 box filter on the raw column major pixel arrays, levels
+ * with many columns are split over the ForkJoinPool the build runs in.
+ *
+ * The box filter averages the ARGB channels as stored. Gamma correct
+ * filtering averages the color channels in linear light instead, which
+ * keeps high contrast textures from getting too dark in the distance.
+ */
+public final class MipMapBuilder {
+
+	// columns of the destination level per fork join task
+	private static final int COLUMNS_PER_TASK = 64;
+
+	// 8 bit sRGB to 14 bit linear and back
+	private static final int LINEAR_BITS = 14;
+	private static final int TO_LINEAR[] = new int[256];
+	private static final byte TO_SRGB[] = new byte[1 << LINEAR_BITS];
+
+	static {
+		final int max = (1 << LINEAR_BITS) - 1;
+
+		for (int i = 0; i < TO_LINEAR.length; ++i) {
+			final double c = i / 255.0;
+			final double linear = (c <= 0.04045) ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+			TO_LINEAR[i] = (int) Math.round(linear * max);
+		}
+
+		for (int i = 0; i < TO_SRGB.length; ++i) {
+			final double linear = (double) i / max;
+			final double c = (linear <= 0.0031308) ? linear * 12.92 : 1.055 * Math.pow(linear, 1 / 2.4) - 0.055;
+			TO_SRGB[i] = (byte) Math.round(c * 255);
+		}
+	}
+
+	private MipMapBuilder() {
+	}
+
+	/**
+	 * Returns all levels of the pyramid of base, base itself is level 0.
+	 *
+	 * @param base
+	 * @param gammaCorrect
+	 *            filter color channels in linear light
+	 * @return
+	 */
+	public static PowerOf2IntBitmap[] build(PowerOf2IntBitmap base, boolean gammaCorrect) {
+		final PowerOf2IntBitmap levels[] = new PowerOf2IntBitmap[getLevelCount(base.getWidth(), base.getHeight())];
+
+		levels[0] = base;
+
+		for (int i = 1; i < levels.length; ++i) {
+			levels[i] = downsample(levels[i - 1], gammaCorrect);
+		}
+
+		return levels;
+	}
+
+	/**
+	 * Returns the number of levels of a pyramid down to 1x1
+	 *
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static int getLevelCount(int width, int height) {
+		return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+	}
+
+	/**
+	 * Returns the next smaller level of src, half its width and height
+	 *
+	 * @param src
+	 * @param gammaCorrect
+	 *            filter color channels in linear light
+	 * @return
+	 */
+	public static PowerOf2IntBitmap downsample(PowerOf2IntBitmap src, boolean gammaCorrect) {
+		final PowerOf2IntBitmap dst = new PowerOf2IntBitmap(
+				Math.max(1, src.getWidth() >> 1), Math.max(1, src.getHeight() >> 1));
+
+		final DownsampleTask task = new DownsampleTask(src, dst, gammaCorrect, 0, dst.getWidth());
+
+		if (dst.getWidth() <= COLUMNS_PER_TASK) {
+			task.compute();
+		} else {
+			task.invoke();
+		}
+
+		return dst;
+	}
+
+	/*
+	 * Filters the columns [start, end) of dst
+	 */
+	private static void downsample(PowerOf2IntBitmap src, PowerOf2IntBitmap dst, boolean gammaCorrect,
+			int start, int end) {
+		final int srcPixels[] = src.m_pixels;
+		final int dstPixels[] = dst.m_pixels;
+
+		final int srcW = src.getWidth();
+		final int srcH = src.getHeight();
+		final int dstH = dst.getHeight();
+
+		// columns of height 1 are repeated instead of halved
+		final int step = (srcH > 1) ? 1 : 0;
+
+		for (int x = start; x < end; ++x) {
+			// rows of width 1 are repeated instead of halved
+			final int col0 = Math.min(x << 1, srcW - 1) * srcH;
+			final int col1 = Math.min((x << 1) + 1, srcW - 1) * srcH;
+
+			final int d = x * dstH;
+
+			if (gammaCorrect) {
+				for (int y = 0; y < dstH; ++y) {
+					final int s = y << 1;
+					dstPixels[d + y] = averageLinear(srcPixels[col0 + s], srcPixels[col0 + s + step],
+							srcPixels[col1 + s], srcPixels[col1 + s + step]);
+				}
+			} else {
+				for (int y = 0; y < dstH; ++y) {
+					final int s = y << 1;
+					dstPixels[d + y] = average(srcPixels[col0 + s], srcPixels[col0 + s + step],
+							srcPixels[col1 + s], srcPixels[col1 + s + step]);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Rounded average of each channel, two channels at a time
+	 */
+	private static int average(int a, int b, int c, int d) {
+		final int rb = (a & 0x00ff00ff) + (b & 0x00ff00ff) + (c & 0x00ff00ff) + (d & 0x00ff00ff);
+		final int ag = ((a >>> 8) & 0x00ff00ff) + ((b >>> 8) & 0x00ff00ff)
+				+ ((c >>> 8) & 0x00ff00ff) + ((d >>> 8) & 0x00ff00ff);
+
+		return (((rb + 0x00020002) >>> 2) & 0x00ff00ff) | ((((ag + 0x00020002) >>> 2) & 0x00ff00ff) << 8);
+	}
+
+	/*
+	 * Average of color channels in linear light, alpha is averaged as is
+	 */
+	private static int averageLinear(int a, int b, int c, int d) {
+		final int alpha = ((a >>> 24) + (b >>> 24) + (c >>> 24) + (d >>> 24) + 2) >> 2;
+
+		final int r = TO_LINEAR[(a >> 16) & 0xff] + TO_LINEAR[(b >> 16) & 0xff]
+				+ TO_LINEAR[(c >> 16) & 0xff] + TO_LINEAR[(d >> 16) & 0xff];
+		final int g = TO_LINEAR[(a >> 8) & 0xff] + TO_LINEAR[(b >> 8) & 0xff]
+				+ TO_LINEAR[(c >> 8) & 0xff] + TO_LINEAR[(d >> 8) & 0xff];
+		final int bl = TO_LINEAR[a & 0xff] + TO_LINEAR[b & 0xff]
+				+ TO_LINEAR[c & 0xff] + TO_LINEAR[d & 0xff];
+
+		return (alpha << 24)
+				| ((TO_SRGB[(r + 2) >> 2] & 0xff) << 16)
+				| ((TO_SRGB[(g + 2) >> 2] & 0xff) << 8)
+				| (TO_SRGB[(bl + 2) >> 2] & 0xff);
+	}
+
+	private static final class DownsampleTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final PowerOf2IntBitmap m_src;
+		private final PowerOf2IntBitmap m_dst;
+		private final boolean m_gammaCorrect;
+		private final int m_start;
+		private final int m_end;
+
+		DownsampleTask(PowerOf2IntBitmap src, PowerOf2IntBitmap dst, boolean gammaCorrect, int start, int end) {
+			m_src = src;
+			m_dst = dst;
+			m_gammaCorrect = gammaCorrect;
+			m_start = start;
+			m_end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (m_end - m_start <= COLUMNS_PER_TASK) {
+				downsample(m_src, m_dst, m_gammaCorrect, m_start, m_end);
+				return;
+			}
+
+			final int mid = (m_start + m_end) >>> 1;
+
+			invokeAll(new DownsampleTask(m_src, m_dst, m_gammaCorrect, m_start, mid),
+					new DownsampleTask(m_src, m_dst, m_gammaCorrect, mid, m_end));
+		}
+	}
+}
@@ -35,4 +35,14 @@ public class PowerOf2IntBitmap extends FastIntBitmap {
 	public final void putPixel(final int x, final int y, final Integer color) {
 		m_pixels[((x << m_hExp) + y)] = color;
 	}
-}
\ No newline at end of file
+
+	@Override
+	public final int getNative(final int x, final int y) {
+		return m_pixels[((x << m_hExp) + y)];
+	}
+
+	@Override
+	public final void putPixel(final int x, final int y, final int color) {
+		m_pixels[((x << m_hExp) + y)] = color;
+	}
+}
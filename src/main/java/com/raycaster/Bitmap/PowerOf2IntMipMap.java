@@ -2,17 +2,82 @@ package com.raycaster.Bitmap;
 
 import com.raycaster.utils.Tuple;
 
-public class PowerOf2IntMipMap extends AbstractBitmap<Integer> {
+/**
+ * A texture with mip levels, level 0 is the full size one and each level
+ * has half the size of the one before.
+ * 
+ * The IntBitmap methods use the current level, renderers pick a level per
+ * draw with getLevel() and getMipImage() instead, which needs no state.
+ */
+public class PowerOf2IntMipMap extends AbstractBitmap<Integer> implements IntBitmap {
+
+	// ceil(log2(i)), for the screen sizes of most draws
+	private static final byte CEIL_LOG2[] = new byte[1 << 12];
+
+	static {
+		for (int i = 2; i < CEIL_LOG2.length; ++i) {
+			CEIL_LOG2[i] = (byte) (32 - Integer.numberOfLeadingZeros(i - 1));
+		}
+	}
 
 	private int m_curIndex;
 	private final PowerOf2IntBitmap[] m_bitmaps;
 	private PowerOf2IntBitmap m_cur;
 
+	// height of level 0 and its log2
+	private final int m_size;
+	private final int m_exp;
+
 	public PowerOf2IntMipMap(final PowerOf2IntBitmap[] bitmaps) {
 		m_bitmaps = bitmaps;
 		
 		m_curIndex = 0;
 		m_cur = m_bitmaps[0];
+
+		m_size = m_cur.getHeight();
+		m_exp = Integer.numberOfTrailingZeros(m_size);
+	}
+
+	/**
+	 * Returns the level to draw the texture with when its height covers
+	 * the given number of screen pixels: the largest level with at least
+	 * one texel per pixel.
+	 * 
+	 * @param pixels
+	 *            height on screen, e.g. the line height of a wall
+	 * @return
+	 */
+	public final int getLevel(final int pixels) {
+		if (pixels >= m_size) {
+			return 0;
+		}
+
+		if (pixels <= 1) {
+			return m_bitmaps.length - 1;
+		}
+
+		return Math.min(m_exp - ceilLog2(pixels), m_bitmaps.length - 1);
+	}
+
+	/**
+	 * Returns ceil(log2(n)) for n &gt; 0, from a table for small n
+	 * 
+	 * @param n
+	 * @return
+	 */
+	public static int ceilLog2(final int n) {
+		return (n < CEIL_LOG2.length) ? CEIL_LOG2[n] : 32 - Integer.numberOfLeadingZeros(n - 1);
+	}
+
+	/**
+	 * Returns the screen size below which getLevel() returns a level larger
+	 * than level, Integer.MIN_VALUE for the last level.
+	 * 
+	 * @param level
+	 * @return
+	 */
+	public final int getLevelLimit(final int level) {
+		return (level + 1 < m_bitmaps.length) ? (m_size >> (level + 1)) + 1 : Integer.MIN_VALUE;
 	}
 
 	@Override
@@ -40,13 +105,19 @@ public class PowerOf2IntMipMap extends AbstractBitmap<Integer> {
 		return m_cur.getCursor();
 	}
 
+	@Override
+	public final IntCursor getIntCursor() {
+		return m_cur.getIntCursor();
+	}
+
 	@Override
 	public final Integer getPixel(int index) {
 		return Integer.valueOf(m_cur.getPixel(index));
 	}
 	
+	@Override
 	public final int getNative(int index) {
-		return m_cur.getPixel(index);
+		return m_cur.getNative(index);
 	}
 
 	@Override
@@ -54,8 +125,9 @@ public class PowerOf2IntMipMap extends AbstractBitmap<Integer> {
 		return m_cur.getPixel(x, y);
 	}
 	
+	@Override
 	public final int getNative(final int x, final int y) {
-		return m_cur.getPixel(x, y);
+		return m_cur.getNative(x, y);
 	}
 
 	public final int getMipLevel() {
@@ -75,7 +147,7 @@ public class PowerOf2IntMipMap extends AbstractBitmap<Integer> {
 	
 	public PowerOf2IntBitmap getMipImage(final int lvl) {
 		if (lvl >= 0 && lvl < m_bitmaps.length) {
-			return m_bitmaps[m_curIndex];
+			return m_bitmaps[lvl];
 		}
 		
 		return null;
@@ -99,6 +171,36 @@ public class PowerOf2IntMipMap extends AbstractBitmap<Integer> {
 		m_cur.putPixel(index, value);
 	}
 
+	@Override
+	public final void putPixel(final int x, final int y, final int value) {
+		m_cur.putPixel(x, y, value);
+	}
+
+	@Override
+	public final void putPixel(final int index, final int value) {
+		m_cur.putPixel(index, value);
+	}
+
+	@Override
+	public final void clear(final Integer col) {
+		m_cur.clear(col.intValue());
+	}
+
+	@Override
+	public final void clear(final int col) {
+		m_cur.clear(col);
+	}
+
+	@Override
+	public final void drawBitmap(final IBitmap<Integer> bitmap, final int destX, final int destY) {
+		m_cur.drawBitmap(bitmap, destX, destY);
+	}
+
+	@Override
+	public final void drawBitmap(final IntBitmap bitmap, final int destX, final int destY) {
+		m_cur.drawBitmap(bitmap, destX, destY);
+	}
+
 	@Override
 	public IBitmap<Integer> loadFromFile(String filename) {
 		return null;
@@ -0,0 +1,274 @@
+package com.raycaster.Bitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * TextureAtlas
+ *
+ * All textures and their mip levels packed into a few large int[] pages.
+ * Every level is stored column major like a FastIntBitmap: texel x, y of a
+ * level is at page[offset + x * height + y].
+ *
+ * Textures are referenced by their id, the index in the list the atlas was
+ * built from, which maps to page, offset and size of each level. Levels are
+ * placed in blocks of the next power of 2 of their texel count, largest
+ * first, so blocks never straddle and power of 2 textures leave no gaps.
+ */
+public final class TextureAtlas {
+
+	/** Texels per page, larger levels get a page of their own */
+	public static final int DEFAULT_PAGE_SIZE = 1 << 22;
+
+	/** Texture id of no texture */
+	public static final int NO_TEXTURE = -1;
+
+	private final int m_pages[][];
+
+	// per texture: index of level 0 in the level tables, number of levels,
+	// height of level 0 and its log2
+	private final int m_firstLevel[];
+	private final int m_levelCount[];
+	private final int m_size[];
+	private final int m_exp[];
+
+	// per level of all textures
+	private final int m_levelPage[];
+	private final int m_levelOffset[];
+	private final int m_levelWidth[];
+	private final int m_levelHeight[];
+
+	private TextureAtlas(int textureCount, int levelCount, int pages[][]) {
+		m_pages = pages;
+
+		m_firstLevel = new int[textureCount];
+		m_levelCount = new int[textureCount];
+		m_size = new int[textureCount];
+		m_exp = new int[textureCount];
+
+		m_levelPage = new int[levelCount];
+		m_levelOffset = new int[levelCount];
+		m_levelWidth = new int[levelCount];
+		m_levelHeight = new int[levelCount];
+	}
+
+	public static TextureAtlas build(List<? extends IntBitmap> textures) {
+		return build(textures, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Packs textures, mip maps with all their levels. The bitmaps are copied,
+	 * they can be dropped afterwards.
+	 *
+	 * @param textures
+	 * @param pageSize
+	 *            texels per page, a power of 2
+	 * @return
+	 */
+	public static TextureAtlas build(List<? extends IntBitmap> textures, int pageSize) {
+		if (pageSize <= 0 || (pageSize & (pageSize - 1)) != 0) {
+			throw new IllegalArgumentException("pageSize has to be a power of 2");
+		}
+
+		final ArrayList<IntBitmap> levels = new ArrayList<IntBitmap>();
+		final int firstLevel[] = new int[textures.size()];
+
+		for (int id = 0; id < textures.size(); ++id) {
+			final IntBitmap texture = textures.get(id);
+
+			firstLevel[id] = levels.size();
+
+			if (texture instanceof PowerOf2IntMipMap) {
+				final PowerOf2IntMipMap mipMap = (PowerOf2IntMipMap) texture;
+
+				for (int l = 0; l < mipMap.getNumMips(); ++l) {
+					levels.add(mipMap.getMipImage(l));
+				}
+			} else {
+				levels.add(texture);
+			}
+		}
+
+		// place the largest blocks first, into the first page with room
+		final Integer order[] = new Integer[levels.size()];
+
+		for (int i = 0; i < order.length; ++i) {
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Integer.compare(blockSize(levels.get(b)), blockSize(levels.get(a)));
+			}
+		});
+
+		final int levelPage[] = new int[levels.size()];
+		final int levelOffset[] = new int[levels.size()];
+
+		final ArrayList<Integer> capacity = new ArrayList<Integer>();
+		final ArrayList<Integer> fill = new ArrayList<Integer>();
+
+		for (int i : order) {
+			final int block = blockSize(levels.get(i));
+
+			int page = 0;
+			while (page < fill.size() && fill.get(page) + block > capacity.get(page)) {
+				++page;
+			}
+
+			if (page == fill.size()) {
+				capacity.add(Math.max(pageSize, block));
+				fill.add(0);
+			}
+
+			levelPage[i] = page;
+			levelOffset[i] = fill.get(page);
+			fill.set(page, levelOffset[i] + block);
+		}
+
+		final int pages[][] = new int[fill.size()][];
+
+		for (int p = 0; p < pages.length; ++p) {
+			pages[p] = new int[fill.get(p)];
+		}
+
+		final TextureAtlas atlas = new TextureAtlas(textures.size(), levels.size(), pages);
+
+		for (int i = 0; i < levels.size(); ++i) {
+			final IntBitmap level = levels.get(i);
+
+			atlas.m_levelPage[i] = levelPage[i];
+			atlas.m_levelOffset[i] = levelOffset[i];
+			atlas.m_levelWidth[i] = level.getWidth();
+			atlas.m_levelHeight[i] = level.getHeight();
+
+			copy(level, pages[levelPage[i]], levelOffset[i]);
+		}
+
+		for (int id = 0; id < textures.size(); ++id) {
+			final int end = (id + 1 < textures.size()) ? firstLevel[id + 1] : levels.size();
+			final int size = textures.get(id).getHeight();
+
+			atlas.m_firstLevel[id] = firstLevel[id];
+			atlas.m_levelCount[id] = end - firstLevel[id];
+			atlas.m_size[id] = size;
+			atlas.m_exp[id] = PowerOf2IntMipMap.ceilLog2(size);
+		}
+
+		return atlas;
+	}
+
+	private static int blockSize(IntBitmap level) {
+		final int texels = level.getWidth() * level.getHeight();
+
+		return (texels <= 1) ? 1 : Integer.highestOneBit(texels - 1) << 1;
+	}
+
+	private static void copy(IntBitmap level, int page[], int offset) {
+		final int w = level.getWidth();
+		final int h = level.getHeight();
+
+		if (level instanceof FastIntBitmap) {
+			System.arraycopy(((FastIntBitmap) level).m_pixels, 0, page, offset, w * h);
+			return;
+		}
+
+		for (int x = 0; x < w; ++x) {
+			for (int y = 0; y < h; ++y) {
+				page[offset + x * h + y] = level.getNative(x, y);
+			}
+		}
+	}
+
+	/**
+	 * Returns the level of texture id to draw with when its height covers
+	 * the given number of screen pixels, like PowerOf2IntMipMap.getLevel().
+	 *
+	 * @param id
+	 * @param pixels
+	 * @return
+	 */
+	public final int getLevel(final int id, final int pixels) {
+		final int last = m_levelCount[id] - 1;
+
+		if (pixels >= m_size[id] || last == 0) {
+			return 0;
+		}
+
+		if (pixels <= 1) {
+			return last;
+		}
+
+		return Math.min(m_exp[id] - PowerOf2IntMipMap.ceilLog2(pixels), last);
+	}
+
+	/**
+	 * Returns the screen size below which getLevel() returns a level larger
+	 * than level, Integer.MIN_VALUE for the last level.
+	 *
+	 * @param id
+	 * @param level
+	 * @return
+	 */
+	public final int getLevelLimit(final int id, final int level) {
+		return (level + 1 < m_levelCount[id]) ? (m_size[id] >> (level + 1)) + 1 : Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Returns the index of a level of texture id in the level tables
+	 *
+	 * @param id
+	 * @param level
+	 * @return
+	 */
+	public final int getLevelIndex(final int id, final int level) {
+		return m_firstLevel[id] + level;
+	}
+
+	public final int[] getLevelPage(final int levelIndex) {
+		return m_pages[m_levelPage[levelIndex]];
+	}
+
+	public final int getLevelOffset(final int levelIndex) {
+		return m_levelOffset[levelIndex];
+	}
+
+	public final int getLevelWidth(final int levelIndex) {
+		return m_levelWidth[levelIndex];
+	}
+
+	public final int getLevelHeight(final int levelIndex) {
+		return m_levelHeight[levelIndex];
+	}
+
+	/**
+	 * Returns the number of mip levels of texture id
+	 *
+	 * @param id
+	 * @return
+	 */
+	public final int getLevelCount(final int id) {
+		return m_levelCount[id];
+	}
+
+	public final int getTextureCount() {
+		return m_firstLevel.length;
+	}
+
+	public final int getPageCount() {
+		return m_pages.length;
+	}
+
+	/**
+	 * Returns the pages, do not change them
+	 *
+	 * @return
+	 */
+	public final List<int[]> getPages() {
+		return Collections.unmodifiableList(Arrays.asList(m_pages));
+	}
+}
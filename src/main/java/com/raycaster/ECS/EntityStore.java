@@ -0,0 +1,211 @@
+package com.raycaster.ECS;
+
+import java.util.Arrays;
+
+/**
+ * EntityStore
+ *
+ * Components of entities in dense arrays, one array per component field, so
+ * systems update all entities in tight loops over primitive arrays.
+ *
+ * The arrays are indexed by dense index: the entities are packed into
+ * 0 .. getCount() - 1, and destroying one moves the last entity into its
+ * place. Entities are referred to by their id, which stays the same, and
+ * indexOf() maps it to the current index. Ids of destroyed entities are
+ * reused.
+ *
+ * The arrays are replaced when the store grows, get them again after
+ * create(). Not thread safe, systems may split the index range over
+ * threads as long as nothing is created or destroyed meanwhile.
+ */
+public final class EntityStore {
+
+	/** Id or index of no entity */
+	public static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	/** Position in tiles */
+	public float m_x[];
+	public float m_y[];
+
+	/** Movement direction, multiplied by speed */
+	public float m_vx[];
+	public float m_vy[];
+	public float m_speed[];
+
+	/** View direction */
+	public float m_dirX[];
+	public float m_dirY[];
+
+	public int m_width[];
+	public int m_height[];
+
+	/** Texture of the sprite, e.g. a TextureAtlas id, or NONE */
+	public int m_sprite[];
+
+	// id of each index, and index of each id or NONE if the id is free
+	private int m_ids[];
+	private int m_indices[];
+
+	private int m_freeIds[];
+	private int m_freeCount;
+	private int m_nextId;
+
+	private int m_count;
+
+	public EntityStore() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public EntityStore(int capacity) {
+		capacity = Math.max(1, capacity);
+
+		m_x = new float[capacity];
+		m_y = new float[capacity];
+		m_vx = new float[capacity];
+		m_vy = new float[capacity];
+		m_speed = new float[capacity];
+		m_dirX = new float[capacity];
+		m_dirY = new float[capacity];
+		m_width = new int[capacity];
+		m_height = new int[capacity];
+		m_sprite = new int[capacity];
+
+		m_ids = new int[capacity];
+		m_indices = new int[capacity];
+		m_freeIds = new int[16];
+	}
+
+	/**
+	 * Creates an entity at x, y which does not move
+	 *
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return its id
+	 */
+	public int create(float x, float y, int width, int height) {
+		if (m_count == m_x.length) {
+			grow(m_count << 1);
+		}
+
+		final int id;
+
+		if (m_freeCount > 0) {
+			id = m_freeIds[--m_freeCount];
+		} else {
+			id = m_nextId++;
+
+			if (id == m_indices.length) {
+				m_indices = Arrays.copyOf(m_indices, m_x.length);
+			}
+		}
+
+		final int index = m_count++;
+
+		m_ids[index] = id;
+		m_indices[id] = index;
+
+		m_x[index] = x;
+		m_y[index] = y;
+		m_vx[index] = 0;
+		m_vy[index] = 0;
+		m_speed[index] = 0;
+		m_dirX[index] = -1;
+		m_dirY[index] = 0;
+		m_width[index] = width;
+		m_height[index] = height;
+		m_sprite[index] = NONE;
+
+		return id;
+	}
+
+	/**
+	 * Destroys the entity, the last entity moves into its index
+	 *
+	 * @param id
+	 */
+	public void destroy(int id) {
+		final int index = indexOf(id);
+
+		if (index == NONE) {
+			throw new IllegalArgumentException("No entity with id " + id);
+		}
+
+		final int last = --m_count;
+
+		if (index != last) {
+			m_x[index] = m_x[last];
+			m_y[index] = m_y[last];
+			m_vx[index] = m_vx[last];
+			m_vy[index] = m_vy[last];
+			m_speed[index] = m_speed[last];
+			m_dirX[index] = m_dirX[last];
+			m_dirY[index] = m_dirY[last];
+			m_width[index] = m_width[last];
+			m_height[index] = m_height[last];
+			m_sprite[index] = m_sprite[last];
+
+			final int moved = m_ids[last];
+			m_ids[index] = moved;
+			m_indices[moved] = index;
+		}
+
+		m_indices[id] = NONE;
+
+		if (m_freeCount == m_freeIds.length) {
+			m_freeIds = Arrays.copyOf(m_freeIds, m_freeCount << 1);
+		}
+		m_freeIds[m_freeCount++] = id;
+	}
+
+	/**
+	 * Returns the current index of entity id, or NONE if it does not exist
+	 *
+	 * @param id
+	 * @return
+	 */
+	public int indexOf(int id) {
+		return (id >= 0 && id < m_nextId) ? m_indices[id] : NONE;
+	}
+
+	/**
+	 * Returns the id of the entity at index
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getId(int index) {
+		return m_ids[index];
+	}
+
+	public boolean exists(int id) {
+		return indexOf(id) != NONE;
+	}
+
+	/**
+	 * Returns the number of entities, the arrays are valid up to it
+	 *
+	 * @return
+	 */
+	public int getCount() {
+		return m_count;
+	}
+
+	private final void grow(int capacity) {
+		m_x = Arrays.copyOf(m_x, capacity);
+		m_y = Arrays.copyOf(m_y, capacity);
+		m_vx = Arrays.copyOf(m_vx, capacity);
+		m_vy = Arrays.copyOf(m_vy, capacity);
+		m_speed = Arrays.copyOf(m_speed, capacity);
+		m_dirX = Arrays.copyOf(m_dirX, capacity);
+		m_dirY = Arrays.copyOf(m_dirY, capacity);
+		m_width = Arrays.copyOf(m_width, capacity);
+		m_height = Arrays.copyOf(m_height, capacity);
+		m_sprite = Arrays.copyOf(m_sprite, capacity);
+
+		m_ids = Arrays.copyOf(m_ids, capacity);
+	}
+}
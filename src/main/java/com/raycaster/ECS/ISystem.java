@@ -0,0 +1,16 @@
+package com.raycaster.ECS;
+
+/**
+ * A system updates one aspect of all entities in an EntityStore, e.g. their
+ * movement, by looping over the component arrays.
+ */
+public interface ISystem {
+
+	/**
+	 * Updates all entities of store
+	 * 
+	 * @param store
+	 * @param timeDiff
+	 */
+	public void update(EntityStore store, float timeDiff);
+}
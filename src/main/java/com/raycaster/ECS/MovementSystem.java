@@ -0,0 +1,122 @@
+package com.raycaster.ECS;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.raycaster.Entities.TileCollision;
+import com.raycaster.Tile.ITileMap;
+import com.raycaster.utils.IWorld;
+
+/**
+ * MovementSystem
+ *
+ * Moves all entities by velocity times speed, like DynamicEntity: their
+ * boxes slide along solid tiles and the border of the map, see
+ * TileCollision. Each entity only reads and writes its own index, so large stores are
+ * split over a ForkJoinPool with the same result as on one thread.
+ */
+public class MovementSystem implements ISystem {
+
+	// entities per fork join task
+	private static final int ENTITIES_PER_TASK = 8192;
+
+	private final IWorld m_world;
+	private final ForkJoinPool m_pool;
+
+	/**
+	 * @param world
+	 *            world with the map to collide with, null to move freely
+	 */
+	public MovementSystem(IWorld world) {
+		this(world, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param world
+	 *            world with the map to collide with, null to move freely
+	 * @param pool
+	 *            pool large stores are updated in, a pool with parallelism 1
+	 *            updates them on the calling thread
+	 */
+	public MovementSystem(IWorld world, ForkJoinPool pool) {
+		m_world = world;
+		m_pool = pool;
+	}
+
+	@Override
+	public void update(EntityStore store, float timeDiff) {
+		final int count = store.getCount();
+		final ITileMap map = (m_world != null) ? m_world.getTileMap() : null;
+
+		if (count <= ENTITIES_PER_TASK || m_pool.getParallelism() <= 1) {
+			move(store, map, 0, count, timeDiff);
+		} else {
+			m_pool.invoke(new MoveTask(store, map, 0, count, timeDiff));
+		}
+	}
+
+	private static void move(EntityStore store, ITileMap map, int start, int end, float timeDiff) {
+		final float xs[] = store.m_x;
+		final float ys[] = store.m_y;
+		final float vxs[] = store.m_vx;
+		final float vys[] = store.m_vy;
+		final float speeds[] = store.m_speed;
+		final int widths[] = store.m_width;
+		final int heights[] = store.m_height;
+		final float moved[] = new float[2];
+
+		for (int i = start; i < end; ++i) {
+			final float speed = speeds[i];
+
+			if (speed == 0) {
+				continue;
+			}
+
+			final float dx = vxs[i] * speed * timeDiff;
+			final float dy = vys[i] * speed * timeDiff;
+
+			if (map == null) {
+				xs[i] += dx;
+				ys[i] += dy;
+				continue;
+			}
+
+			TileCollision.move(map, xs[i], ys[i], TileCollision.getHalfExtent(widths[i]),
+					TileCollision.getHalfExtent(heights[i]), dx, dy, moved);
+
+			xs[i] = moved[0];
+			ys[i] = moved[1];
+		}
+	}
+
+	private static final class MoveTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final EntityStore m_store;
+		private final ITileMap m_map;
+		private final int m_start;
+		private final int m_end;
+		private final float m_timeDiff;
+
+		MoveTask(EntityStore store, ITileMap map, int start, int end, float timeDiff) {
+			m_store = store;
+			m_map = map;
+			m_start = start;
+			m_end = end;
+			m_timeDiff = timeDiff;
+		}
+
+		@Override
+		protected void compute() {
+			if (m_end - m_start <= ENTITIES_PER_TASK) {
+				move(m_store, m_map, m_start, m_end, m_timeDiff);
+				return;
+			}
+
+			final int mid = (m_start + m_end) >>> 1;
+
+			invokeAll(new MoveTask(m_store, m_map, m_start, mid, m_timeDiff),
+					new MoveTask(m_store, m_map, mid, m_end, m_timeDiff));
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.raycaster.ECS;
+
+import com.raycaster.Entities.Collideable;
+import com.raycaster.Entities.IEntity;
+import com.raycaster.Entities.IPhasedEntity;
+import com.raycaster.Entities.ISprite;
+import com.raycaster.Entities.TileCollision;
+import com.raycaster.Tile.EntityGrid;
+import com.raycaster.Tile.ITile;
+import com.raycaster.Tile.ITileMap;
+import com.raycaster.utils.IWorld;
+
+/**
+ * An IEntity backed by the EntityStore of its world, for code which works
+ * with entity objects like the renderer or the EntityGrid. The systems of the
+ * world move it, updating it only keeps its cell in the EntityGrid up to
+ * date.
+ * 
+ * Entities which do not need to be objects should only be created in the
+ * store.
+ */
+public class StoredEntity implements IPhasedEntity {
+
+	protected final EntityStore m_store;
+	protected final int m_id;
+	protected final IWorld m_world;
+
+	protected ISprite m_sprite;
+	protected ITile m_currentTile;
+	protected int m_gridSlot = EntityGrid.NONE;
+
+	// state when destroyed, the world may still use the entity until the
+	// end of its update
+	private boolean m_destroyed;
+	private float m_lastX;
+	private float m_lastY;
+	private int m_lastWidth;
+	private int m_lastHeight;
+	private float m_lastDirX;
+	private float m_lastDirY;
+
+	public StoredEntity(float x, float y, int w, int h, ISprite sprite, IWorld world) {
+		m_store = world.getEntityStore();
+		m_id = m_store.create(x, y, w, h);
+		m_world = world;
+		m_sprite = sprite;
+
+		final ITileMap map = m_world.getTileMap();
+
+		m_gridSlot = map.getEntityGrid().add(this, x, y);
+		m_currentTile = map.getTileAtPos(x, y);
+
+		m_world.addEntity(this);
+	}
+
+	/**
+	 * Removes the entity from the world and the store
+	 */
+	public void destroy() {
+		if (m_destroyed) {
+			return;
+		}
+
+		m_lastX = getX();
+		m_lastY = getY();
+		m_lastWidth = getWidth();
+		m_lastHeight = getHeight();
+		m_lastDirX = getViewDirectionX();
+		m_lastDirY = getViewDirectionY();
+		m_destroyed = true;
+
+		m_store.destroy(m_id);
+		m_world.removeEntity(this);
+	}
+
+	/**
+	 * Returns the id of the entity in the EntityStore of its world
+	 * 
+	 * @return
+	 */
+	public final int getId() {
+		return m_id;
+	}
+
+	private final int index() {
+		return m_store.indexOf(m_id);
+	}
+
+	/**
+	 * Moves are done by the systems of the world
+	 */
+	@Override
+	public void computeIntent(float timeDiff) {
+	}
+
+	/**
+	 * Moves the entity to its new cell in the EntityGrid
+	 */
+	@Override
+	public void applyIntent() {
+		if (m_destroyed) {
+			return;
+		}
+
+		final EntityGrid grid = m_world.getTileMap().getEntityGrid();
+		final float x = getX();
+		final float y = getY();
+
+		if (grid.get(m_gridSlot) != this) {
+			m_gridSlot = grid.add(this, x, y);
+		} else if (!grid.move(m_gridSlot, x, y)) {
+			return;
+		}
+
+		m_currentTile = m_world.getTileMap().getTileAtPos(x, y);
+	}
+
+	@Override
+	public void onUpdate(float timeDiff) {
+		applyIntent();
+	}
+
+	@Override
+	public void onCollision(Collideable c) {
+		//stop the entity
+		setMovementDir(0, 0);
+	}
+
+	@Override
+	public boolean isCollidingWidth(Collideable c) {
+		return c instanceof IEntity && TileCollision.overlaps(this, (IEntity) c);
+	}
+
+	/**
+	 * Does nothing after destroy(), like the other setters
+	 * 
+	 * @param x
+	 * @param y
+	 */
+	public void setPosition(float x, float y) {
+		if (m_destroyed) {
+			return;
+		}
+
+		final int index = index();
+
+		m_store.m_x[index] = x;
+		m_store.m_y[index] = y;
+	}
+
+	public void setMovementDir(float vx, float vy) {
+		if (m_destroyed) {
+			return;
+		}
+
+		final int index = index();
+
+		m_store.m_vx[index] = vx;
+		m_store.m_vy[index] = vy;
+	}
+
+	/**
+	 * Set multiples of length of movement dir vector this Entity travels per
+	 * second.
+	 * 
+	 * @param speed
+	 */
+	public void setSpeed(float speed) {
+		if (!m_destroyed) {
+			m_store.m_speed[index()] = speed;
+		}
+	}
+
+	public void setViewDirection(float dirX, float dirY) {
+		if (m_destroyed) {
+			return;
+		}
+
+		final int index = index();
+
+		m_store.m_dirX[index] = dirX;
+		m_store.m_dirY[index] = dirY;
+	}
+
+	@Override
+	public ISprite getSprite() {
+		return m_sprite;
+	}
+
+	@Override
+	public float getX() {
+		return m_destroyed ? m_lastX : m_store.m_x[index()];
+	}
+
+	@Override
+	public float getY() {
+		return m_destroyed ? m_lastY : m_store.m_y[index()];
+	}
+
+	@Override
+	public int getWidth() {
+		return m_destroyed ? m_lastWidth : m_store.m_width[index()];
+	}
+
+	@Override
+	public int getHeight() {
+		return m_destroyed ? m_lastHeight : m_store.m_height[index()];
+	}
+
+	@Override
+	public IWorld getWorld() {
+		return m_world;
+	}
+
+	@Override
+	public ITile getCurrentTile() {
+		return m_currentTile;
+	}
+
+	@Override
+	public void setCurrentTile(ITile tile) {
+		m_currentTile = tile;
+	}
+
+	@Override
+	public float getViewDirectionX() {
+		return m_destroyed ? m_lastDirX : m_store.m_dirX[index()];
+	}
+
+	@Override
+	public float getViewDirectionY() {
+		return m_destroyed ? m_lastDirY : m_store.m_dirY[index()];
+	}
+
+	@Override
+	public final int getGridSlot() {
+		return m_gridSlot;
+	}
+}
@@ -0,0 +1,281 @@
+package com.raycaster.Entities;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.raycaster.utils.IWorld;
+
+/**
+ * CollisionDetector
+ *
+ * Finds the entities whose boxes overlap, see TileCollision, and tells them
+ * with onCollision(). Boxes are sorted by their left edge and swept from left
+ * to right, only boxes which overlap along x are tested along y and then
+ * with isCollidingWidth(). Entities move little from tick to tick, so the
+ * order of the last detect() is sorted again by insertion sort, which is
+ * close to linear then.
+ *
+ * All pairs are found before any onCollision() is called, so the handlers
+ * see the positions of the tick and may change them. Pairs of entities
+ * which are both not IPhasedEntity never move and are skipped, as are pairs
+ * with an entity a handler has removed from its world.
+ */
+public class CollisionDetector {
+
+	private int m_count;
+
+	// entity index of each box in order of minX, and the boxes by entity
+	// index
+	private int m_order[] = new int[0];
+	private IEntity m_entities[] = new IEntity[0];
+	private float m_minX[] = new float[0];
+	private float m_maxX[] = new float[0];
+	private float m_minY[] = new float[0];
+	private float m_maxY[] = new float[0];
+	private boolean m_dynamic[] = new boolean[0];
+
+	// the boxes in order of minX, so the sweep reads them one after the other
+	private float m_sortedMinX[] = new float[0];
+	private float m_sortedMaxX[] = new float[0];
+	private float m_sortedMinY[] = new float[0];
+	private float m_sortedMaxY[] = new float[0];
+
+	// colliding pairs, lower entity index in the high half
+	private long m_pairs[] = new long[64];
+	private int m_pairCount;
+	private int m_candidateCount;
+
+	private long m_detectNanos;
+	private long m_dispatchNanos;
+
+	/**
+	 * Finds the colliding pairs of entities and calls onCollision() of both
+	 * entities of each pair, pairs ordered by their index in entities.
+	 *
+	 * @param entities
+	 * @return the number of colliding pairs
+	 */
+	public int detect(List<? extends IEntity> entities) {
+		final long start = System.nanoTime();
+
+		update(entities);
+		sweep();
+
+		final long detected = System.nanoTime();
+
+		dispatch();
+
+		m_detectNanos = detected - start;
+		m_dispatchNanos = System.nanoTime() - detected;
+
+		return m_pairCount;
+	}
+
+	/*
+	 * Copies the boxes and sorts them, by insertion sort if the number of
+	 * entities is the same as in the last call, else from scratch
+	 */
+	private final void update(List<? extends IEntity> entities) {
+		final int count = entities.size();
+		final boolean resort = count != m_count;
+
+		if (m_entities.length < count) {
+			final int capacity = Math.max(count, m_entities.length << 1);
+
+			m_order = new int[capacity];
+			m_entities = new IEntity[capacity];
+			m_minX = new float[capacity];
+			m_maxX = new float[capacity];
+			m_minY = new float[capacity];
+			m_maxY = new float[capacity];
+			m_dynamic = new boolean[capacity];
+
+			m_sortedMinX = new float[capacity];
+			m_sortedMaxX = new float[capacity];
+			m_sortedMinY = new float[capacity];
+			m_sortedMaxY = new float[capacity];
+		}
+
+		for (int i = 0; i < count; ++i) {
+			final IEntity entity = entities.get(i);
+			final float w = TileCollision.getHalfWidth(entity);
+			final float h = TileCollision.getHalfHeight(entity);
+			final float x = entity.getX();
+			final float y = entity.getY();
+
+			m_entities[i] = entity;
+			m_minX[i] = x - w;
+			m_maxX[i] = x + w;
+			m_minY[i] = y - h;
+			m_maxY[i] = y + h;
+			m_dynamic[i] = entity instanceof IPhasedEntity;
+		}
+
+		// drop references to removed entities
+		if (count < m_count) {
+			Arrays.fill(m_entities, count, m_count, null);
+		}
+
+		m_count = count;
+
+		if (resort) {
+			sortFully();
+		} else {
+			insertionSort();
+		}
+
+		for (int i = 0; i < count; ++i) {
+			final int index = m_order[i];
+
+			m_sortedMinX[i] = m_minX[index];
+			m_sortedMaxX[i] = m_maxX[index];
+			m_sortedMinY[i] = m_minY[index];
+			m_sortedMaxY[i] = m_maxY[index];
+		}
+	}
+
+	private final void sortFully() {
+		final long keys[] = new long[m_count];
+
+		for (int i = 0; i < m_count; ++i) {
+			keys[i] = ((long) sortable(m_minX[i]) << 32) | i;
+		}
+
+		Arrays.sort(keys);
+
+		for (int i = 0; i < m_count; ++i) {
+			m_order[i] = (int) keys[i];
+		}
+	}
+
+	private final void insertionSort() {
+		final int order[] = m_order;
+		final float minX[] = m_minX;
+
+		for (int i = 1; i < m_count; ++i) {
+			final int index = order[i];
+			final float key = minX[index];
+			int j = i - 1;
+
+			while (j >= 0 && minX[order[j]] > key) {
+				order[j + 1] = order[j];
+				--j;
+			}
+
+			order[j + 1] = index;
+		}
+	}
+
+	/*
+	 * Maps a float to an int with the same order, as signed ints
+	 */
+	private static int sortable(float f) {
+		final int bits = Float.floatToIntBits(f);
+
+		return (bits < 0) ? bits ^ 0x7fffffff : bits;
+	}
+
+	private final void sweep() {
+		final int order[] = m_order;
+		final float minXs[] = m_sortedMinX;
+		final float minYs[] = m_sortedMinY;
+		final float maxYs[] = m_sortedMaxY;
+
+		m_pairCount = 0;
+		m_candidateCount = 0;
+
+		for (int i = 0; i < m_count; ++i) {
+			final float maxX = m_sortedMaxX[i];
+			final float minY = minYs[i];
+			final float maxY = maxYs[i];
+
+			for (int j = i + 1; j < m_count && minXs[j] < maxX; ++j) {
+				if (minYs[j] >= maxY || minY >= maxYs[j]) {
+					continue;
+				}
+
+				final int a = order[i];
+				final int b = order[j];
+
+				if (m_dynamic[a] || m_dynamic[b]) {
+					++m_candidateCount;
+
+					if (m_entities[a].isCollidingWidth(m_entities[b])) {
+						addPair(Math.min(a, b), Math.max(a, b));
+					}
+				}
+			}
+		}
+	}
+
+	private final void addPair(int a, int b) {
+		if (m_pairCount == m_pairs.length) {
+			m_pairs = Arrays.copyOf(m_pairs, m_pairCount << 1);
+		}
+
+		m_pairs[m_pairCount++] = ((long) a << 32) | b;
+	}
+
+	private final void dispatch() {
+		Arrays.sort(m_pairs, 0, m_pairCount);
+
+		for (int i = 0; i < m_pairCount; ++i) {
+			final IEntity a = m_entities[(int) (m_pairs[i] >>> 32)];
+			final IEntity b = m_entities[(int) m_pairs[i]];
+
+			if (isRemoved(a) || isRemoved(b)) {
+				continue;
+			}
+
+			a.onCollision(b);
+
+			if (!isRemoved(a) && !isRemoved(b)) {
+				b.onCollision(a);
+			}
+		}
+	}
+
+	private static boolean isRemoved(IEntity entity) {
+		final IWorld world = entity.getWorld();
+
+		return world != null && world.isPendingRemoval(entity);
+	}
+
+	/**
+	 * Returns the number of colliding pairs found by the last detect()
+	 *
+	 * @return
+	 */
+	public final int getPairCount() {
+		return m_pairCount;
+	}
+
+	/**
+	 * Returns the number of pairs whose boxes overlapped in the last
+	 * detect(), each was tested with isCollidingWidth()
+	 *
+	 * @return
+	 */
+	public final int getCandidateCount() {
+		return m_candidateCount;
+	}
+
+	/**
+	 * Returns the nanoseconds sorting and sweeping took in the last detect()
+	 *
+	 * @return
+	 */
+	public final long getDetectNanos() {
+		return m_detectNanos;
+	}
+
+	/**
+	 * Returns the nanoseconds the onCollision() calls took in the last
+	 * detect()
+	 *
+	 * @return
+	 */
+	public final long getDispatchNanos() {
+		return m_dispatchNanos;
+	}
+}
@@ -1,15 +1,21 @@
 package com.raycaster.Entities;
 
-import com.raycaster.Tile.ITile;
+import com.raycaster.Tile.ITileMap;
 import com.raycaster.utils.IWorld;
 
-public class DynamicEntity extends StaticEntity {
+public class DynamicEntity extends StaticEntity implements IPhasedEntity {
 
 	protected float m_vx;
 	protected float m_vy;
 	
 	protected float m_speed;
 	
+	//position after the current tick, see computeIntent
+	protected float m_nextX;
+	protected float m_nextY;
+	
+	private final float m_moved[] = new float[2];
+	
 	public DynamicEntity(int p_x, int p_y, int p_w, int p_h, ISprite sprite, IWorld world) {
 		super(p_x, p_y, p_w, p_h, sprite, world);
 	}
@@ -21,23 +27,40 @@ public class DynamicEntity extends StaticEntity {
 		m_vy = 0;
 	}
 
+	/**
+	 * Updates the entity on its own, see computeIntent and applyIntent
+	 */
 	@Override
 	public void onUpdate(float timeDiff) {
-		float oldX = m_x;
-		float oldY = m_y;
-		
-		m_x += m_vx * m_speed * timeDiff;
-		m_y += m_vy * m_speed * timeDiff;
+		computeIntent(timeDiff);
+		applyIntent();
+	}
+	
+	/**
+	 * Computes where the entity moves, its box slides along solid tiles and
+	 * the border of the map, see TileCollision.
+	 */
+	@Override
+	public void computeIntent(float timeDiff) {
+		final float dx = m_vx * m_speed * timeDiff;
+		final float dy = m_vy * m_speed * timeDiff;
 		
-		ITile tile = m_world.getTileMap().getTileAtPos(m_x, m_y);
+		TileCollision.move(m_world.getTileMap(), m_x, m_y, TileCollision.getHalfExtent(m_w),
+				TileCollision.getHalfExtent(m_h), dx, dy, m_moved);
 		
+		m_nextX = m_moved[0];
+		m_nextY = m_moved[1];
+	}
+	
+	@Override
+	public void applyIntent() {
+		m_x = m_nextX;
+		m_y = m_nextY;
 		
-		if (tile.isSolid()){
-			//prevent movement
-			m_x = oldX;
-			m_y = oldY;
-		} else {
-			tile.addEntity(this); //update the current Tile
+		if (updateGridPosition()) {
+			//update the current Tile
+			final ITileMap map = m_world.getTileMap();
+			m_currentTile = map.getTileAtPos(m_x, m_y);
 		}
 	}
 	
@@ -0,0 +1,246 @@
+package com.raycaster.Entities;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * EntityScheduler
+ * 
+ * Ticks a list of entities in the phases of IPhasedEntity. The phased
+ * entities are sorted by the region of the map they are in, and the intents
+ * of runs of neighbouring entities are computed in parallel, so each thread
+ * reads its own part of the map. Intents are applied and other entities are
+ * updated on the calling thread, in list order.
+ * 
+ * Entities move little from tick to tick, so they are only sorted again
+ * every REPARTITION_TICKS ticks or after invalidate(). The order intents
+ * are computed in does not change the result.
+ * 
+ * The time each phase took is kept for the last tick and summed over all
+ * ticks.
+ */
+public class EntityScheduler {
+
+	/** Tiles per side of the regions entities are partitioned by */
+	public static final int REGION_SIZE = 16;
+
+	/** Ticks between sorting the entities by region again */
+	public static final int REPARTITION_TICKS = 32;
+
+	// entities per fork join task
+	private static final int ENTITIES_PER_TASK = 256;
+
+	private final ForkJoinPool m_pool;
+
+	// region and list index of the phased entities, sorted
+	private long m_keys[] = new long[0];
+	private IPhasedEntity m_phased[] = new IPhasedEntity[0];
+	private int m_phasedCount;
+	private boolean m_partitioned;
+	private int m_ticksSincePartition;
+
+	private long m_partitionNanos;
+	private long m_intentNanos;
+	private long m_applyNanos;
+
+	private long m_totalPartitionNanos;
+	private long m_totalIntentNanos;
+	private long m_totalApplyNanos;
+	private long m_ticks;
+
+	public EntityScheduler() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param pool
+	 *            pool the intents are computed in, a pool with parallelism 1
+	 *            computes them on the calling thread
+	 */
+	public EntityScheduler(ForkJoinPool pool) {
+		m_pool = pool;
+	}
+
+	/**
+	 * Sorts the entities again in the next tick, call it after changing the
+	 * list of entities.
+	 */
+	public void invalidate() {
+		m_partitioned = false;
+	}
+
+	/**
+	 * Updates all entities by timeDiff. The list must not change until tick
+	 * returns, call invalidate() after changing it.
+	 * 
+	 * @param entities
+	 * @param timeDiff
+	 */
+	public void tick(List<? extends IEntity> entities, float timeDiff) {
+		final long start = System.nanoTime();
+
+		if (!m_partitioned || ++m_ticksSincePartition >= REPARTITION_TICKS) {
+			partition(entities);
+		}
+
+		final long partitioned = System.nanoTime();
+
+		if (m_phasedCount <= ENTITIES_PER_TASK || m_pool.getParallelism() <= 1) {
+			computeIntents(0, m_phasedCount, timeDiff);
+		} else {
+			m_pool.invoke(new IntentTask(0, m_phasedCount, timeDiff));
+		}
+
+		final long computed = System.nanoTime();
+
+		for (int i = 0; i < entities.size(); ++i) {
+			final IEntity entity = entities.get(i);
+
+			if (entity instanceof IPhasedEntity) {
+				((IPhasedEntity) entity).applyIntent();
+			} else {
+				entity.onUpdate(timeDiff);
+			}
+		}
+
+		final long applied = System.nanoTime();
+
+		m_partitionNanos = partitioned - start;
+		m_intentNanos = computed - partitioned;
+		m_applyNanos = applied - computed;
+
+		m_totalPartitionNanos += m_partitionNanos;
+		m_totalIntentNanos += m_intentNanos;
+		m_totalApplyNanos += m_applyNanos;
+		++m_ticks;
+	}
+
+	/*
+	 * Sorts the phased entities by region, keys are region y, region x and
+	 * index in the list
+	 */
+	private final void partition(List<? extends IEntity> entities) {
+		if (m_keys.length < entities.size()) {
+			final int capacity = Math.max(entities.size(), m_keys.length << 1);
+
+			m_keys = new long[capacity];
+			m_phased = new IPhasedEntity[capacity];
+		}
+
+		int count = 0;
+
+		for (int i = 0; i < entities.size(); ++i) {
+			final IEntity entity = entities.get(i);
+
+			if (entity instanceof IPhasedEntity) {
+				final long regionX = ((int) Math.floor(entity.getX()) / REGION_SIZE) & 0xffff;
+				final long regionY = ((int) Math.floor(entity.getY()) / REGION_SIZE) & 0xffff;
+
+				m_keys[count++] = (regionY << 48) | (regionX << 32) | i;
+			}
+		}
+
+		Arrays.sort(m_keys, 0, count);
+
+		for (int i = 0; i < count; ++i) {
+			m_phased[i] = (IPhasedEntity) entities.get((int) m_keys[i]);
+		}
+
+		// drop references to removed entities
+		if (count < m_phasedCount) {
+			Arrays.fill(m_phased, count, m_phasedCount, null);
+		}
+
+		m_phasedCount = count;
+		m_partitioned = true;
+		m_ticksSincePartition = 0;
+	}
+
+	private final void computeIntents(int start, int end, float timeDiff) {
+		for (int i = start; i < end; ++i) {
+			m_phased[i].computeIntent(timeDiff);
+		}
+	}
+
+	private final class IntentTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int m_start;
+		private final int m_end;
+		private final float m_timeDiff;
+
+		IntentTask(int start, int end, float timeDiff) {
+			m_start = start;
+			m_end = end;
+			m_timeDiff = timeDiff;
+		}
+
+		@Override
+		protected void compute() {
+			if (m_end - m_start <= ENTITIES_PER_TASK) {
+				computeIntents(m_start, m_end, m_timeDiff);
+				return;
+			}
+
+			final int mid = (m_start + m_end) >>> 1;
+
+			invokeAll(new IntentTask(m_start, mid, m_timeDiff), new IntentTask(mid, m_end, m_timeDiff));
+		}
+	}
+
+	/**
+	 * Returns the number of entities updated in two phases in the last tick
+	 * 
+	 * @return
+	 */
+	public final int getPhasedCount() {
+		return m_phasedCount;
+	}
+
+	/**
+	 * Returns the nanoseconds sorting entities by region took in the last
+	 * tick, 0 if they were not sorted
+	 * 
+	 * @return
+	 */
+	public final long getPartitionNanos() {
+		return m_partitionNanos;
+	}
+
+	/**
+	 * Returns the nanoseconds computing intents took in the last tick
+	 * 
+	 * @return
+	 */
+	public final long getIntentNanos() {
+		return m_intentNanos;
+	}
+
+	/**
+	 * Returns the nanoseconds applying intents and updating other entities
+	 * took in the last tick
+	 * 
+	 * @return
+	 */
+	public final long getApplyNanos() {
+		return m_applyNanos;
+	}
+
+	public final long getTotalPartitionNanos() {
+		return m_totalPartitionNanos;
+	}
+
+	public final long getTotalIntentNanos() {
+		return m_totalIntentNanos;
+	}
+
+	public final long getTotalApplyNanos() {
+		return m_totalApplyNanos;
+	}
+
+	public final long getTickCount() {
+		return m_ticks;
+	}
+}
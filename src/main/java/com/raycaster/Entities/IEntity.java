@@ -80,4 +80,12 @@ public interface IEntity extends Collideable, Updateable {
 	 * @return
 	 */
 	public float getViewDirectionY();
+
+	/**
+	 * Returns the slot of the Entity in the EntityGrid of its map. Only
+	 * valid while the grid has the Entity in that slot.
+	 * 
+	 * @return EntityGrid.NONE if the Entity does not keep its slot
+	 */
+	public int getGridSlot();
 }
@@ -0,0 +1,26 @@
+package com.raycaster.Entities;
+
+/**
+ * An entity updated in two phases by the EntityScheduler, so entities can be
+ * updated in parallel with the same result on any number of threads.
+ * 
+ * computeIntent() of all entities runs first, in parallel. It may only read
+ * the world and state of other entities as it was after the last tick and
+ * may only write state of its own entity, like where it wants to move.
+ * applyIntent() then runs on one thread, for all entities in the order they
+ * were added to the world, and changes the world.
+ */
+public interface IPhasedEntity extends IEntity {
+
+	/**
+	 * Computes what the entity does in this tick without changing the world
+	 * 
+	 * @param timeDiff
+	 */
+	public void computeIntent(float timeDiff);
+
+	/**
+	 * Applies the intent of the last computeIntent()
+	 */
+	public void applyIntent();
+}
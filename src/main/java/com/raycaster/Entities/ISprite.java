@@ -1,6 +1,6 @@
 package com.raycaster.Entities;
 
-import com.raycaster.Bitmap.IBitmap;
+import com.raycaster.Bitmap.IntBitmap;
 
 /**
  * TODO: Think about whether to extend Saveable
@@ -25,14 +25,14 @@ public interface ISprite {
 	public int getY();
 
 	/**
-	 * Returns width of sprite
+	 * Returns width of sprite, in 1 / TileCollision.UNITS_PER_TILE of a tile
 	 * 
 	 * @return
 	 */
 	public int getWidth();
 
 	/**
-	 * Returns height of sprite
+	 * Returns height of sprite, in 1 / TileCollision.UNITS_PER_TILE of a tile
 	 * 
 	 * @return
 	 */
@@ -43,5 +43,5 @@ public interface ISprite {
 	 * 
 	 * @return
 	 */
-	public IBitmap<Integer> getTexture();
+	public IntBitmap getTexture();
 }
@@ -5,6 +5,10 @@ import com.raycaster.utils.IWorld;
 public class Player extends DynamicEntity {
 	protected int m_spin = 0;
 	protected float m_spinSpeed;
+	
+	//view direction after the current tick
+	protected float m_nextDirX;
+	protected float m_nextDirY;
 
 	
 	public static final int DIR_FORWARD = 0;
@@ -26,25 +30,35 @@ public class Player extends DynamicEntity {
 	}
 
 	@Override
-	public void onUpdate(float timeDiff) {
-		super.onUpdate(timeDiff);
+	public void computeIntent(float timeDiff) {
+		super.computeIntent(timeDiff);
+		
+		m_nextDirX = m_dirX;
+		m_nextDirY = m_dirY;
 		
 		if (m_spin != 0) {
 			float spin = m_spin * m_speed * timeDiff;
 			
-			float oldDirX = m_dirX;
-			m_dirX = m_dirX * (float) Math.cos(spin) - m_dirY
+			m_nextDirX = m_dirX * (float) Math.cos(spin) - m_dirY
 					* (float) Math.sin(spin);
-			m_dirY = oldDirX * (float) Math.sin(spin) + m_dirY
+			m_nextDirY = m_dirX * (float) Math.sin(spin) + m_dirY
 					* (float) Math.cos(spin);
 			
-			float l = (float) Math.sqrt(m_dirX * m_dirX + m_dirY * m_dirY);
+			float l = (float) Math.sqrt(m_nextDirX * m_nextDirX + m_nextDirY * m_nextDirY);
 			
-			m_dirX /= l; //just in case, normalize
-			m_dirY /= l;
+			m_nextDirX /= l; //just in case, normalize
+			m_nextDirY /= l;
 		}
 	}
 	
+	@Override
+	public void applyIntent() {
+		super.applyIntent();
+		
+		m_dirX = m_nextDirX;
+		m_dirY = m_nextDirY;
+	}
+	
 	public void setLocalMovementDir(int direction){
 		if ( direction == DIR_FORWARD){
 			m_vx = m_dirX * m_speed;
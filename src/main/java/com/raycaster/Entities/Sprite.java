@@ -1,6 +1,6 @@
 package com.raycaster.Entities;
 
-import com.raycaster.Bitmap.IBitmap;
+import com.raycaster.Bitmap.IntBitmap;
 
 /**
  * Simple implementation of ISprite
@@ -18,9 +18,9 @@ public class Sprite implements ISprite {
 	private int m_w;
 	private int m_h;
 	
-	private IBitmap<Integer> m_texture;
+	private IntBitmap m_texture;
 	
-	public Sprite (int p_x, int p_y, int p_w, int p_h, IBitmap<Integer> p_texture){
+	public Sprite (int p_x, int p_y, int p_w, int p_h, IntBitmap p_texture){
 		m_x = p_x;
 		m_y = p_y;
 		
@@ -51,7 +51,7 @@ public class Sprite implements ISprite {
 	}
 
 	@Override
-	public IBitmap<Integer> getTexture() {
+	public IntBitmap getTexture() {
 		return m_texture;
 	}
 
@@ -1,12 +1,15 @@
 package com.raycaster.Entities;
 
+import com.raycaster.Tile.EntityGrid;
 import com.raycaster.Tile.ITile;
+import com.raycaster.Tile.ITileMap;
 import com.raycaster.utils.IWorld;
 
 public class StaticEntity implements IEntity {
 	protected ISprite m_sprite;
 	protected IWorld m_world;
 	protected ITile m_currentTile; //Tile the Entity is currently in
+	protected int m_gridSlot = EntityGrid.NONE; //slot in the EntityGrid of the map
 	
 	protected float m_x;
 	protected float m_y;
@@ -27,11 +30,37 @@ public class StaticEntity implements IEntity {
 		m_sprite = sprite;
 		m_world  = world;
 		
-		m_world.getTileMap().getTileAtPos(m_x, m_y).addEntity(this); //add the entity to an tile
+		final ITileMap map = m_world.getTileMap();
+		
+		m_gridSlot = map.getEntityGrid().add(this, m_x, m_y);
+		m_currentTile = map.getTileAtPos(m_x, m_y);
+		
+		m_world.addEntity(this);
+	}
+	
+	/**
+	 * Moves the entity to its position in the EntityGrid of the map, adding
+	 * it again if the map has been reloaded or replaced.
+	 * 
+	 * @return true if the entity is in another cell now
+	 */
+	protected final boolean updateGridPosition() {
+		final EntityGrid grid = m_world.getTileMap().getEntityGrid();
+		
+		if (grid.get(m_gridSlot) != this) {
+			m_gridSlot = grid.add(this, m_x, m_y);
+			return true;
+		}
+		
+		return grid.move(m_gridSlot, m_x, m_y);
 	}
+	
+	/**
+	 * Entities collide if their boxes overlap, see TileCollision
+	 */
 	@Override
 	public boolean isCollidingWidth(Collideable c) {
-		return false;
+		return c instanceof IEntity && TileCollision.overlaps(this, (IEntity) c);
 	}
 
 	@Override
@@ -93,5 +122,10 @@ public class StaticEntity implements IEntity {
 	public float getViewDirectionY() {
 		return m_dirY;
 	}
+	
+	@Override
+	public final int getGridSlot() {
+		return m_gridSlot;
+	}
 
 }
@@ -0,0 +1,172 @@
+package com.raycaster.Entities;
+
+import com.raycaster.Tile.ITileMap;
+import com.raycaster.Tile.TileFlags;
+
+/**
+ * TileCollision
+ *
+ * Collision boxes of entities and moving them through the tile map. The box
+ * of an entity is centered on its position, getWidth() and getHeight() are
+ * in 1 / UNITS_PER_TILE of a tile.
+ *
+ * move() sweeps the box along x first, then along y, and stops each axis at
+ * the first tile which is solid or off the map, so the entity slides along
+ * walls and can not pass through one no matter how far it moves in a tick.
+ */
+public final class TileCollision {
+
+	/** Units of entity width and height per tile */
+	public static final float UNITS_PER_TILE = 32;
+
+	/** Set in the result of move() if the box was stopped along x */
+	public static final int HIT_X = 1;
+	/** Set in the result of move() if the box was stopped along y */
+	public static final int HIT_Y = 2;
+
+	// distance a stopped box keeps to the tile it hit, so it is not inside
+	// that tile after rounding
+	private static final float SKIN = 1 / 1024f;
+
+	private static final byte BLOCKING = TileFlags.SOLID | TileFlags.OUTSIDE;
+
+	private TileCollision() {
+	}
+
+	/**
+	 * Returns half the width of the box of entity, in tiles
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public static float getHalfWidth(IEntity entity) {
+		return getHalfExtent(entity.getWidth());
+	}
+
+	/**
+	 * Returns half the height of the box of entity, in tiles
+	 *
+	 * @param entity
+	 * @return
+	 */
+	public static float getHalfHeight(IEntity entity) {
+		return getHalfExtent(entity.getHeight());
+	}
+
+	/**
+	 * Returns half of size units, in tiles
+	 *
+	 * @param size
+	 * @return
+	 */
+	public static float getHalfExtent(int size) {
+		return size * (0.5f / UNITS_PER_TILE);
+	}
+
+	/**
+	 * Returns true if the boxes of a and b overlap, touching boxes do not
+	 *
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public static boolean overlaps(IEntity a, IEntity b) {
+		final float w = getHalfWidth(a) + getHalfWidth(b);
+		final float h = getHalfHeight(a) + getHalfHeight(b);
+
+		return Math.abs(a.getX() - b.getX()) < w && Math.abs(a.getY() - b.getY()) < h;
+	}
+
+	/**
+	 * Moves a box centered on x, y by dx, dy through map.
+	 *
+	 * @param map
+	 * @param x
+	 * @param y
+	 * @param halfWidth
+	 *            in tiles
+	 * @param halfHeight
+	 *            in tiles
+	 * @param dx
+	 * @param dy
+	 * @param out
+	 *            receives the new x and y
+	 * @return HIT_X and HIT_Y for the axes the box was stopped along
+	 */
+	public static int move(ITileMap map, float x, float y, float halfWidth, float halfHeight, float dx,
+			float dy, float out[]) {
+		int hits = 0;
+
+		// a box without size still covers the tiles it is on the edge of
+		halfWidth = Math.max(halfWidth, SKIN);
+		halfHeight = Math.max(halfHeight, SKIN);
+
+		if (dx != 0) {
+			final float nx = sweep(map, x, y, halfWidth, halfHeight, dx, true);
+
+			if (nx != x + dx) {
+				hits |= HIT_X;
+			}
+			x = nx;
+		}
+
+		if (dy != 0) {
+			final float ny = sweep(map, y, x, halfHeight, halfWidth, dy, false);
+
+			if (ny != y + dy) {
+				hits |= HIT_Y;
+			}
+			y = ny;
+		}
+
+		out[0] = x;
+		out[1] = y;
+
+		return hits;
+	}
+
+	/*
+	 * Moves the box by d along one axis, along x if alongX. pos and half are
+	 * along the axis, cross and crossHalf along the other one. The tiles the
+	 * leading edge enters are tested one line after the other.
+	 */
+	private static float sweep(ITileMap map, float pos, float cross, float half, float crossHalf, float d,
+			boolean alongX) {
+		final int first = (int) Math.floor(cross - crossHalf);
+		final int last = (int) Math.ceil(cross + crossHalf) - 1;
+
+		if (d > 0) {
+			final int from = (int) Math.ceil(pos + half);
+			final int to = (int) Math.ceil(pos + half + d) - 1;
+
+			for (int line = from; line <= to; ++line) {
+				if (isBlocked(map, line, first, last, alongX)) {
+					return Math.max(pos, line - half - SKIN);
+				}
+			}
+		} else {
+			final int from = (int) Math.floor(pos - half) - 1;
+			final int to = (int) Math.floor(pos - half + d);
+
+			for (int line = from; line >= to; --line) {
+				if (isBlocked(map, line, first, last, alongX)) {
+					return Math.min(pos, line + 1 + half + SKIN);
+				}
+			}
+		}
+
+		return pos + d;
+	}
+
+	private static boolean isBlocked(ITileMap map, int line, int first, int last, boolean alongX) {
+		for (int i = first; i <= last; ++i) {
+			final byte flags = alongX ? map.getTileFlags(line, i) : map.getTileFlags(i, line);
+
+			if ((flags & BLOCKING) != 0) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
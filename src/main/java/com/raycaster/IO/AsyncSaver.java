@@ -0,0 +1,192 @@
+package com.raycaster.IO;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AsyncSaver
+ *
+ * Saves GameFiles on a background thread, so the game loop does not wait
+ * for the disk. save() only takes a snapshot of the object, serializing,
+ * syncing and replacing the file happen later in order of the calls. A save
+ * either replaces the file completely or not at all.
+ *
+ * At most maxPending saves are queued or running, further calls are
+ * rejected instead of piling up snapshots and blocking.
+ */
+public class AsyncSaver implements Closeable {
+
+	/**
+	 * Receives the result of a save, called on the save thread.
+	 */
+	public interface ISaveCallback {
+		/**
+		 * @param file
+		 * @param nanos
+		 *            time the save took on the save thread
+		 */
+		public void onSaved(File file, long nanos);
+
+		/**
+		 * @param file
+		 *            file which has been left unchanged
+		 * @param error
+		 */
+		public void onFailed(File file, Exception error);
+	}
+
+	public static final int DEFAULT_MAX_PENDING = 2;
+
+	private final int m_maxPending;
+	private final IStreamCodec m_codec;
+
+	private final AtomicInteger m_pending = new AtomicInteger();
+
+	private final ExecutorService m_executor;
+
+	public AsyncSaver() {
+		this(DEFAULT_MAX_PENDING, new DeflateCodec());
+	}
+
+	/**
+	 * @param maxPending
+	 *            number of saves which may be queued or running
+	 * @param codec
+	 *            codec of the written files
+	 */
+	public AsyncSaver(int maxPending, IStreamCodec codec) {
+		if (maxPending < 1) {
+			throw new IllegalArgumentException("maxPending has to be at least 1");
+		}
+
+		m_maxPending = maxPending;
+		m_codec = codec;
+
+		m_executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "EpicRay-Save");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Takes a snapshot of source and saves it to file in the background. Call
+	 * this on the thread changing source.
+	 *
+	 * @param source
+	 * @param file
+	 * @param callback
+	 *            may be null, failed saves are printed then
+	 * @return false if maxPending saves are already pending, nothing is
+	 *         saved then
+	 */
+	public boolean save(ISnapshotable source, final File file, final ISaveCallback callback) {
+		if (m_pending.incrementAndGet() > m_maxPending) {
+			m_pending.decrementAndGet();
+			return false;
+		}
+
+		final ISnapshot snapshot;
+
+		try {
+			snapshot = source.snapshot();
+		} catch (RuntimeException e) {
+			m_pending.decrementAndGet();
+			throw e;
+		}
+
+		try {
+			m_executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						write(snapshot, file, callback);
+					} finally {
+						m_pending.decrementAndGet();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			// closed
+			m_pending.decrementAndGet();
+			closeSnapshot(snapshot);
+			throw e;
+		}
+
+		return true;
+	}
+
+	private final void write(ISnapshot snapshot, File file, ISaveCallback callback) {
+		final long start = System.nanoTime();
+		final File temp = new File(file.getPath() + ".tmp");
+
+		try {
+			try (GameFile gameFile = new GameFile(temp.getPath(), m_codec)) {
+				gameFile.setSyncOnClose(true);
+				gameFile.saveSaveable(snapshot);
+			}
+
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException | RuntimeException e) {
+			temp.delete();
+
+			if (callback != null) {
+				callback.onFailed(file, e);
+			} else {
+				System.err.println("Saving " + file + " failed");
+				e.printStackTrace();
+			}
+			return;
+		} finally {
+			closeSnapshot(snapshot);
+		}
+
+		if (callback != null) {
+			callback.onSaved(file, System.nanoTime() - start);
+		}
+	}
+
+	private static void closeSnapshot(ISnapshot snapshot) {
+		try {
+			snapshot.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Returns the number of saves queued or running
+	 *
+	 * @return
+	 */
+	public final int getPendingCount() {
+		return m_pending.get();
+	}
+
+	/**
+	 * Finishes the pending saves and stops the save thread. Blocks, call it
+	 * when the game is closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		m_executor.shutdown();
+
+		try {
+			m_executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for saves", e);
+		}
+	}
+}
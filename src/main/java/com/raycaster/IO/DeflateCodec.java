@@ -0,0 +1,84 @@
+package com.raycaster.IO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses the data with java.util.zip.Deflater. The level only matters
+ * for writing.
+ */
+public final class DeflateCodec implements IStreamCodec {
+
+	public static final byte ID = 1;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final int m_level;
+
+	/**
+	 * Fastest compression, game files are mostly repeated records which
+	 * compress well anyway.
+	 */
+	public DeflateCodec() {
+		this(Deflater.BEST_SPEED);
+	}
+
+	/**
+	 * @param level
+	 *            Deflater.BEST_SPEED (1) to Deflater.BEST_COMPRESSION (9)
+	 */
+	public DeflateCodec(int level) {
+		if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)
+				&& level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level " + level);
+		}
+
+		m_level = level;
+	}
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	@Override
+	public OutputStream wrapOutput(OutputStream out) {
+		final Deflater deflater = new Deflater(m_level);
+
+		return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					deflater.end();
+				}
+			}
+		};
+	}
+
+	@Override
+	public InputStream wrapInput(InputStream in) {
+		final Inflater inflater = new Inflater();
+
+		return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					inflater.end();
+				}
+			}
+		};
+	}
+
+	public final int getLevel() {
+		return m_level;
+	}
+}
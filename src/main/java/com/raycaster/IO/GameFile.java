@@ -1,20 +1,86 @@
 package com.raycaster.IO;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import com.raycaster.Renderer.EpicRayRenderingAttributes;
 import com.raycaster.Tile.Tile;
 import com.raycaster.Tile.TileMap;
+import com.raycaster.Tile.World;
 
+/**
+ * GameFile
+ * 
+ * Files start with a header of magic number, version and the id of the
+ * IStreamCodec the rest of the file is encoded with. Files without header
+ * from older versions are read as plain data.
+ * 
+ * Saveables are created by the factory registered for their tag. Each tag
+ * is written once per file, later records refer to it by a varint id.
+ * 
+ * The file is opened on the first read or write and stays open until
+ * closed, use try-with-resources:
+ * 
+ * <pre>
+ * try (GameFile file = new GameFile(name, new DeflateCodec())) {
+ * 	file.saveSaveable(world);
+ * }
+ * </pre>
+ */
 public class GameFile implements IGameFile {
 
+	public static final int MAGIC = 0x45524746; // "ERGF"
+	public static final byte VERSION = 2;
+	
+	// first version with a per file tag table
+	private static final byte TAG_TABLE_VERSION = 2;
+	
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	private static final HashMap<Byte, IStreamCodec> m_codecs = new HashMap<Byte, IStreamCodec>();
+	private static final HashMap<String, ISaveableFactory> m_factories = new HashMap<String, ISaveableFactory>();
+	
+	static {
+		registerCodec(new PlainCodec());
+		registerCodec(new DeflateCodec());
+		
+		registerSaveable("TileMap", new ISaveableFactory() {
+			@Override
+			public Saveable<?> create() {
+				return new TileMap();
+			}
+		});
+		registerSaveable("Tile", new ISaveableFactory() {
+			@Override
+			public Saveable<?> create() {
+				return new Tile();
+			}
+		});
+		registerSaveable("ERRAttribs", new ISaveableFactory() {
+			@Override
+			public Saveable<?> create() {
+				return new EpicRayRenderingAttributes();
+			}
+		});
+		registerSaveable("World", new ISaveableFactory() {
+			@Override
+			public Saveable<?> create() {
+				return new World(null);
+			}
+		});
+	}
+	
 	DataInputStream m_inputStream;
 	DataOutputStream m_outputStream;
 	
@@ -23,10 +89,112 @@ public class GameFile implements IGameFile {
 	boolean m_input = false;
 	boolean m_output = false;
 	
+	private final IStreamCodec m_codec;
+	
+	// force written data to disk on close
+	private boolean m_sync = false;
+	
+	// version of the file being read
+	private byte m_version;
+	
+	// tag table of the file: ids of written tags, factories of read ones
+	private final HashMap<String, Integer> m_writtenTags = new HashMap<String, Integer>();
+	private final ArrayList<ISaveableFactory> m_readFactories = new ArrayList<ISaveableFactory>();
+	
 	public GameFile(String filename) {
+		this(filename, new PlainCodec());
+	}
+	
+	/**
+	 * @param filename
+	 * @param codec
+	 *            codec used for writing, reading uses the one of the file
+	 */
+	public GameFile(String filename, IStreamCodec codec) {
 		m_filename = filename;
+		m_codec = codec;
+	}
+	
+	/**
+	 * Makes close() wait until the written file is on disk, e.g. for saves
+	 * which have to survive a crash. Off by default, takes effect the next
+	 * time the file is opened for writing.
+	 * 
+	 * @param sync
+	 */
+	public void setSyncOnClose(boolean sync) {
+		m_sync = sync;
+	}
+	
+	/**
+	 * Makes a codec available for reading files, replacing the one with the
+	 * same id.
+	 * 
+	 * @param codec
+	 */
+	public static synchronized void registerCodec(IStreamCodec codec) {
+		m_codecs.put(codec.getId(), codec);
+	}
+	
+	private static synchronized IStreamCodec getCodec(byte id) {
+		return m_codecs.get(id);
+	}
+	
+	/**
+	 * Makes Saveables with the given tag loadable, replacing the factory
+	 * registered for it before.
+	 * 
+	 * @param tag
+	 *            as returned by Saveable.getTag()
+	 * @param factory
+	 */
+	public static synchronized void registerSaveable(String tag, ISaveableFactory factory) {
+		m_factories.put(tag, factory);
+	}
+	
+	private static synchronized ISaveableFactory getFactory(String tag) throws IOException {
+		final ISaveableFactory factory = m_factories.get(tag);
+		
+		if (factory == null) {
+			throw new IOException("No Saveable registered for tag " + tag);
+		}
 		
-		 
+		return factory;
+	}
+	
+	/**
+	 * Writes an unsigned LEB128 varint
+	 * 
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeVarInt(int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			m_outputStream.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		m_outputStream.writeByte(value);
+	}
+	
+	/**
+	 * Reads an unsigned LEB128 varint
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public int readVarInt() throws IOException {
+		int value = 0;
+		
+		for (int shift = 0; shift < 32; shift += 7) {
+			final byte b = m_inputStream.readByte();
+			value |= (b & 0x7f) << shift;
+			
+			if (b >= 0) {
+				return value;
+			}
+		}
+		
+		throw new IOException("Malformed varint in " + m_filename);
 	}
 
 	@Override
@@ -96,41 +264,130 @@ public class GameFile implements IGameFile {
 		return false;
 	}
 	
-	public void prepareForSaving(){
-		File file = new File(m_filename);
+	/**
+	 * Opens the file for writing and writes the header
+	 * 
+	 * @throws IOException
+	 */
+	public void prepareForSaving() throws IOException {
+		if (m_output) {
+			return;
+		}
 		
-		if (!file.exists()) {
-			m_input = false;
-			try {
-				file.createNewFile();
-			} catch (IOException e) {
-				throw new RuntimeException("Error in File Creation GameFile");
-			}
+		final FileOutputStream outFile = new FileOutputStream(m_filename);
+		
+		try {
+			final OutputStream target = m_sync ? new SyncOutputStream(outFile) : outFile;
+			final BufferedOutputStream raw = new BufferedOutputStream(target, BUFFER_SIZE);
+			final DataOutputStream header = new DataOutputStream(raw);
+			
+			header.writeInt(MAGIC);
+			header.writeByte(VERSION);
+			header.writeByte(m_codec.getId());
+			
+			m_writtenTags.clear();
+			
+			// buffer small writes in front of the codec as well
+			m_outputStream = new DataOutputStream(
+					new BufferedOutputStream(m_codec.wrapOutput(raw), BUFFER_SIZE));
+		} catch (IOException e) {
+			outFile.close();
+			throw e;
 		}
 		
-		//Create DataOutputStream
 		m_output = true;
+	}
+	
+	/**
+	 * Opens the file for reading and reads the header, does nothing if the
+	 * file does not exist.
+	 * 
+	 * @throws IOException
+	 */
+	public void prepareForLoading() throws IOException {
+		if (m_input) {
+			return;
+		}
+		
+		final File file = new File(m_filename);
+		
+		if (!file.exists()){
+			return;
+		}
+		
+		final FileInputStream inFile = new FileInputStream(file);
+		
 		try {
-			FileOutputStream outFile = new FileOutputStream(file);
-			m_outputStream = new DataOutputStream(outFile);
-		} catch (FileNotFoundException e) {
-			m_output = false;
+			final BufferedInputStream raw = new BufferedInputStream(inFile, BUFFER_SIZE);
+			final DataInputStream header = new DataInputStream(raw);
+			
+			raw.mark(8);
+			
+			if (file.length() >= 6 && header.readInt() == MAGIC) {
+				final byte version = header.readByte();
+				
+				if (version > VERSION) {
+					throw new IOException(m_filename + " has unsupported version " + version);
+				}
+				
+				m_version = version;
+				
+				final byte id = header.readByte();
+				final IStreamCodec codec = getCodec(id);
+				
+				if (codec == null) {
+					throw new IOException(m_filename + " uses unknown codec " + id);
+				}
+				
+				m_inputStream = new DataInputStream(
+						new BufferedInputStream(codec.wrapInput(raw), BUFFER_SIZE));
+			} else {
+				// no header, plain data of an older version
+				raw.reset();
+				m_inputStream = header;
+				m_version = 0;
+			}
+		} catch (IOException e) {
+			inFile.close();
+			throw e;
 		}
+		
+		m_readFactories.clear();
+		m_input = true;
 	}
 	
-	public void prepareForLoading(){
-		File file = new File(m_filename);
+	/**
+	 * Flushes and closes the file. Can be called more than once.
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException error = null;
 		
-		if (file.exists()){
-			FileInputStream inFile;
-			m_input = true;
-
+		if (m_outputStream != null) {
 			try {
-				inFile = new FileInputStream(file);
-				m_inputStream = new DataInputStream(inFile);
-			} catch (FileNotFoundException e) {
-				m_input = false;
+				m_outputStream.close();
+			} catch (IOException e) {
+				error = e;
 			}
+			m_outputStream = null;
+		}
+		
+		if (m_inputStream != null) {
+			try {
+				m_inputStream.close();
+			} catch (IOException e) {
+				if (error == null) {
+					error = e;
+				}
+			}
+			m_inputStream = null;
+		}
+		
+		m_output = false;
+		m_input = false;
+		
+		if (error != null) {
+			throw error;
 		}
 	}
 
@@ -145,26 +402,27 @@ public class GameFile implements IGameFile {
 			}
 		}
 		
-		String tag = readString();
-		
-		Saveable<?> object = null;
+		final ISaveableFactory factory;
 		
-		if (tag.equals("TileMap")){
-			object = new TileMap();
-
-			object.loadFromFile(this);
-		} else if (tag.equals("Tile")){
-			object = new Tile();
-
-			object.loadFromFile(this);
-		} else if (tag.equals("ERRAttribs")){
-			object = new EpicRayRenderingAttributes();
-
-			object.loadFromFile(this);
+		if (m_version < TAG_TABLE_VERSION) {
+			factory = getFactory(readString());
 		} else {
-			throw new RuntimeException("Unknown tag in GameFile.readSaveable!!");
+			// 0 defines the next tag, otherwise id + 1 of a defined one
+			final int ref = readVarInt();
+			
+			if (ref == 0) {
+				factory = getFactory(readString());
+				m_readFactories.add(factory);
+			} else if (ref <= m_readFactories.size()) {
+				factory = m_readFactories.get(ref - 1);
+			} else {
+				throw new IOException("Undefined tag id " + (ref - 1) + " in " + m_filename);
+			}
 		}
 		
+		final Saveable<?> object = factory.create();
+		object.loadFromFile(this);
+		
 		return object;
 	}
 
@@ -183,10 +441,46 @@ public class GameFile implements IGameFile {
 			return false;
 		}
 		
-		writeString(o.getTag());
+		final String tag = o.getTag();
+		final Integer id = m_writtenTags.get(tag);
+		
+		if (id == null) {
+			writeVarInt(0);
+			writeString(tag);
+			m_writtenTags.put(tag, m_writtenTags.size());
+		} else {
+			writeVarInt(id + 1);
+		}
+		
 		o.saveToFile(this);
 		
 		return true;
 	}
 
+	/*
+	 * Syncs the file before closing it
+	 */
+	private static final class SyncOutputStream extends FilterOutputStream {
+		private final FileOutputStream m_file;
+		
+		SyncOutputStream(FileOutputStream file) {
+			super(file);
+			m_file = file;
+		}
+		
+		@Override
+		public void write(byte b[], int off, int len) throws IOException {
+			m_file.write(b, off, len);
+		}
+		
+		@Override
+		public void close() throws IOException {
+			try {
+				m_file.getFD().sync();
+			} finally {
+				m_file.close();
+			}
+		}
+	}
+
 }
@@ -1,15 +1,18 @@
 package com.raycaster.IO;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 
 /**
  * Saves Saveables.
  * 
+ * Files stay open until closed.
+ * 
  * @author Squareys
  * 
  */
-public interface IGameFile {
+public interface IGameFile extends Closeable {
 
 	public String readString() throws IOException;
 
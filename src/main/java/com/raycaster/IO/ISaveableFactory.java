@@ -0,0 +1,16 @@
+package com.raycaster.IO;
+
+/**
+ * Creates empty Saveables of one tag for GameFile to load into.
+ * 
+ * @see GameFile#registerSaveable(String, ISaveableFactory)
+ */
+public interface ISaveableFactory {
+
+	/**
+	 * Returns a new Saveable, its loadFromFile is called next
+	 * 
+	 * @return
+	 */
+	public Saveable<?> create();
+}
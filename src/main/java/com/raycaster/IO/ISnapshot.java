@@ -0,0 +1,16 @@
+package com.raycaster.IO;
+
+import java.io.Closeable;
+
+/**
+ * The state of an object at one point in time, saved like the object itself
+ * while the object keeps changing. Loading a snapshot gives the object it
+ * was taken from, not a snapshot.
+ * 
+ * Close it when done, the object may keep copies of changed data for it
+ * until then.
+ * 
+ * @see ISnapshotable
+ */
+public interface ISnapshot extends Saveable<ISnapshot>, Closeable {
+}
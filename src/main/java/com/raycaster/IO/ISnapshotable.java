@@ -0,0 +1,17 @@
+package com.raycaster.IO;
+
+/**
+ * Objects which can be saved on another thread while they are being
+ * changed, see AsyncSaver.
+ */
+public interface ISnapshotable {
+
+	/**
+	 * Returns a snapshot of the current state. Has to be called on the
+	 * thread changing the object, taking it must be cheap as it is meant to
+	 * be called from the game loop.
+	 * 
+	 * @return
+	 */
+	public ISnapshot snapshot();
+}
@@ -0,0 +1,40 @@
+package com.raycaster.IO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encoding of the data of a GameFile, e.g. a compression. The id is stored
+ * in the header of every file, so it can be read without knowing how it was
+ * written.
+ */
+public interface IStreamCodec {
+
+	/**
+	 * Returns the id stored in the file header, unique among registered codecs
+	 * 
+	 * @return
+	 */
+	public byte getId();
+
+	/**
+	 * Wraps the stream the encoded data is written to. Closing the returned
+	 * stream has to finish the encoding and close out.
+	 * 
+	 * @param out
+	 * @return
+	 * @throws IOException
+	 */
+	public OutputStream wrapOutput(OutputStream out) throws IOException;
+
+	/**
+	 * Wraps the stream the encoded data is read from. Closing the returned
+	 * stream has to close in.
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public InputStream wrapInput(InputStream in) throws IOException;
+}
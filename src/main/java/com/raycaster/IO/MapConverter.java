@@ -0,0 +1,49 @@
+package com.raycaster.IO;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.raycaster.Tile.ITileMap;
+import com.raycaster.Tile.MappedTileMap;
+
+/**
+ * Converts tile maps saved with GameFile to binary map files, which can be
+ * opened with {@link MappedTileMap#open(File)}.
+ * 
+ * Usage: MapConverter &lt;game file&gt; &lt;binary map file&gt;
+ */
+public final class MapConverter {
+
+	private MapConverter() {
+	}
+
+	/**
+	 * Converts the tile map at the start of a game file
+	 * 
+	 * @param gameFile
+	 * @param mapFile
+	 * @throws IOException
+	 */
+	public static void convert(File gameFile, File mapFile) throws IOException {
+		final Saveable<?> saveable;
+
+		try (GameFile file = new GameFile(gameFile.getPath())) {
+			saveable = file.readSaveable();
+		}
+
+		if (!(saveable instanceof ITileMap)) {
+			throw new IOException(gameFile + " does not start with a tile map");
+		}
+
+		MappedTileMap.write((ITileMap) saveable, mapFile);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: MapConverter <game file> <binary map file>");
+			System.exit(1);
+		}
+
+		convert(new File(args[0]), new File(args[1]));
+	}
+}
@@ -0,0 +1,199 @@
+package com.raycaster.IO;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.raycaster.Bitmap.MipMapBuilder;
+import com.raycaster.Bitmap.PowerOf2IntBitmap;
+
+/**
+ * MipMapCache
+ *
+ * Generated mip levels on disk, one file per source in a directory, named
+ * by a hash of the source file. A texture whose source has not changed
+ * since the last launch is read back instead of being filtered again.
+ *
+ * File format:
+ *
+ * <pre>
+ * int  MAGIC "ERMM"
+ * byte VERSION
+ * byte 1 if gamma correct
+ * int  width, height of level 0
+ * int  number of levels
+ * int  pixels of level 1, 2, ..., column major
+ * </pre>
+ */
+public class MipMapCache {
+
+	public static final int MAGIC = 0x45524d4d; // "ERMM"
+	public static final byte VERSION = 1;
+
+	private static final int HEADER_SIZE = 4 + 1 + 1 + 4 + 4 + 4;
+
+	private final File m_directory;
+
+	/**
+	 * @param directory
+	 *            created if it does not exist
+	 * @throws IOException
+	 */
+	public MipMapCache(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory);
+		}
+
+		m_directory = directory;
+	}
+
+	/**
+	 * Returns a hex SHA-1 of the data, used as key
+	 *
+	 * @param data
+	 * @return
+	 */
+	public static String hash(byte data[]) {
+		final MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has SHA-1
+			throw new IllegalStateException(e);
+		}
+
+		final byte sum[] = digest.digest(data);
+		final StringBuilder hex = new StringBuilder(sum.length * 2);
+
+		for (byte b : sum) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(b & 0xf, 16));
+		}
+
+		return hex.toString();
+	}
+
+	/**
+	 * Reads the levels cached for key. Level 0 is base and not read from the
+	 * cache.
+	 *
+	 * @param key
+	 * @param base
+	 * @param gammaCorrect
+	 * @return the levels or null if none are cached for key and base
+	 * @throws IOException
+	 */
+	public PowerOf2IntBitmap[] load(String key, PowerOf2IntBitmap base, boolean gammaCorrect) throws IOException {
+		final File file = getFile(key, gammaCorrect);
+
+		if (!file.exists()) {
+			return null;
+		}
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			final FileChannel channel = raf.getChannel();
+			final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.remaining() < HEADER_SIZE
+					|| buffer.getInt() != MAGIC
+					|| buffer.get() != VERSION
+					|| buffer.get() != (gammaCorrect ? 1 : 0)
+					|| buffer.getInt() != base.getWidth()
+					|| buffer.getInt() != base.getHeight()) {
+				// stale or foreign file, generate again
+				return null;
+			}
+
+			final int count = buffer.getInt();
+
+			if (count != MipMapBuilder.getLevelCount(base.getWidth(), base.getHeight())) {
+				return null;
+			}
+
+			final PowerOf2IntBitmap levels[] = new PowerOf2IntBitmap[count];
+			final IntBuffer pixels = buffer.asIntBuffer();
+
+			levels[0] = base;
+
+			int width = base.getWidth();
+			int height = base.getHeight();
+
+			for (int i = 1; i < levels.length; ++i) {
+				width = Math.max(1, width >> 1);
+				height = Math.max(1, height >> 1);
+
+				if (pixels.remaining() < width * height) {
+					return null;
+				}
+
+				levels[i] = new PowerOf2IntBitmap(width, height);
+				pixels.get(levels[i].m_pixels);
+			}
+
+			return levels;
+		}
+	}
+
+	/**
+	 * Stores levels 1 and up for key
+	 *
+	 * @param key
+	 * @param levels
+	 * @param gammaCorrect
+	 * @throws IOException
+	 */
+	public void store(String key, PowerOf2IntBitmap levels[], boolean gammaCorrect) throws IOException {
+		int size = HEADER_SIZE;
+
+		for (int i = 1; i < levels.length; ++i) {
+			size += levels[i].m_pixels.length * 4;
+		}
+
+		final ByteBuffer buffer = ByteBuffer.allocate(size);
+
+		buffer.putInt(MAGIC);
+		buffer.put(VERSION);
+		buffer.put((byte) (gammaCorrect ? 1 : 0));
+		buffer.putInt(levels[0].getWidth());
+		buffer.putInt(levels[0].getHeight());
+		buffer.putInt(levels.length);
+
+		final IntBuffer pixels = buffer.asIntBuffer();
+
+		for (int i = 1; i < levels.length; ++i) {
+			pixels.put(levels[i].m_pixels);
+		}
+
+		// the int view does not move the position
+		buffer.rewind();
+
+		final File file = getFile(key, gammaCorrect);
+		final File temp = File.createTempFile(file.getName(), ".tmp", m_directory);
+
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+				raf.getChannel().write(buffer);
+			}
+
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private final File getFile(String key, boolean gammaCorrect) {
+		return new File(m_directory, key + (gammaCorrect ? "-linear" : "") + ".mip");
+	}
+
+	public final File getDirectory() {
+		return m_directory;
+	}
+}
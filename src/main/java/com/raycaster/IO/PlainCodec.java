@@ -0,0 +1,27 @@
+package com.raycaster.IO;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Stores the data as is.
+ */
+public final class PlainCodec implements IStreamCodec {
+
+	public static final byte ID = 0;
+
+	@Override
+	public byte getId() {
+		return ID;
+	}
+
+	@Override
+	public OutputStream wrapOutput(OutputStream out) {
+		return out;
+	}
+
+	@Override
+	public InputStream wrapInput(InputStream in) {
+		return in;
+	}
+}
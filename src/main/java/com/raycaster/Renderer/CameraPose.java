@@ -0,0 +1,111 @@
+package com.raycaster.Renderer;
+
+import com.raycaster.Entities.Collideable;
+import com.raycaster.Entities.IEntity;
+import com.raycaster.Entities.ISprite;
+import com.raycaster.Tile.EntityGrid;
+import com.raycaster.Tile.ITile;
+import com.raycaster.utils.IWorld;
+
+/**
+ * A camera position and view direction, usable as camera entity of a
+ * renderer without being placed into any tile of a world.
+ * 
+ * Used by the OffscreenRenderer to render previews from arbitrary poses.
+ */
+public class CameraPose implements IEntity {
+
+	private float m_x;
+	private float m_y;
+
+	private float m_dirX;
+	private float m_dirY;
+
+	public CameraPose(final float x, final float y, final float dirX, final float dirY) {
+		set(x, y, dirX, dirY);
+	}
+
+	public CameraPose(final CameraPose pose) {
+		set(pose);
+	}
+
+	public final void set(final float x, final float y, final float dirX, final float dirY) {
+		m_x = x;
+		m_y = y;
+
+		m_dirX = dirX;
+		m_dirY = dirY;
+	}
+
+	public final void set(final CameraPose pose) {
+		set(pose.m_x, pose.m_y, pose.m_dirX, pose.m_dirY);
+	}
+
+	@Override
+	public final float getX() {
+		return m_x;
+	}
+
+	@Override
+	public final float getY() {
+		return m_y;
+	}
+
+	@Override
+	public final float getViewDirectionX() {
+		return m_dirX;
+	}
+
+	@Override
+	public final float getViewDirectionY() {
+		return m_dirY;
+	}
+
+	@Override
+	public ISprite getSprite() {
+		return null;
+	}
+
+	@Override
+	public int getGridSlot() {
+		return EntityGrid.NONE;
+	}
+
+	@Override
+	public int getWidth() {
+		return 0;
+	}
+
+	@Override
+	public int getHeight() {
+		return 0;
+	}
+
+	@Override
+	public IWorld getWorld() {
+		return null;
+	}
+
+	@Override
+	public ITile getCurrentTile() {
+		return null;
+	}
+
+	@Override
+	public void setCurrentTile(ITile tile) {
+		// not placed in the world
+	}
+
+	@Override
+	public void onCollision(Collideable c) {
+	}
+
+	@Override
+	public boolean isCollidingWidth(Collideable c) {
+		return false;
+	}
+
+	@Override
+	public void onUpdate(float timeDiff) {
+	}
+}
@@ -0,0 +1,100 @@
+package com.raycaster.Renderer;
+
+/**
+ * Per column ray setup of a column renderer.
+ * 
+ * The camera space direction of every column's ray only depends on the
+ * resolution and field of view, so it is computed once. Every frame the table
+ * is updated with a single rotation by the view direction, which gives the
+ * world space ray directions and the DDA delta distances without a square
+ * root per column.
+ * 
+ * The results are kept in flat arrays (structure of arrays), so the update
+ * loop is simple enough for the JIT to vectorise.
+ */
+public final class ColumnTable {
+
+	private final int m_width;
+
+	// camera space ray of a column is (1, m_camOffset[x])
+	private final float[] m_camOffset;
+	// length of the camera space ray
+	private final float[] m_camLength;
+
+	public final float[] m_dirX;
+	public final float[] m_dirY;
+
+	public final float[] m_deltaDistX;
+	public final float[] m_deltaDistY;
+
+	/**
+	 * @param width
+	 *            number of columns
+	 * @param planeLength
+	 *            half width of the camera plane at distance 1, defines the
+	 *            field of view
+	 */
+	public ColumnTable(final int width, final float planeLength) {
+		m_width = width;
+
+		m_camOffset = new float[width];
+		m_camLength = new float[width];
+
+		m_dirX = new float[width];
+		m_dirY = new float[width];
+
+		m_deltaDistX = new float[width];
+		m_deltaDistY = new float[width];
+
+		final float factor = 2.0f / width;
+		float f2 = -1.0f;
+
+		for (int x = 0; x < width; f2 += factor, ++x) {
+			final float offset = planeLength * f2;
+
+			m_camOffset[x] = offset;
+			m_camLength[x] = (float) Math.sqrt(1.0 + offset * offset);
+		}
+	}
+
+	/**
+	 * Rotate the rays of the columns start (inclusive) to end (exclusive) by
+	 * the view direction. Different column ranges can be updated in
+	 * parallel.
+	 * 
+	 * @param dirX
+	 *            view direction, does not need to be normalized
+	 * @param dirY
+	 * @param start
+	 * @param end
+	 */
+	public final void update(final float dirX, final float dirY, final int start, final int end) {
+		final float dirLength = (float) Math.sqrt(dirX * dirX + dirY * dirY);
+
+		final float[] camOffset = m_camOffset;
+		final float[] camLength = m_camLength;
+		final float[] rayDirX = m_dirX;
+		final float[] rayDirY = m_dirY;
+		final float[] deltaDistX = m_deltaDistX;
+		final float[] deltaDistY = m_deltaDistY;
+
+		for (int x = start; x < end; ++x) {
+			final float offset = camOffset[x];
+
+			final float rx = dirX - dirY * offset;
+			final float ry = dirY + dirX * offset;
+			final float length = dirLength * camLength[x];
+
+			rayDirX[x] = rx;
+			rayDirY[x] = ry;
+
+			// distance along the ray from one x (or y) side to the next
+			deltaDistX[x] = length / Math.abs(rx);
+			deltaDistY[x] = length / Math.abs(ry);
+		}
+	}
+
+	public final int getWidth() {
+		return m_width;
+	}
+}
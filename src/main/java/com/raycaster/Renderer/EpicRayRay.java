@@ -1,33 +1,60 @@
 package com.raycaster.Renderer;
 
-import com.raycaster.Bitmap.CombinedCursor;
-import com.raycaster.Bitmap.FastFloatBitmapCursor;
-import com.raycaster.Bitmap.FastIntBitmapCursor;
-import com.raycaster.Bitmap.IBitmap;
-import com.raycaster.Bitmap.ICursor2D;
+import java.util.Arrays;
+
+import com.raycaster.Bitmap.FastIntBitmap;
+import com.raycaster.Bitmap.FloatCursor;
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.Bitmap.IntCursor;
+import com.raycaster.Bitmap.IntFloatCursor;
 import com.raycaster.Bitmap.PowerOf2IntMipMap;
+import com.raycaster.Bitmap.TextureAtlas;
 import com.raycaster.Tile.ITile;
 import com.raycaster.Tile.ITileMap;
+import com.raycaster.Tile.TileFlags;
 
 public class EpicRayRay implements IRay, Runnable {
 
-	protected final float m_x;
-	protected final float m_y;
+	protected float m_x;
+	protected float m_y;
 
-	protected final float m_dirX;
-	protected final float m_dirY;
+	protected float m_dirX;
+	protected float m_dirY;
 
 	protected int m_stepX;
 	protected int m_stepY;
 
-	private final FastIntBitmapCursor m_dest;
-	private final FastFloatBitmapCursor m_zBuf;
-	private final CombinedCursor<Integer, Float> m_combined;
+	private final IntCursor m_dest;
+	private final FloatCursor m_zBuf;
+	private final IntFloatCursor m_combined;
+
+	// scratch cursors for floor and ceiling, reused for every tile
+	private final IntCursor m_ceilCursorC;
+	private final FloatCursor m_ceilCursorZ;
+	private final IntCursor m_floorCursorC;
+	private final FloatCursor m_floorCursorZ;
 	
-	private final ITileMap m_tileMap;
+	private ITileMap m_tileMap;
+
+	// textures referenced by id are read from here
+	private TextureAtlas m_atlas;
+
+	// texture levels of the current tile
+	private final Texels m_wallTexels = new Texels();
+	private final Texels m_ceilTexels = new Texels();
+	private final Texels m_floorTexels = new Texels();
 
 	protected final int m_height; // length of m_pixels
 
+	// cells the last cast went through, if recording
+	private boolean m_recordCells;
+	private int m_cellX[] = new int[16];
+	private int m_cellY[] = new int[16];
+	private int m_cellCount;
+
+	// distance of the opaque tile the last cast ended at
+	private float m_hitDistance;
+
 	@Deprecated
 	protected float m_length; // distance traveled
 
@@ -54,6 +81,10 @@ public class EpicRayRay implements IRay, Runnable {
 		float wallX;
 
 		public RenderVariables() {
+			reset();
+		}
+
+		final void reset() {
 			perpWallDist = 1.0f;
 
 			sideDistX = 0.0f;
@@ -95,35 +126,93 @@ public class EpicRayRay implements IRay, Runnable {
 		final void exchange() {
 			cur = !cur;
 		}
+
+		final void reset() {
+			cur = false;
+
+			a.reset();
+			b.reset();
+		}
 	}
 
 	final VariableStorage stor;
 
 	public EpicRayRay(final int height, final float startposX,
 			final float startposY, final float dirX, final float dirY,
-			final FastIntBitmapCursor dest, FastFloatBitmapCursor zBuffer, final ITileMap tilemap) {
-		m_x = startposX;
-		m_y = startposY;
+			final IntCursor dest, FloatCursor zBuffer, final ITileMap tilemap) {
+		this(height, dest, zBuffer);
 
-		m_dirX = dirX;
-		m_dirY = dirY;
+		m_tileMap = tilemap;
+		reset(startposX, startposY, dirX, dirY);
+	}
 
+	/**
+	 * Creates a ray for a column, which needs to be {@link #reset} before
+	 * casting. The cursors are expected to have their offset at the top of
+	 * the column and to move down the column with fwd().
+	 * 
+	 * @param height
+	 *            height of the column in pixels
+	 * @param dest
+	 * @param zBuffer
+	 */
+	public EpicRayRay(final int height, final IntCursor dest, final FloatCursor zBuffer) {
 		m_height = height;
 		m_dest = dest;
 		m_zBuf = zBuffer;
 
-		m_combined = new CombinedCursor<Integer, Float>(m_dest, m_zBuf);
+		m_combined = new IntFloatCursor(m_dest, m_zBuf);
+
+		m_ceilCursorC = m_dest.copy();
+		m_ceilCursorZ = m_zBuf.copy();
+		m_floorCursorC = m_dest.copy();
+		m_floorCursorZ = m_zBuf.copy();
 
 		stor = new VariableStorage();
+	}
 
+	/**
+	 * Re-initialise the ray for a new cast, without allocating anything.
+	 * 
+	 * @param startposX
+	 * @param startposY
+	 * @param dirX
+	 * @param dirY
+	 */
+	public final void reset(final float startposX, final float startposY, final float dirX, final float dirY) {
 		// distance of side to next side
-		final double dirXSq = m_dirX * m_dirX;
-		final double dirYSq = m_dirY * m_dirY;
+		final double dirXSq = dirX * dirX;
+		final double dirYSq = dirY * dirY;
 
-		m_deltaDistX = (float) Math.sqrt(1 + dirYSq / dirXSq);
-		m_deltaDistY = (float) Math.sqrt(1 + dirXSq / dirYSq);
+		reset(startposX, startposY, dirX, dirY,
+				(float) Math.sqrt(1 + dirYSq / dirXSq),
+				(float) Math.sqrt(1 + dirXSq / dirYSq));
+	}
+
+	/**
+	 * Re-initialise the ray with precomputed distances from one x (or y) side
+	 * to the next, see ColumnTable.
+	 * 
+	 * @param startposX
+	 * @param startposY
+	 * @param dirX
+	 * @param dirY
+	 * @param deltaDistX
+	 * @param deltaDistY
+	 */
+	public final void reset(final float startposX, final float startposY, final float dirX, final float dirY,
+			final float deltaDistX, final float deltaDistY) {
+		m_x = startposX;
+		m_y = startposY;
+
+		m_dirX = dirX;
+		m_dirY = dirY;
+
+		stor.reset();
+
+		m_deltaDistX = deltaDistX;
+		m_deltaDistY = deltaDistY;
 
-		
 		RenderVariables next = stor.getNextVariables();
 		// the tile position
 		next.mapX = (int) m_x;
@@ -148,9 +237,25 @@ public class EpicRayRay implements IRay, Runnable {
 
 		m_addX = (m_stepX == 1) ? 0.0f : 1.0f;
 		m_addY = (m_stepY == 1) ? 0.0f : 1.0f;
-		
+	}
+
+	/**
+	 * Set the tile map cast through by {@link #run()}
+	 * 
+	 * @param tilemap
+	 */
+	public final void setTileMap(final ITileMap tilemap) {
 		m_tileMap = tilemap;
+	}
 
+	/**
+	 * Set the atlas of textures referenced by id, null to only draw textures
+	 * referenced as bitmaps
+	 * 
+	 * @param atlas
+	 */
+	public final void setTextureAtlas(final TextureAtlas atlas) {
+		m_atlas = atlas;
 	}
 
 	@Override
@@ -183,21 +288,60 @@ public class EpicRayRay implements IRay, Runnable {
 		return m_height;
 	}
 
-	final float m_deltaDistX;
-	final float m_deltaDistY;
+	/**
+	 * Record the cells the following casts go through, see getCellCount()
+	 * 
+	 * @param record
+	 */
+	public final void setRecordCells(final boolean record) {
+		m_recordCells = record;
+	}
+
+	/**
+	 * Returns the number of cells the last cast went through from the camera
+	 * on, 0 if it did not record them
+	 * 
+	 * @return
+	 */
+	public final int getCellCount() {
+		return m_cellCount;
+	}
+
+	public final int getCellX(final int i) {
+		return m_cellX[i];
+	}
+
+	public final int getCellY(final int i) {
+		return m_cellY[i];
+	}
 
-	final float m_addX;
-	final float m_addY;
+	/**
+	 * Returns the perpendicular distance of the opaque tile the last cast
+	 * ended at, Float.MAX_VALUE if it left the map
+	 * 
+	 * @return
+	 */
+	public final float getHitDistance() {
+		return m_hitDistance;
+	}
+
+	float m_deltaDistX;
+	float m_deltaDistY;
+
+	float m_addX;
+	float m_addY;
 
 	@Override
 	public void cast(final ITileMap map) {
 		RenderVariables cur = stor.getVariables();
 		RenderVariables next = stor.getNextVariables();
 
-		ITile hitTile = null;
 		boolean hit = false; // wall hit flag
 		boolean outOfWorld = false;
 
+		m_cellCount = 0;
+		m_hitDistance = Float.MAX_VALUE;
+
 		if (next.sideDistX < next.sideDistY) {
 			next.perpWallDist = Math.abs(((float) next.mapX - m_x + m_addX) / m_dirX);
 		} else {
@@ -241,22 +385,39 @@ public class EpicRayRay implements IRay, Runnable {
 				next.perpWallDist = 0.001f;
 			}
 
-			hitTile = map.getTileAt(cur.mapX, cur.mapY);
+			// only the flags and palette index of the cell are read
+			final byte flags = map.getTileFlags(cur.mapX, cur.mapY);
 
-			if (hitTile == null) {
+			if ((flags & TileFlags.OUTSIDE) != 0) {
 				outOfWorld = true;
 				hit = true;
-			} else if (hitTile.isOpaque()) {
+			} else if ((flags & TileFlags.OPAQUE) != 0) {
 				hit = true;
+				m_hitDistance = cur.perpWallDist;
 			}
 
 			// draw the tile:
 			if (!outOfWorld) {
-				drawTile(hitTile);
+				if (m_recordCells) {
+					recordCell(cur.mapX, cur.mapY);
+				}
+
+				drawTile(flags, map.getPaletteTile(map.getTileType(cur.mapX, cur.mapY)));
 			}
 		} while (!hit);
 	}
 
+	private final void recordCell(final int x, final int y) {
+		if (m_cellCount == m_cellX.length) {
+			m_cellX = Arrays.copyOf(m_cellX, m_cellCount << 1);
+			m_cellY = Arrays.copyOf(m_cellY, m_cellCount << 1);
+		}
+
+		m_cellX[m_cellCount] = x;
+		m_cellY[m_cellCount] = y;
+		++m_cellCount;
+	}
+
 	private final void calculateNextLineHeight() {
 		final RenderVariables next = stor.getNextVariables();
 		// Calculate height of line to draw on screen
@@ -291,9 +452,10 @@ public class EpicRayRay implements IRay, Runnable {
 	/*
 	 * Draw a tile.
 	 * 
+	 * @param flags TileFlags of the cell
 	 * @param tile Tile to draw, not null.
 	 */
-	private void drawTile(final ITile tile) {
+	private void drawTile(final byte flags, final ITile tile) {
 		final RenderVariables cur = stor.getVariables();
 		final RenderVariables next = stor.getNextVariables();
 
@@ -314,19 +476,22 @@ public class EpicRayRay implements IRay, Runnable {
 		final EpicRayRenderingAttributes ra = (EpicRayRenderingAttributes) tile
 				.getRenderingAttributes();
 
-		if ((ra.m_textured && ra.m_wallTexture != null)) {
-			final IBitmap<Integer> texture = getMipMapTexture(ra.getWallTexture(), cur.lineHeight);
-			final ICursor2D<Integer> texCursor = texture.getCursor();
-			final float toTexture = (float) texture.getHeight()
+		final TextureAtlas atlas = m_atlas;
+
+		if (ra.m_textured && hasTexture(atlas, ra.m_wallTextureId, ra.m_wallTexture)) {
+			final Texels texture = m_wallTexels;
+			selectLevel(texture, atlas, ra.m_wallTextureId, ra.m_wallTexture, cur.lineHeight);
+
+			final float toTexture = (float) texture.m_height
 					/ (float) cur.lineHeight;
 			float texY = 0.0f;
 
-			int texX = (int) (cur.wallX * (float) texture.getWidth());
+			int texX = (int) (cur.wallX * (float) texture.m_width);
 			// code to flip the texture
 			if (cur.side == 0 && m_dirX > 0) {
-				texX = texture.getWidth() - texX - 1;
+				texX = texture.m_width - texX - 1;
 			} else if (cur.side == 1 && m_dirY < 0) {
-				texX = texture.getWidth() - texX - 1;
+				texX = texture.m_width - texX - 1;
 			}
 
 			if (cur.lineStart < 0) {
@@ -337,16 +502,16 @@ public class EpicRayRay implements IRay, Runnable {
 				texX = 0;
 			}
 			
-			if (texX > texture.getWidth() - 1) {
-				texX = texture.getWidth() - 1;
+			if (texX > texture.m_width - 1) {
+				texX = texture.m_width - 1;
 			}
 			
 			int lastTexY;
 			int ty;
 			lastTexY = ty = (int) texY;
-			texCursor.setPosition(texX, ty);
+			int texIndex = texture.index(texX, ty);
 			
-			int color = texCursor.get();
+			int color = texture.get(texIndex);
 			if (cur.side == 1) {
 				// make color darker for y-sides: R, G and B byte each
 				// divided through two
@@ -368,8 +533,8 @@ public class EpicRayRay implements IRay, Runnable {
 				ty = (int) texY;
 				
 				if (ty != lastTexY) {
-					texCursor.fwd(ty - lastTexY);
-					color = texCursor.get();
+					texIndex += ty - lastTexY;
+					color = texture.get(texIndex);
 					
 					if (cur.side == 1) {
 						// make color darker for y-sides: R, G and B byte
@@ -404,7 +569,7 @@ public class EpicRayRay implements IRay, Runnable {
 			}
 		}
 
-		if (tile.isOpaque())
+		if ((flags & TileFlags.OPAQUE) != 0)
 			return; // no floor or ceiling visible.
 
 		final int nInvLineHeight = next.lineStart - cur.drawStart;
@@ -413,11 +578,13 @@ public class EpicRayRay implements IRay, Runnable {
 			return; // floor not visible here.
 		}
 
-		final IBitmap<Integer> ceilTexture = getMipMapTexture(ra.m_ceilTexture, cur.lineHeight);;
-		final IBitmap<Integer> floorTexture = getMipMapTexture(ra.m_floorTexture, cur.lineHeight);;
+		final boolean texCeil = (flags & TileFlags.CEIL_TEXTURE) != 0
+				&& hasTexture(atlas, ra.m_ceilTextureId, ra.m_ceilTexture);
+		final boolean texFloor = (flags & TileFlags.FLOOR_TEXTURE) != 0
+				&& hasTexture(atlas, ra.m_floorTextureId, ra.m_floorTexture);
 
-		final boolean texCeil = ra.m_textured && (ra.m_ceilTexture != null);
-		final boolean texFloor = ra.m_textured && (ra.m_floorTexture != null);
+		final Texels ceilTexture = m_ceilTexels;
+		final Texels floorTexture = m_floorTexels;
 
 		float startX = 0.0f;
 		float startY = 0.0f;
@@ -475,36 +642,51 @@ public class EpicRayRay implements IRay, Runnable {
 
 		
 		// Ceiling Cursor
-		final FastIntBitmapCursor ceilCursorC = (FastIntBitmapCursor) m_dest
-				.copy();
-		final FastFloatBitmapCursor ceilCursorZ = (FastFloatBitmapCursor) m_zBuf
-				.copy();
+		final IntCursor ceilCursorC = m_ceilCursorC;
+		final FloatCursor ceilCursorZ = m_ceilCursorZ;
 		
 		ceilCursorC.setPosition(cur.drawStart);
 		ceilCursorZ.setPosition(cur.drawStart);
 
 		// Floor Cursor
-		final FastIntBitmapCursor floorCursorC = (FastIntBitmapCursor) m_dest
-				.copy();
-		final FastFloatBitmapCursor floorCursorZ = (FastFloatBitmapCursor) m_zBuf
-				.copy();
+		final IntCursor floorCursorC = m_floorCursorC;
+		final FloatCursor floorCursorZ = m_floorCursorZ;
 		
 		floorCursorC.setPosition(cur.drawEnd);
 		floorCursorZ.setPosition(cur.drawEnd);
 
-		final int ceilTexW = (texCeil) ? ceilTexture.getWidth() - 1 : 0;
-		final int ceilTexH = (texCeil) ? ceilTexture.getHeight() - 1 : 0;
+		int ceilTexW = 0;
+		int ceilTexH = 0;
 		
-		final int floorTexW = (texFloor) ? floorTexture.getWidth() - 1 : 0;
-		final int floorTexH = (texFloor) ? floorTexture.getHeight() - 1 : 0;
+		int floorTexW = 0;
+		int floorTexH = 0;
+		
+		// screen sizes below which the next level is used, checked per row,
+		// so the first row selects the level of textured surfaces
+		int ceilLimit = (texCeil) ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+		int floorLimit = (texFloor) ? Integer.MAX_VALUE : Integer.MIN_VALUE;
 		
 		float zValue;
 
 		for (int y = 0; y < nInvLineHeight; ++y, 
 				ceilCursorC.fwd(), ceilCursorZ.fwd(), 
 				floorCursorC.bck(), floorCursorZ.bck()) {
-			zValue = (float) m_height
-					/ (float) (m_height - ((cur.drawStart + y) << 1));
+			// a tile at the distance of this row is as high as a wall there
+			final int rowPixels = m_height - ((cur.drawStart + y) << 1);
+
+			zValue = (float) m_height / (float) rowPixels;
+
+			if (rowPixels < ceilLimit) {
+				ceilLimit = selectLevel(ceilTexture, atlas, ra.m_ceilTextureId, ra.m_ceilTexture, rowPixels);
+				ceilTexW = ceilTexture.m_width - 1;
+				ceilTexH = ceilTexture.m_height - 1;
+			}
+
+			if (rowPixels < floorLimit) {
+				floorLimit = selectLevel(floorTexture, atlas, ra.m_floorTextureId, ra.m_floorTexture, rowPixels);
+				floorTexW = floorTexture.m_width - 1;
+				floorTexH = floorTexture.m_height - 1;
+			}
 
 			if (texCeil || texFloor) {
 				final float theFactor = (zValue - cur.perpWallDist)
@@ -514,14 +696,14 @@ public class EpicRayRay implements IRay, Runnable {
 				final float yFact = theFactor * diffY + startY;
 
 				if (texCeil) {
-					ceilColor = ceilTexture.getPixel((int) (xFact * ceilTexW),
-							(int) (yFact * ceilTexH));
+					ceilColor = ceilTexture.get(ceilTexture.index((int) (xFact * ceilTexW),
+							(int) (yFact * ceilTexH)));
 				}
 
 				if (texFloor) {
-					floorColor = floorTexture.getPixel(
+					floorColor = floorTexture.get(floorTexture.index(
 							(int) (xFact * floorTexW),
-							(int) (yFact * floorTexH));
+							(int) (yFact * floorTexH)));
 				}
 
 			}
@@ -538,32 +720,35 @@ public class EpicRayRay implements IRay, Runnable {
 		}
 	}
 
-	private final IBitmap<Integer> getMipMapTexture(IBitmap<Integer> texture, int lineHeight) {
-		if (texture == null) {
-			return null;
-		}
-				
-		if (texture instanceof PowerOf2IntMipMap) {
-			return ((PowerOf2IntMipMap) texture).getMipImage(
-						// calculate mip level
-						(int) Math.max(0, 
-							((PowerOf2IntMipMap) texture).getNumMips() - getMaxExp(lineHeight)
-						)
-					);
-		}
-
-		return texture;
+	/*
+	 * True if a texture with id in atlas or the bitmap can be drawn
+	 */
+	private static boolean hasTexture(final TextureAtlas atlas, final int id, final IntBitmap texture) {
+		return texture != null || (atlas != null && id >= 0);
 	}
 
-	private final int[] POWER_OF_2 = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024, 2048 };
+	/*
+	 * Points texels at the level of a texture for a draw covering pixels
+	 * screen pixels. The texture is taken from atlas if it has an id there.
+	 * Returns the screen size below which a smaller level is needed.
+	 */
+	private static int selectLevel(final Texels texels, final TextureAtlas atlas, final int id,
+			final IntBitmap texture, final int pixels) {
+		if (atlas != null && id >= 0) {
+			final int level = atlas.getLevel(id, pixels);
+			texels.set(atlas, atlas.getLevelIndex(id, level));
+			return atlas.getLevelLimit(id, level);
+		}
 
-	private final int getMaxExp(final int num) {
-		for (int i = POWER_OF_2.length; i >= 0; --i) {
-			if (num > POWER_OF_2[i]) {
-				return i;
-			}
+		if (texture instanceof PowerOf2IntMipMap) {
+			final PowerOf2IntMipMap mipMap = (PowerOf2IntMipMap) texture;
+			final int level = mipMap.getLevel(pixels);
+			texels.set(mipMap.getMipImage(level));
+			return mipMap.getLevelLimit(level);
 		}
-		return 0;
+
+		texels.set(texture);
+		return Integer.MIN_VALUE;
 	}
 
 	@Override
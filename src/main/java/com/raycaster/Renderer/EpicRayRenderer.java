@@ -1,16 +1,14 @@
 package com.raycaster.Renderer;
 
-import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-
 import com.raycaster.utils.IWorld;
 import com.raycaster.Bitmap.FastFloatBitmap;
-import com.raycaster.Bitmap.FastFloatBitmapCursor;
 import com.raycaster.Bitmap.FastIntBitmap;
-import com.raycaster.Bitmap.FastIntBitmapCursor;
+import com.raycaster.Bitmap.FloatCursor;
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.Bitmap.IntCursor;
+import com.raycaster.Bitmap.TextureAtlas;
 import com.raycaster.Entities.IEntity;
+import com.raycaster.Tile.EntityGrid;
 import com.raycaster.Tile.ITileMap;
 
 /**
@@ -23,9 +21,9 @@ import com.raycaster.Tile.ITileMap;
  * 
  */
 
-public final class EpicRayRenderer implements IRenderer<FastIntBitmap> {
+public final class EpicRayRenderer implements IRenderer<IntBitmap> {
 
-	private FastIntBitmap m_bitmap;
+	private final IntBitmap m_bitmap;
 	private FastFloatBitmap m_zBuffer;
 
 	private final int m_width;
@@ -35,101 +33,241 @@ public final class EpicRayRenderer implements IRenderer<FastIntBitmap> {
 	private IWorld m_world;
 	private IEntity m_camEntity; // camera entity
 
-	private float m_planeX = 0;
-	private float m_planeY = 0.66f;
-
 	private final int fov = 60;
 	private final float m_planeLength;
 
-	private boolean m_threaded;
+	private final ColumnTable m_columns;
+
+	// camera of the current frame
+	private float m_posX;
+	private float m_posY;
+	private float m_dirX;
+	private float m_dirY;
+
+	private final RenderScheduler m_scheduler;
+
+	private final EpicRayRay[] m_rays; // one per column, reused every frame
+	private ITileMap m_tileMap; // tile map of the current frame
+
+	private final SpritePass m_sprites;
+	private boolean m_recordCells; // whether the rays record cells for m_sprites
+
+	private final RenderScheduler.IBandTask m_castBand = new RenderScheduler.IBandTask() {
+		@Override
+		public void renderBand(final int start, final int end) {
+			final ITileMap tileMap = m_tileMap;
+			final ColumnTable columns = m_columns;
+
+			columns.update(m_dirX, m_dirY, start, end);
 
-	private ExecutorService m_threadPool;
+			for (int i = start; i < end; ++i) {
+				final EpicRayRay ray = m_rays[i];
+
+				ray.reset(m_posX, m_posY,
+						columns.m_dirX[i], columns.m_dirY[i],
+						columns.m_deltaDistX[i], columns.m_deltaDistY[i]);
+				ray.cast(tileMap);
+			}
+		}
+	};
+
+	private int[] m_copyTarget; // row major destination of copyToRowMajor
+
+	private final RenderScheduler.IBandTask m_copyBand = new RenderScheduler.IBandTask() {
+		@Override
+		public void renderBand(final int start, final int end) {
+			((FastIntBitmap) m_bitmap).copyColumnsTo(m_copyTarget, start, end);
+		}
+	};
 
 	public EpicRayRenderer(final IWorld world, final IEntity camEntity, final int width, final int height) {
+		this(world, camEntity, width, height, Runtime.getRuntime().availableProcessors() - 1, 0);
+	}
+
+	/**
+	 * @param workerCount
+	 *            number of render threads besides the calling one, 0 renders
+	 *            single threaded
+	 * @param bandSize
+	 *            columns per work unit, 0 for one band per thread
+	 */
+	public EpicRayRenderer(final IWorld world, final IEntity camEntity, final int width, final int height,
+			final int workerCount, final int bandSize) {
+		this(world, camEntity, new FastIntBitmap(width, height), workerCount, bandSize);
+	}
+
+	/**
+	 * Renders into the given bitmap instead of an own one. Besides a
+	 * FastIntBitmap this can be a HorizontalFirstIntBitmap wrapping the raster
+	 * of a BufferedImage, which then needs no copy to be shown.
+	 * 
+	 * @param target
+	 *            bitmap to render into, its IntCursor has to walk down columns
+	 * @param workerCount
+	 *            number of render threads besides the calling one, 0 renders
+	 *            single threaded
+	 * @param bandSize
+	 *            columns per work unit, 0 for one band per thread
+	 */
+	public EpicRayRenderer(final IWorld world, final IEntity camEntity, final IntBitmap target,
+			final int workerCount, final int bandSize) {
+		final int width = target.getWidth();
+		final int height = target.getHeight();
+
 		m_width = width;
 		m_height = height;
 		m_length = width * height;
 
-		m_bitmap = new FastIntBitmap(width, height);
+		m_bitmap = target;
 		m_zBuffer = new FastFloatBitmap(width, height);
 
 		m_world = world;
 		m_camEntity = camEntity;
 
-		m_threaded = true;
+		m_scheduler = new RenderScheduler(Math.max(0, workerCount), bandSize);
+
+		final IntCursor cursor = m_bitmap.getIntCursor();
+		final FloatCursor zCursor = m_zBuffer.getFloatCursor();
+
+		m_rays = new EpicRayRay[width];
+
+		final IntCursor[] spriteCursors = new IntCursor[width];
+		final FloatCursor[] spriteZCursors = new FloatCursor[width];
+
+		for (int x = 0; x < width; ++x) {
+			// top of the column
+			cursor.setPosition(x, 0);
+			zCursor.setPosition(x, 0);
+
+			cursor.setOffset();
+			zCursor.setOffset();
+
+			m_rays[x] = new EpicRayRay(m_height, cursor.copy(), zCursor.copy());
+
+			spriteCursors[x] = cursor.copy();
+			spriteZCursors[x] = zCursor.copy();
+		}
 
 		m_planeLength = Math.abs((float) (Math.tan((double) fov * Math.PI / 50.0)));// 0.66f;
+		m_columns = new ColumnTable(width, m_planeLength);
+
+		m_sprites = new SpritePass(spriteCursors, spriteZCursors, height, m_planeLength);
 	}
 
 	@Override
 	public final void render() {
-		ITileMap tileMap = m_world.getTileMap();
-
-		// calculate perpendicular camera plane
-		m_planeX = (float) -m_camEntity.getViewDirectionY() * m_planeLength;
-		m_planeY = (float) m_camEntity.getViewDirectionX() * m_planeLength;
+		final ITileMap tileMap = m_world.getTileMap();
+		tileMap.prefetch(m_camEntity);
 
 		// m_bitmap.clear(Color.gray.getRGB());
 		m_zBuffer.clear(Float.MAX_VALUE);
 
-		final FastIntBitmapCursor cursor = (FastIntBitmapCursor) m_bitmap.getCursor();
-		final FastFloatBitmapCursor zCursor = (FastFloatBitmapCursor) m_zBuffer.getCursor();
-
-		final float factor = 2.0f / m_width;
-		float f2 = -1.0f;
-		final ArrayList<EpicRayRay> rays = new ArrayList<EpicRayRay>();
-
-		for (int index = 0; index < m_length; f2 += factor, index += m_height) {
-			// calculate ray position and direction
-			cursor.setAbsolutePosition(index);
-			zCursor.setAbsolutePosition(index);
-
-			cursor.setOffset();
-			zCursor.setOffset();
+		// ray directions are set up per band from the column table
+		m_posX = m_camEntity.getX();
+		m_posY = m_camEntity.getY();
+		m_dirX = m_camEntity.getViewDirectionX();
+		m_dirY = m_camEntity.getViewDirectionY();
 
-			final EpicRayRay ray = new EpicRayRay(m_height,
-					m_camEntity.getX(),
-					m_camEntity.getY(),
-					m_camEntity.getViewDirectionX() + m_planeX * f2,
-					m_camEntity.getViewDirectionY() + m_planeY * f2,
-					(FastIntBitmapCursor) cursor.copy(),
-					(FastFloatBitmapCursor) zCursor.copy(),
-					tileMap);
-
-			rays.add(ray);
-		}
+		final boolean sprites = hasOtherEntities(tileMap.getEntityGrid());
 
-		if (m_threaded) {
-			renderThreaded(rays);
-			return;
-		} else {
-			for (EpicRayRay ray : rays) {
-				ray.run();
+		if (sprites != m_recordCells) {
+			for (EpicRayRay ray : m_rays) {
+				ray.setRecordCells(sprites);
 			}
-			return;
+			m_recordCells = sprites;
 		}
 
-	}
+		m_tileMap = tileMap;
+		m_scheduler.execute(m_castBand, m_width);
+		m_tileMap = null;
 
-	private final void renderThreaded(final ArrayList<EpicRayRay> rays) {
-		m_threadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() - 1);
-		for (EpicRayRay ray : rays) {
-			m_threadPool.submit(ray);
+		// billboards of the entities in the cells the rays went through
+		if (sprites && m_sprites.collect(tileMap, m_rays, m_camEntity, m_posX, m_posY, m_dirX, m_dirY) > 0) {
+			m_scheduler.execute(m_sprites, m_width);
 		}
+	}
 
-		try {
-			m_threadPool.shutdown();
-			m_threadPool.awaitTermination(100, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
+	/*
+	 * True if grid has entities besides the camera entity
+	 */
+	private final boolean hasOtherEntities(final EntityGrid grid) {
+		final int count = grid.getCount();
+
+		if (count != 1) {
+			return count > 1;
 		}
+
+		final int cellX = (int) Math.floor(m_camEntity.getX());
+		final int cellY = (int) Math.floor(m_camEntity.getY());
+
+		return grid.indexOf(m_camEntity, cellX, cellY) == EntityGrid.NONE;
 	}
 
 	@Override
-	public FastIntBitmap getRenderResult() {
+	public IntBitmap getRenderResult() {
 		return m_bitmap;
 	}
 
+	/**
+	 * Copies the last rendered frame into a row major array like the raster
+	 * of a BufferedImage. The blocked transpose is spread over the render
+	 * threads. Only needed when rendering into a FastIntBitmap.
+	 * 
+	 * @param dest
+	 *            array of at least width*height pixels
+	 */
+	public final void copyToRowMajor(final int[] dest) {
+		if (!(m_bitmap instanceof FastIntBitmap)) {
+			throw new IllegalStateException("render target is not a FastIntBitmap");
+		}
+
+		m_copyTarget = dest;
+		m_scheduler.execute(m_copyBand, m_width);
+		m_copyTarget = null;
+	}
+
 	public final void setCameraEntity(IEntity e) {
 		m_camEntity = e;
 	}
+
+	/**
+	 * Set the atlas textures referenced by id are drawn from, see
+	 * ResourceManager.buildTextureAtlas(). Not while rendering.
+	 * 
+	 * @param atlas
+	 *            null to only draw textures referenced as bitmaps
+	 */
+	public final void setTextureAtlas(final TextureAtlas atlas) {
+		for (EpicRayRay ray : m_rays) {
+			ray.setTextureAtlas(atlas);
+		}
+	}
+
+	/**
+	 * Sets the color of sprite texels which are not drawn, alpha is ignored.
+	 * Magenta by default.
+	 * 
+	 * @param rgb
+	 */
+	public final void setTransparentColor(final int rgb) {
+		m_sprites.setTransparentColor(rgb);
+	}
+
+	public final int getTransparentColor() {
+		return m_sprites.getTransparentColor();
+	}
+
+	/**
+	 * Columns rendered per work unit, 0 for one band per render thread.
+	 * 
+	 * @param bandSize
+	 */
+	public final void setBandSize(final int bandSize) {
+		m_scheduler.setBandSize(bandSize);
+	}
+
+	@Override
+	public final void close() {
+		m_scheduler.close();
+	}
 }
@@ -2,7 +2,8 @@ package com.raycaster.Renderer;
 
 import java.io.IOException;
 import com.raycaster.IO.IGameFile;
-import com.raycaster.Bitmap.IBitmap;
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.Bitmap.TextureAtlas;
 
 public class EpicRayRenderingAttributes implements IRenderingAttributes {
 	public int m_wallColor;
@@ -11,9 +12,15 @@ public class EpicRayRenderingAttributes implements IRenderingAttributes {
 	
 	public boolean m_textured;
 	
-	public IBitmap<Integer> m_wallTexture;
-	public IBitmap<Integer> m_floorTexture;
-	public IBitmap<Integer> m_ceilTexture;
+	public IntBitmap m_wallTexture;
+	public IntBitmap m_floorTexture;
+	public IntBitmap m_ceilTexture;
+	
+	// ids of textures in the TextureAtlas of the renderer, used instead of
+	// the bitmaps if the renderer has an atlas
+	public int m_wallTextureId;
+	public int m_floorTextureId;
+	public int m_ceilTextureId;
 
 	public EpicRayRenderingAttributes(){
 		m_wallColor = -1;
@@ -25,6 +32,10 @@ public class EpicRayRenderingAttributes implements IRenderingAttributes {
 		m_wallTexture = null;
 		m_floorTexture = null;
 		m_ceilTexture = null;
+		
+		m_wallTextureId = TextureAtlas.NO_TEXTURE;
+		m_floorTextureId = TextureAtlas.NO_TEXTURE;
+		m_ceilTextureId = TextureAtlas.NO_TEXTURE;
 	}
 	
 	public EpicRayRenderingAttributes(EpicRayRenderingAttributes ra) {
@@ -37,20 +48,63 @@ public class EpicRayRenderingAttributes implements IRenderingAttributes {
 		m_wallTexture = ra.m_wallTexture;
 		m_floorTexture = ra.m_floorTexture;
 		m_ceilTexture = ra.m_ceilTexture;
+		
+		m_wallTextureId = ra.m_wallTextureId;
+		m_floorTextureId = ra.m_floorTextureId;
+		m_ceilTextureId = ra.m_ceilTextureId;
 	}
 
-	public IBitmap<Integer> getWallTexture(){
+	public IntBitmap getWallTexture(){
 		return m_wallTexture;
 	}
 	
-	public IBitmap<Integer> getFloorTexture(){
+	public IntBitmap getFloorTexture(){
 		return m_floorTexture;
 	}
 	
-	public IBitmap<Integer> getCeilingTexture(){
+	public IntBitmap getCeilingTexture(){
 		return m_ceilTexture;
 	}
 	
+	/**
+	 * Attributes are equal if they have the same colors, the same texture
+	 * objects and the same texture ids.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof EpicRayRenderingAttributes)) {
+			return false;
+		}
+		
+		final EpicRayRenderingAttributes ra = (EpicRayRenderingAttributes) o;
+		
+		return m_wallColor == ra.m_wallColor
+				&& m_floorColor == ra.m_floorColor
+				&& m_ceilColor == ra.m_ceilColor
+				&& m_textured == ra.m_textured
+				&& m_wallTexture == ra.m_wallTexture
+				&& m_floorTexture == ra.m_floorTexture
+				&& m_ceilTexture == ra.m_ceilTexture
+				&& m_wallTextureId == ra.m_wallTextureId
+				&& m_floorTextureId == ra.m_floorTextureId
+				&& m_ceilTextureId == ra.m_ceilTextureId;
+	}
+	
+	@Override
+	public int hashCode() {
+		int hash = m_wallColor;
+		hash = hash * 31 + m_floorColor;
+		hash = hash * 31 + m_ceilColor;
+		hash = hash * 31 + (m_textured ? 1 : 0);
+		hash = hash * 31 + System.identityHashCode(m_wallTexture);
+		hash = hash * 31 + System.identityHashCode(m_floorTexture);
+		hash = hash * 31 + System.identityHashCode(m_ceilTexture);
+		hash = hash * 31 + m_wallTextureId;
+		hash = hash * 31 + m_floorTextureId;
+		hash = hash * 31 + m_ceilTextureId;
+		return hash;
+	}
+	
 	@Override
 	public boolean saveToFile(IGameFile gameFile) throws IOException {
 		gameFile.writeInt(m_wallColor);
@@ -25,4 +25,10 @@ public interface IRenderer<B extends IBitmap<?>> {
 	 * @return
 	 */
 	public B getRenderResult();
+
+	/**
+	 * Releases resources held by the renderer, like render threads. The
+	 * renderer can not be used afterwards.
+	 */
+	public void close();
 }
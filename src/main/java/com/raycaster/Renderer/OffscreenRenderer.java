@@ -0,0 +1,244 @@
+package com.raycaster.Renderer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import com.raycaster.Bitmap.FastIntBitmap;
+import com.raycaster.utils.IWorld;
+
+/**
+ * OffscreenRenderer
+ *
+ * Renders a world from given camera poses without any window, Canvas or
+ * Screen, e.g. previews and minimap thumbnails on build servers running with
+ * -Djava.awt.headless=true.
+ *
+ * Batches are spread over all cores: every thread renders whole frames with
+ * its own single threaded EpicRayRenderer.
+ */
+public class OffscreenRenderer {
+
+	/**
+	 * Receives frames of a batch.
+	 */
+	public interface IFrameSink {
+		/**
+		 * Called on a render thread for every rendered frame. The bitmap is
+		 * reused for the next frame of that thread, copy it to keep it.
+		 *
+		 * @param index
+		 *            index of the pose in the batch
+		 * @param frame
+		 *            column major frame
+		 * @throws IOException
+		 */
+		public void onFrame(int index, FastIntBitmap frame) throws IOException;
+	}
+
+	/**
+	 * File formats of {@link #renderToFiles}
+	 */
+	public enum FileFormat {
+		/** PNG image */
+		PNG,
+
+		/**
+		 * width*height big endian 0xRRGGBB ints, row by row, no header
+		 */
+		RAW
+	}
+
+	private final IWorld m_world;
+
+	private final int m_width;
+	private final int m_height;
+
+	private final int m_threads;
+
+	public OffscreenRenderer(final IWorld world, final int width, final int height) {
+		this(world, width, height, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param world
+	 * @param width
+	 * @param height
+	 * @param threads
+	 *            number of threads used for batches
+	 */
+	public OffscreenRenderer(final IWorld world, final int width, final int height, final int threads) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("invalid resolution " + width + "x" + height);
+		}
+
+		m_world = world;
+		m_width = width;
+		m_height = height;
+		m_threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Render a single frame
+	 *
+	 * @param pose
+	 * @return a new column major bitmap with the frame
+	 */
+	public FastIntBitmap render(final CameraPose pose) {
+		final FastIntBitmap result = new FastIntBitmap(m_width, m_height);
+		final EpicRayRenderer renderer = new EpicRayRenderer(m_world, new CameraPose(pose),
+				result, 0, 0);
+
+		try {
+			renderer.render();
+		} finally {
+			renderer.close();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Render all poses on all threads, handing each frame to sink.
+	 *
+	 * @param poses
+	 * @param sink
+	 *            called from the render threads, needs to be thread safe
+	 * @throws IOException
+	 *             first exception thrown by the sink
+	 */
+	public void renderBatch(final List<CameraPose> poses, final IFrameSink sink) throws IOException {
+		final int threads = Math.min(m_threads, poses.size());
+
+		if (threads == 0) {
+			return;
+		}
+
+		final AtomicInteger nextPose = new AtomicInteger();
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(threads);
+
+		for (int i = 0; i < threads; ++i) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					final CameraPose camera = new CameraPose(0, 0, -1, 0);
+					final EpicRayRenderer renderer = new EpicRayRenderer(m_world, camera, m_width, m_height, 0, 0);
+
+					try {
+						int index;
+						while ((index = nextPose.getAndIncrement()) < poses.size()) {
+							camera.set(poses.get(index));
+							renderer.render();
+
+							sink.onFrame(index, (FastIntBitmap) renderer.getRenderResult());
+						}
+					} finally {
+						renderer.close();
+					}
+					return null;
+				}
+			});
+		}
+
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try {
+			for (Future<Void> result : pool.invokeAll(tasks)) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while rendering batch", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException(cause);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Render all poses on all threads into files named
+	 * prefix + index + extension in directory.
+	 *
+	 * @param poses
+	 * @param directory
+	 * @param prefix
+	 * @param format
+	 * @throws IOException
+	 */
+	public void renderToFiles(final List<CameraPose> poses, final File directory, final String prefix,
+			final FileFormat format) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory);
+		}
+
+		final String extension = (format == FileFormat.PNG) ? ".png" : ".raw";
+
+		// one raster per render thread, reused for all of its frames
+		final ThreadLocal<BufferedImage> images = new ThreadLocal<BufferedImage>() {
+			@Override
+			protected BufferedImage initialValue() {
+				return new BufferedImage(m_width, m_height, BufferedImage.TYPE_INT_RGB);
+			}
+		};
+
+		renderBatch(poses, new IFrameSink() {
+			@Override
+			public void onFrame(final int index, final FastIntBitmap frame) throws IOException {
+				final BufferedImage img = images.get();
+				final int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+
+				frame.copyColumnsTo(pixels, 0, m_width);
+
+				final File file = new File(directory, prefix + index + extension);
+
+				if (format == FileFormat.PNG) {
+					if (!ImageIO.write(img, "png", file)) {
+						throw new IOException("No PNG writer available");
+					}
+				} else {
+					writeRaw(pixels, file);
+				}
+			}
+		});
+	}
+
+	private static void writeRaw(final int[] pixels, final File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			for (int pixel : pixels) {
+				out.writeInt(pixel & 0xffffff);
+			}
+		}
+	}
+
+	public final int getWidth() {
+		return m_width;
+	}
+
+	public final int getHeight() {
+		return m_height;
+	}
+}
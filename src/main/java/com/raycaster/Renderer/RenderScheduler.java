@@ -0,0 +1,236 @@
+package com.raycaster.Renderer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RenderScheduler
+ *
+ * A long-lived pool of render threads owned by a renderer. Every frame the
+ * screen is split into contiguous bands of columns which the workers (and the
+ * calling thread) take until none are left. Frames are separated by a barrier,
+ * so {@link #execute(IBandTask, int)} only returns once every column is done.
+ * 
+ * The barrier parks and unparks the threads directly instead of using a
+ * Phaser, whose wait nodes would be allocated every frame.
+ *
+ * Not meant to be shared: execute() and close() are called by the thread
+ * driving the frames.
+ */
+public final class RenderScheduler {
+
+	/**
+	 * Work to be done on a band of columns.
+	 */
+	public interface IBandTask {
+		/**
+		 * Render the columns from start (inclusive) to end (exclusive)
+		 *
+		 * @param start
+		 * @param end
+		 */
+		public void renderBand(int start, int end);
+	}
+
+	private final Thread[] m_workers;
+	private final AtomicInteger m_nextColumn;
+
+	// threads still rendering the current frame
+	private final AtomicInteger m_pending;
+	private volatile Thread m_owner;
+
+	// bumped to start a frame, workers wait for it to change
+	private volatile int m_frame;
+
+	// written before m_frame is bumped, so visible to the workers
+	private IBandTask m_task;
+	private int m_columns;
+	private int m_frameBandSize;
+
+	private int m_bandSize;
+
+	private volatile Throwable m_error;
+	private volatile boolean m_closed;
+
+	/**
+	 * Creates a scheduler with one worker less than available processors and
+	 * one band per thread.
+	 */
+	public RenderScheduler() {
+		this(Runtime.getRuntime().availableProcessors() - 1, 0);
+	}
+
+	/**
+	 * @param workerCount
+	 *            number of background threads, the calling thread renders as
+	 *            well. 0 renders everything on the calling thread.
+	 * @param bandSize
+	 *            columns per band, 0 or less to split the screen evenly into
+	 *            one band per thread.
+	 */
+	public RenderScheduler(final int workerCount, final int bandSize) {
+		if (workerCount < 0) {
+			throw new IllegalArgumentException("workerCount must not be negative");
+		}
+
+		m_bandSize = bandSize;
+		m_nextColumn = new AtomicInteger();
+		m_pending = new AtomicInteger();
+
+		m_workers = new Thread[workerCount];
+
+		for (int i = 0; i < workerCount; ++i) {
+			m_workers[i] = new Thread(new Worker(), "EpicRay-Render-" + i);
+			m_workers[i].setDaemon(true);
+			m_workers[i].start();
+		}
+	}
+
+	/**
+	 * Render all columns with task and wait until every band is finished.
+	 *
+	 * @param task
+	 * @param columns
+	 *            number of columns in this frame
+	 */
+	public final synchronized void execute(final IBandTask task, final int columns) {
+		if (m_closed) {
+			throw new IllegalStateException("RenderScheduler has been closed");
+		}
+
+		if (m_workers.length == 0) {
+			task.renderBand(0, columns);
+			return;
+		}
+
+		m_task = task;
+		m_columns = columns;
+		m_frameBandSize = (m_bandSize > 0) ? m_bandSize
+				: Math.max(1, (columns + m_workers.length) / (m_workers.length + 1));
+		m_nextColumn.set(0);
+		m_error = null;
+
+		m_owner = Thread.currentThread();
+		m_pending.set(m_workers.length + 1);
+
+		startFrame();
+		renderBands();
+
+		// end of frame
+		if (m_pending.decrementAndGet() != 0) {
+			while (m_pending.get() != 0) {
+				LockSupport.park(this);
+			}
+		}
+
+		m_task = null;
+
+		final Throwable error = m_error;
+		if (error != null) {
+			throw new RuntimeException("Render worker failed", error);
+		}
+	}
+
+	private final void startFrame() {
+		m_frame = m_frame + 1; // only written by the owning thread
+
+		for (Thread worker : m_workers) {
+			LockSupport.unpark(worker);
+		}
+	}
+
+	private final void renderBands() {
+		final int bandSize = m_frameBandSize;
+		final int columns = m_columns;
+
+		try {
+			int start;
+			while ((start = m_nextColumn.getAndAdd(bandSize)) < columns) {
+				m_task.renderBand(start, Math.min(start + bandSize, columns));
+			}
+		} catch (Throwable t) {
+			// still count down for this frame, execute() rethrows it
+			if (m_error == null) {
+				m_error = t;
+			}
+		}
+	}
+
+	/**
+	 * Stops and joins all worker threads. The scheduler can not be used
+	 * afterwards.
+	 */
+	public final synchronized void close() {
+		if (m_closed) {
+			return;
+		}
+		m_closed = true;
+
+		if (m_workers.length == 0) {
+			return;
+		}
+
+		startFrame(); // wake workers, they see m_closed
+
+		for (Thread worker : m_workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Columns per band, 0 or less to split evenly between threads. Takes
+	 * effect on the next frame.
+	 *
+	 * @param bandSize
+	 */
+	public final synchronized void setBandSize(final int bandSize) {
+		m_bandSize = bandSize;
+	}
+
+	public final int getBandSize() {
+		return m_bandSize;
+	}
+
+	/**
+	 * Returns the number of background threads
+	 *
+	 * @return
+	 */
+	public final int getWorkerCount() {
+		return m_workers.length;
+	}
+
+	public final boolean isClosed() {
+		return m_closed;
+	}
+
+	private final class Worker implements Runnable {
+		@Override
+		public void run() {
+			int lastFrame = 0;
+
+			while (true) {
+				int frame;
+				while ((frame = m_frame) == lastFrame) {
+					LockSupport.park(RenderScheduler.this);
+				}
+				lastFrame = frame;
+
+				if (m_closed) {
+					return;
+				}
+
+				renderBands();
+
+				if (m_pending.decrementAndGet() == 0) {
+					LockSupport.unpark(m_owner);
+				}
+			}
+		}
+	}
+}
@@ -32,6 +32,15 @@ public abstract class Screen extends Canvas {
 
 	public abstract void present();
 
+	/**
+	 * Releases the renderer of this screen
+	 */
+	public void close() {
+		if (renderer != null) {
+			renderer.close();
+		}
+	}
+
 	public final BufferedImage getImage() {
 		return img;
 	}
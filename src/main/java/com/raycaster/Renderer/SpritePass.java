@@ -0,0 +1,448 @@
+package com.raycaster.Renderer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.raycaster.Bitmap.FloatCursor;
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.Bitmap.IntCursor;
+import com.raycaster.Bitmap.PowerOf2IntMipMap;
+import com.raycaster.Entities.IEntity;
+import com.raycaster.Entities.ISprite;
+import com.raycaster.Entities.TileCollision;
+import com.raycaster.Tile.EntityGrid;
+import com.raycaster.Tile.ITileMap;
+
+/**
+ * SpritePass
+ *
+ * Draws the sprites of entities as billboards facing the camera, after the
+ * walls, floors and ceilings have been cast. The entities are looked up in
+ * the cells the rays went through, so only entities which can be visible
+ * are drawn. Sprites stand on the floor, ISprite.getWidth() and getHeight()
+ * are in 1 / TileCollision.UNITS_PER_TILE of a tile.
+ *
+ * collect() transforms the sprites into camera space and sorts them front
+ * to back, then bands of columns are drawn in parallel by renderBand().
+ * Every pixel is tested against and written to the z-buffer, so nearer
+ * sprites hide farther ones, and texels of the transparent color are
+ * skipped. All per sprite state is kept in arrays which are reused from
+ * frame to frame.
+ */
+final class SpritePass implements RenderScheduler.IBandTask {
+
+	/** Texels of this color, alpha ignored, are not drawn */
+	public static final int DEFAULT_TRANSPARENT_COLOR = 0xff00ff;
+
+	// sprites nearer than this are behind the camera plane
+	private static final float NEAR = 0.05f;
+
+	private final int m_width;
+	private final int m_height;
+	private final float m_planeLength;
+
+	// per column, at the top of the column
+	private final IntCursor m_colorCursors[];
+	private final FloatCursor m_zCursors[];
+
+	// perpendicular distance of the wall each column ended at
+	private final float m_hitDistance[];
+
+	private int m_transparentColor = DEFAULT_TRANSPARENT_COLOR;
+
+	private final CellSet m_visited = new CellSet();
+	private final ArrayList<IEntity> m_found = new ArrayList<IEntity>();
+
+	// visible sprites, in the order they were found
+	private int m_count;
+	private float m_depth[] = new float[0];
+	private float m_left[] = new float[0];
+	private float m_screenWidth[] = new float[0];
+	private float m_top[] = new float[0];
+	private float m_screenHeight[] = new float[0];
+	private Texels m_texels[] = new Texels[0];
+	// sprites of at most a tile height are hidden by the wall behind them
+	private boolean m_hiddenByWalls[] = new boolean[0];
+
+	// depth and index of the sprites, sorted front to back
+	private long m_order[] = new long[0];
+
+	/**
+	 * @param colorCursors
+	 *            per column, with the offset at the top of the column
+	 * @param zCursors
+	 *            per column, with the offset at the top of the column
+	 * @param height
+	 * @param planeLength
+	 *            see ColumnTable
+	 */
+	SpritePass(final IntCursor[] colorCursors, final FloatCursor[] zCursors, final int height,
+			final float planeLength) {
+		m_width = colorCursors.length;
+		m_height = height;
+		m_planeLength = planeLength;
+
+		m_colorCursors = colorCursors;
+		m_zCursors = zCursors;
+
+		m_hitDistance = new float[m_width];
+	}
+
+	final void setTransparentColor(final int rgb) {
+		m_transparentColor = rgb & 0xffffff;
+	}
+
+	final int getTransparentColor() {
+		return m_transparentColor;
+	}
+
+	/**
+	 * Finds the sprites of the entities in the cells rays went through and
+	 * sorts them front to back.
+	 *
+	 * @param map
+	 * @param rays
+	 *            one per column, cast with recorded cells
+	 * @param camera
+	 *            not drawn
+	 * @param posX
+	 * @param posY
+	 * @param dirX
+	 * @param dirY
+	 * @return the number of sprites to draw
+	 */
+	final int collect(final ITileMap map, final EpicRayRay[] rays, final IEntity camera, final float posX,
+			final float posY, final float dirX, final float dirY) {
+		final EntityGrid grid = map.getEntityGrid();
+		final CellSet visited = m_visited;
+
+		visited.clear();
+		m_found.clear();
+		m_count = 0;
+
+		for (int x = 0; x < m_width; ++x) {
+			final EpicRayRay ray = rays[x];
+			final int cells = ray.getCellCount();
+
+			for (int i = 0; i < cells; ++i) {
+				visited.add(ray.getCellX(i), ray.getCellY(i));
+			}
+
+			m_hitDistance[x] = ray.getHitDistance();
+		}
+
+		// look up the visited cells, or test every entity if there are less
+		if (grid.getCount() < visited.size()) {
+			grid.getEntities(m_found);
+
+			for (int i = m_found.size() - 1; i >= 0; --i) {
+				final IEntity entity = m_found.get(i);
+
+				if (!visited.contains((int) Math.floor(entity.getX()), (int) Math.floor(entity.getY()))) {
+					m_found.set(i, m_found.get(m_found.size() - 1));
+					m_found.remove(m_found.size() - 1);
+				}
+			}
+		} else {
+			for (int i = 0; i < visited.size(); ++i) {
+				grid.getEntities(visited.getX(i), visited.getY(i), m_found);
+			}
+		}
+
+		final float dirLength2 = dirX * dirX + dirY * dirY;
+		final float columnsPerOffset = m_width / (2.0f * m_planeLength);
+		final float dirLength = (float) Math.sqrt(dirLength2);
+
+		for (int i = 0; i < m_found.size(); ++i) {
+			final IEntity entity = m_found.get(i);
+			final ISprite sprite = entity.getSprite();
+
+			if (entity == camera || sprite == null || sprite.getTexture() == null) {
+				continue;
+			}
+
+			final float relX = entity.getX() - posX;
+			final float relY = entity.getY() - posY;
+
+			// distance along the view direction, in the units of the
+			// z-buffer, and offset on the camera plane
+			final float along = relX * dirX + relY * dirY;
+			final float depth = along / dirLength2;
+
+			if (depth < NEAR) {
+				continue;
+			}
+
+			final float offset = (relX * -dirY + relY * dirX) / along;
+
+			final float width = 2 * TileCollision.getHalfExtent(sprite.getWidth());
+			final float height = 2 * TileCollision.getHalfExtent(sprite.getHeight());
+
+			final float screenWidth = width / (depth * dirLength) * columnsPerOffset;
+			final float left = (offset / m_planeLength + 1.0f) * (m_width * 0.5f) - screenWidth * 0.5f;
+
+			if (left + screenWidth <= 0 || left >= m_width) {
+				continue;
+			}
+
+			final float screenHeight = height * m_height / depth;
+			final float floor = (m_height + m_height / depth) * 0.5f;
+
+			add(depth, left, screenWidth, floor - screenHeight, screenHeight, sprite.getTexture(), height <= 1);
+		}
+
+		m_found.clear();
+
+		for (int i = 0; i < m_count; ++i) {
+			m_order[i] = ((long) Float.floatToIntBits(m_depth[i]) << 32) | i;
+		}
+
+		Arrays.sort(m_order, 0, m_count);
+
+		return m_count;
+	}
+
+	private final void add(final float depth, final float left, final float screenWidth, final float top,
+			final float screenHeight, final IntBitmap texture, final boolean hiddenByWalls) {
+		if (m_count == m_depth.length) {
+			grow(Math.max(16, m_count << 1));
+		}
+
+		final int i = m_count++;
+
+		m_depth[i] = depth;
+		m_left[i] = left;
+		m_screenWidth[i] = screenWidth;
+		m_top[i] = top;
+		m_screenHeight[i] = screenHeight;
+		m_hiddenByWalls[i] = hiddenByWalls;
+
+		final Texels texels = m_texels[i];
+		final int pixels = (int) Math.max(screenWidth, screenHeight);
+
+		if (texture instanceof PowerOf2IntMipMap) {
+			final PowerOf2IntMipMap mipMap = (PowerOf2IntMipMap) texture;
+			texels.set(mipMap.getMipImage(mipMap.getLevel(pixels)));
+		} else {
+			texels.set(texture);
+		}
+	}
+
+	private final void grow(final int capacity) {
+		final int old = m_texels.length;
+
+		m_depth = Arrays.copyOf(m_depth, capacity);
+		m_left = Arrays.copyOf(m_left, capacity);
+		m_screenWidth = Arrays.copyOf(m_screenWidth, capacity);
+		m_top = Arrays.copyOf(m_top, capacity);
+		m_screenHeight = Arrays.copyOf(m_screenHeight, capacity);
+		m_hiddenByWalls = Arrays.copyOf(m_hiddenByWalls, capacity);
+		m_order = Arrays.copyOf(m_order, capacity);
+		m_texels = Arrays.copyOf(m_texels, capacity);
+
+		for (int i = old; i < capacity; ++i) {
+			m_texels[i] = new Texels();
+		}
+	}
+
+	/**
+	 * Draws the columns start (inclusive) to end (exclusive) of the sprites
+	 * found by the last collect()
+	 */
+	@Override
+	public void renderBand(final int start, final int end) {
+		final int transparent = m_transparentColor;
+
+		for (int o = 0; o < m_count; ++o) {
+			final int s = (int) m_order[o];
+
+			final float left = m_left[s];
+			final float screenWidth = m_screenWidth[s];
+
+			// columns whose centers the sprite covers
+			final int x0 = Math.max(start, (int) Math.ceil(left - 0.5f));
+			final int x1 = Math.min(end, (int) Math.ceil(left + screenWidth - 0.5f));
+
+			if (x0 >= x1) {
+				continue;
+			}
+
+			final float depth = m_depth[s];
+			final float top = m_top[s];
+			final float screenHeight = m_screenHeight[s];
+
+			final int y0 = Math.max(0, (int) Math.ceil(top - 0.5f));
+			final int y1 = Math.min(m_height, (int) Math.ceil(top + screenHeight - 0.5f));
+
+			if (y0 >= y1) {
+				continue;
+			}
+
+			final Texels texels = m_texels[s];
+			final boolean hiddenByWalls = m_hiddenByWalls[s];
+
+			final float texelsPerColumn = texels.m_width / screenWidth;
+			final float texelsPerRow = texels.m_height / screenHeight;
+			final float texYStart = (y0 + 0.5f - top) * texelsPerRow;
+			final int maxTexX = texels.m_width - 1;
+			final int maxTexY = texels.m_height - 1;
+
+			for (int x = x0; x < x1; ++x) {
+				if (hiddenByWalls && depth >= m_hitDistance[x]) {
+					continue;
+				}
+
+				final int texX = Math.min(maxTexX, (int) ((x + 0.5f - left) * texelsPerColumn));
+				final int column = texels.index(texX, 0);
+
+				final IntCursor color = m_colorCursors[x];
+				final FloatCursor z = m_zCursors[x];
+
+				color.setPosition(y0);
+				z.setPosition(y0);
+
+				float texY = texYStart;
+
+				for (int y = y0; y < y1; ++y, texY += texelsPerRow, color.fwd(), z.fwd()) {
+					if (z.getNative() <= depth) {
+						continue;
+					}
+
+					final int texel = texels.get(column + Math.min(maxTexY, (int) texY));
+
+					if ((texel & 0xffffff) == transparent) {
+						continue;
+					}
+
+					color.set(texel);
+					z.set(depth);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Set of cells, open addressing on keys packed from x and y. Clearing
+	 * only forgets the keys in the list of added cells.
+	 */
+	private static final class CellSet {
+		private static final long EMPTY = Long.MIN_VALUE;
+
+		private long m_keys[] = new long[1024];
+		private int m_cellX[] = new int[256];
+		private int m_cellY[] = new int[256];
+		private int m_size;
+
+		CellSet() {
+			Arrays.fill(m_keys, EMPTY);
+		}
+
+		final void clear() {
+			if (m_size > m_keys.length >> 3) {
+				Arrays.fill(m_keys, EMPTY);
+			} else {
+				for (int i = 0; i < m_size; ++i) {
+					m_keys[slot(key(m_cellX[i], m_cellY[i]))] = EMPTY;
+				}
+			}
+
+			m_size = 0;
+		}
+
+		final void add(final int x, final int y) {
+			final long key = key(x, y);
+			final int mask = m_keys.length - 1;
+			int slot = hash(key) & mask;
+
+			while (m_keys[slot] != EMPTY) {
+				if (m_keys[slot] == key) {
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			m_keys[slot] = key;
+
+			if (m_size == m_cellX.length) {
+				m_cellX = Arrays.copyOf(m_cellX, m_size << 1);
+				m_cellY = Arrays.copyOf(m_cellY, m_size << 1);
+			}
+
+			m_cellX[m_size] = x;
+			m_cellY[m_size] = y;
+			++m_size;
+
+			// at most half full
+			if (m_size << 1 > m_keys.length) {
+				rehash(m_keys.length << 1);
+			}
+		}
+
+		final boolean contains(final int x, final int y) {
+			final long key = key(x, y);
+			final int mask = m_keys.length - 1;
+
+			for (int slot = hash(key) & mask; m_keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+				if (m_keys[slot] == key) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		/*
+		 * Slot of a key in the set
+		 */
+		private final int slot(final long key) {
+			final int mask = m_keys.length - 1;
+			int slot = hash(key) & mask;
+
+			while (m_keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+
+			return slot;
+		}
+
+		private final void rehash(final int capacity) {
+			m_keys = new long[capacity];
+			Arrays.fill(m_keys, EMPTY);
+
+			final int mask = capacity - 1;
+
+			for (int i = 0; i < m_size; ++i) {
+				final long key = key(m_cellX[i], m_cellY[i]);
+				int slot = hash(key) & mask;
+
+				while (m_keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+
+				m_keys[slot] = key;
+			}
+		}
+
+		final int size() {
+			return m_size;
+		}
+
+		final int getX(final int i) {
+			return m_cellX[i];
+		}
+
+		final int getY(final int i) {
+			return m_cellY[i];
+		}
+
+		private static long key(final int x, final int y) {
+			return ((long) y << 32) | (x & 0xffffffffL);
+		}
+
+		private static int hash(final long key) {
+			final long h = key * 0x9e3779b97f4a7c15L;
+
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.raycaster.Renderer;
+
+import com.raycaster.Bitmap.FastIntBitmap;
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.Bitmap.TextureAtlas;
+
+/**
+ * Texels of one texture level: a column major region of an int[], from
+ * a FastIntBitmap or an atlas page, or any other IntBitmap.
+ */
+final class Texels {
+	int m_pixels[];
+	int m_offset;
+	IntBitmap m_bitmap; // if not backed by an int[]
+
+	int m_width;
+	int m_height;
+
+	final void set(final IntBitmap texture) {
+		if (texture instanceof FastIntBitmap) {
+			m_pixels = ((FastIntBitmap) texture).m_pixels;
+			m_bitmap = null;
+		} else {
+			m_pixels = null;
+			m_bitmap = texture;
+		}
+
+		m_offset = 0;
+		m_width = texture.getWidth();
+		m_height = texture.getHeight();
+	}
+
+	final void set(final TextureAtlas atlas, final int levelIndex) {
+		m_pixels = atlas.getLevelPage(levelIndex);
+		m_bitmap = null;
+
+		m_offset = atlas.getLevelOffset(levelIndex);
+		m_width = atlas.getLevelWidth(levelIndex);
+		m_height = atlas.getLevelHeight(levelIndex);
+	}
+
+	final int index(final int x, final int y) {
+		return (m_pixels != null) ? m_offset + x * m_height + y : m_bitmap.pointToIndex(x, y);
+	}
+
+	final int get(final int index) {
+		return (m_pixels != null) ? m_pixels[index] : m_bitmap.getNative(index);
+	}
+}
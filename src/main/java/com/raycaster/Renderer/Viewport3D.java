@@ -1,37 +1,62 @@
 package com.raycaster.Renderer;
 
-import com.raycaster.Bitmap.FastIntBitmap;
+import com.raycaster.Bitmap.HorizontalFirstIntBitmap;
 import com.raycaster.Entities.IEntity;
 import com.raycaster.utils.IWorld;
 
 public class Viewport3D extends Screen {
 
-	public Viewport3D (IWorld p_world, IEntity camEntity, int width, int height){ 
+	/**
+	 * How a rendered frame gets into the image of the Screen
+	 */
+	public enum PresentMode {
+		/**
+		 * Render column major and copy the frame into the image with a blocked
+		 * transpose, spread over the render threads.
+		 */
+		TRANSPOSE,
+
+		/**
+		 * Render straight into the raster of the image, no copy at all. Rays
+		 * then write their columns with a stride of one image row.
+		 */
+		DIRECT
+	}
+
+	private final EpicRayRenderer m_renderer;
+	private final PresentMode m_presentMode;
+
+	public Viewport3D (IWorld p_world, IEntity camEntity, int width, int height){
+		this(p_world, camEntity, width, height, PresentMode.TRANSPOSE);
+	}
+
+	public Viewport3D (IWorld p_world, IEntity camEntity, int width, int height, PresentMode mode){
 		super(width, height);
-		
-		renderer = new EpicRayRenderer(p_world, camEntity, m_width, m_height);
+
+		m_presentMode = mode;
+
+		final int workers = Runtime.getRuntime().availableProcessors() - 1;
+
+		if (mode == PresentMode.DIRECT) {
+			m_renderer = new EpicRayRenderer(p_world, camEntity,
+					new HorizontalFirstIntBitmap(m_width, m_height, pixels), workers, 0);
+		} else {
+			m_renderer = new EpicRayRenderer(p_world, camEntity, m_width, m_height, workers, 0);
+		}
+
+		renderer = m_renderer;
 	}
-	
+
 	@Override
 	public final void present() {
-		renderer.render();
-		final FastIntBitmap result = (FastIntBitmap) renderer.getRenderResult();
-		
-		int i2 = 0;
-		int x = 0;
-		int y = 0;
-		
-		for (int i = 0; i < m_length; ++i) {
-				putPixel(i2, result.m_pixels[i]);
-				
-				i2 += m_width;
-				++y;
-				
-				if (y == m_height) {
-					i2 = ++x;
-					y = 0;
-				}
+		m_renderer.render();
+
+		if (m_presentMode == PresentMode.TRANSPOSE) {
+			m_renderer.copyToRowMajor(pixels);
 		}
 	}
 
+	public final PresentMode getPresentMode() {
+		return m_presentMode;
+	}
 }
@@ -0,0 +1,159 @@
+package com.raycaster.Tile;
+import java.util.HashMap;
+
+import com.raycaster.Entities.IEntity;
+
+/**
+ * AbstractTileMap
+ * 
+ * Base of tile maps which do not own Tile objects. Every cell is a
+ * TileFlags byte and an index into a TilePalette of shared tile types, the
+ * storage of those is up to the implementation.
+ * 
+ * Entities are kept in an EntityGrid, sprites per cell in a sparse side
+ * structure which only contains cells with sprites. getTileAt returns a view
+ * of the cell, the same one for as long as the cell has sprites. Changing the type of a cell
+ * through that view (setOpaque, setSolid, ...) re-sets the cell, shared types
+ * are never changed in place.
+ */
+public abstract class AbstractTileMap implements ITileMap {
+
+	protected final TilePalette m_palette = new TilePalette();
+
+	// cells with sprites by position
+	private final HashMap<Long, TileMapCell> m_cells = new HashMap<Long, TileMapCell>();
+
+	private final EntityGrid m_entityGrid = new EntityGrid();
+
+	protected int m_width;
+	protected int m_height;
+
+	protected boolean m_editable;
+
+	/**
+	 * Stores flags and palette index of a cell
+	 * 
+	 * @param x
+	 * @param y
+	 * @param flags
+	 * @param type
+	 */
+	protected abstract void setCell(int x, int y, byte flags, short type);
+
+	@Override
+	public ITile getTileAt(int x, int y) {
+		final TileMapCell cell = m_cells.get(key(x, y));
+
+		return (cell != null) ? cell : new TileMapCell(this, x, y);
+	}
+
+	@Override
+	public void setTileAt(int x, int y, ITile tile) {
+		final byte flags = TileFlags.of(tile);
+
+		setCell(x, y, flags, m_palette.indexOf(tile, flags));
+	}
+
+	@Override
+	public final ITile getTileAtPos(double x, double y) {
+		return getTileAt((int) x, (int) y);
+	}
+
+	@Override
+	public void setTileAtPos(double x, double y, ITile tile) {
+		setTileAt((int) x, (int) y, tile);
+	}
+
+	@Override
+	public final ITile getPaletteTile(int type) {
+		return m_palette.get(type);
+	}
+
+	/**
+	 * Returns the palette index of the type of tile, adding the type if it is
+	 * not used on the map yet.
+	 * 
+	 * @param tile
+	 * @return
+	 */
+	public final short getPaletteIndex(ITile tile) {
+		return m_palette.indexOf(tile);
+	}
+
+	/**
+	 * Does nothing, override for maps which are not fully in memory.
+	 */
+	@Override
+	public void prefetch(IEntity viewer) {
+	}
+
+	/**
+	 * Returns the number of different tile types on the map
+	 * 
+	 * @return
+	 */
+	public final int getPaletteSize() {
+		return m_palette.size();
+	}
+
+	@Override
+	public final EntityGrid getEntityGrid() {
+		return m_entityGrid;
+	}
+
+	/**
+	 * Returns the number of cells with sprites
+	 * 
+	 * @return
+	 */
+	public final int getOccupiedCount() {
+		return m_cells.size();
+	}
+
+	/**
+	 * Forgets all entities and sprites, e.g. when loading a new map.
+	 */
+	protected final void clearCells() {
+		m_cells.clear();
+		m_entityGrid.clear();
+	}
+
+	/*
+	 * Returns the registered view of an occupied cell, registering the given
+	 * one if the cell is not occupied yet.
+	 */
+	final TileMapCell occupy(TileMapCell cell) {
+		final Long key = key(cell.getX(), cell.getY());
+		final TileMapCell registered = m_cells.get(key);
+
+		if (registered != null) {
+			return registered;
+		}
+
+		m_cells.put(key, cell);
+		return cell;
+	}
+
+	final TileMapCell getOccupied(int x, int y) {
+		return m_cells.get(key(x, y));
+	}
+
+	private static Long key(int x, int y) {
+		return ((long) y << 32) | (x & 0xffffffffL);
+	}
+
+	@Override
+	public boolean isEditable() {
+		return m_editable;
+	}
+
+	@Override
+	public int getWidth() {
+		return m_width;
+	}
+
+	@Override
+	public int getHeight() {
+		return m_height;
+	}
+}
@@ -0,0 +1,83 @@
+package com.raycaster.Tile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * ChunkDirectory
+ * 
+ * Stores every chunk of a ChunkedTileMap in its own file of a directory:
+ * the chunk size followed by the flags and the palette indices of all cells.
+ */
+public class ChunkDirectory implements IChunkSource {
+
+	private final File m_directory;
+
+	public ChunkDirectory(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create directory " + directory);
+		}
+
+		m_directory = directory;
+	}
+
+	private final File getFile(int chunkX, int chunkY) {
+		return new File(m_directory, "chunk_" + chunkX + "_" + chunkY + ".bin");
+	}
+
+	@Override
+	public TileChunk loadChunk(int chunkX, int chunkY, int size) throws IOException {
+		final File file = getFile(chunkX, chunkY);
+
+		if (!file.exists()) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != size) {
+				throw new IOException("Chunk size of " + file + " does not match " + size);
+			}
+
+			final TileChunk chunk = new TileChunk(chunkX, chunkY, size);
+			final short types[] = chunk.getTypes();
+
+			in.readFully(chunk.getFlags());
+
+			for (int i = 0; i < types.length; ++i) {
+				types[i] = in.readShort();
+			}
+
+			return chunk;
+		}
+	}
+
+	@Override
+	public void saveChunk(TileChunk chunk) throws IOException {
+		final File file = getFile(chunk.getChunkX(), chunk.getChunkY());
+
+		// write next to it first, a chunk file is never half written
+		final File temp = new File(m_directory, file.getName() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(chunk.getSize());
+			out.write(chunk.getFlags());
+
+			for (short type : chunk.getTypes()) {
+				out.writeShort(type);
+			}
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public final File getDirectory() {
+		return m_directory;
+	}
+}
@@ -0,0 +1,624 @@
+package com.raycaster.Tile;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.raycaster.Entities.IEntity;
+import com.raycaster.IO.IGameFile;
+
+/**
+ * ChunkedTileMap
+ * 
+ * A tile map for worlds larger than memory. Cells are stored in square
+ * chunks which are loaded from an IChunkSource on demand and kept in an LRU
+ * cache of a fixed number of chunks, changed chunks are written back when
+ * evicted or flushed. Memory use depends on chunk size and cache size only.
+ * 
+ * Chunks are written on a background thread, evicted chunks stay available
+ * until they are written, so the old version is never loaded. Errors of
+ * these writes are thrown by the next flush().
+ * 
+ * prefetch() loads the chunks around the viewer and ahead of it in the
+ * background, so render threads rarely have to wait for a chunk. Cells of
+ * chunks which have never been stored are of the fill tile, palette index 0.
+ * 
+ * Reads from render threads go through a lock free lookup table of resident
+ * chunks, everything else is synchronized.
+ */
+public class ChunkedTileMap extends AbstractTileMap {
+
+	public static final int DEFAULT_CHUNK_SIZE = 64;
+	public static final int DEFAULT_MAX_CHUNKS = 256;
+
+	private final int m_chunkSize;
+	private final int m_chunkShift;
+	private final int m_chunkMask;
+
+	private final int m_chunksX;
+	private final int m_chunksY;
+
+	private final int m_maxChunks;
+	private int m_prefetchRadius;
+
+	private final IChunkSource m_source;
+	private byte m_fillFlags;
+
+	// guards the cache and all writes to chunks
+	private final Object m_lock = new Object();
+
+	// resident chunks in access order, oldest first
+	private final LinkedHashMap<Long, TileChunk> m_resident;
+	private final HashSet<Long> m_loading = new HashSet<Long>();
+	private final HashSet<Long> m_queued = new HashSet<Long>();
+	// counts loadFromFile() calls, chunks loaded before one are dropped
+	private int m_generation;
+
+	// evicted chunks which are not written yet
+	private final HashMap<Long, TileChunk> m_writing = new HashMap<Long, TileChunk>();
+	private Exception m_writeError;
+
+	// direct mapped lookup of resident chunks for readers
+	private final AtomicReferenceArray<TileChunk> m_lookup;
+	private final int m_lookupMask;
+
+	private ExecutorService m_prefetcher;
+	private ExecutorService m_writer;
+
+	public ChunkedTileMap(int width, int height, IChunkSource source, ITile fill) {
+		this(width, height, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_CHUNKS, source, fill);
+	}
+
+	/**
+	 * @param width
+	 *            width in tiles
+	 * @param height
+	 *            height in tiles
+	 * @param chunkSize
+	 *            width and height of a chunk in tiles, a power of two
+	 * @param maxChunks
+	 *            number of chunks kept in memory
+	 * @param source
+	 *            storage of the chunks
+	 * @param fill
+	 *            tile of cells which have not been stored yet
+	 */
+	public ChunkedTileMap(int width, int height, int chunkSize, int maxChunks, IChunkSource source, ITile fill) {
+		if (chunkSize <= 0 || Integer.bitCount(chunkSize) != 1) {
+			throw new IllegalArgumentException("chunkSize must be a power of two");
+		}
+
+		if (maxChunks <= 0) {
+			throw new IllegalArgumentException("maxChunks must be positive");
+		}
+
+		m_width = width;
+		m_height = height;
+		m_editable = true;
+
+		m_chunkSize = chunkSize;
+		m_chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+		m_chunkMask = chunkSize - 1;
+
+		m_chunksX = (width + m_chunkMask) >> m_chunkShift;
+		m_chunksY = (height + m_chunkMask) >> m_chunkShift;
+
+		m_maxChunks = maxChunks;
+		m_prefetchRadius = 1;
+
+		m_source = source;
+
+		m_resident = new LinkedHashMap<Long, TileChunk>(maxChunks * 2, 0.75f, true);
+
+		final int lookupSize = Integer.highestOneBit(Math.max(16, maxChunks * 4) - 1) << 1;
+		m_lookup = new AtomicReferenceArray<TileChunk>(lookupSize);
+		m_lookupMask = lookupSize - 1;
+
+		m_palette.indexOf(fill);
+		m_fillFlags = TileFlags.of(fill);
+	}
+
+	@Override
+	public final byte getTileFlags(int x, int y) {
+		if (x < 0 || y < 0 || x >= m_width || y >= m_height) {
+			return TileFlags.OUTSIDE;
+		}
+
+		return getChunk(x >> m_chunkShift, y >> m_chunkShift).m_flags[(x & m_chunkMask) + ((y & m_chunkMask) << m_chunkShift)];
+	}
+
+	@Override
+	public final short getTileType(int x, int y) {
+		return getChunk(x >> m_chunkShift, y >> m_chunkShift).m_types[(x & m_chunkMask) + ((y & m_chunkMask) << m_chunkShift)];
+	}
+
+	@Override
+	protected final void setCell(int x, int y, byte flags, short type) {
+		if (x < 0 || y < 0 || x >= m_width || y >= m_height) {
+			throw new IndexOutOfBoundsException("(" + x + ", " + y + ") is not on the map");
+		}
+
+		final int chunkX = x >> m_chunkShift;
+		final int chunkY = y >> m_chunkShift;
+		final Long key = key(chunkX, chunkY);
+		final int i = (x & m_chunkMask) + ((y & m_chunkMask) << m_chunkShift);
+
+		while (true) {
+			// loaded without holding m_lock, so readers do not wait for it
+			final TileChunk chunk = getChunk(chunkX, chunkY);
+
+			synchronized (m_lock) {
+				// the chunk may have been evicted meanwhile, a change to it
+				// would be lost
+				if (m_resident.get(key) == chunk) {
+					chunk.m_flags[i] = flags;
+					chunk.m_types[i] = type;
+					chunk.m_dirty = true;
+					return;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Returns a resident chunk, loading it if needed
+	 */
+	private final TileChunk getChunk(int chunkX, int chunkY) {
+		final TileChunk cached = m_lookup.get(slot(chunkX, chunkY));
+
+		if (cached != null && cached.getChunkX() == chunkX && cached.getChunkY() == chunkY) {
+			return cached;
+		}
+
+		final Long key = key(chunkX, chunkY);
+		final int generation;
+
+		synchronized (m_lock) {
+			while (true) {
+				TileChunk chunk = m_resident.get(key);
+
+				if (chunk == null) {
+					chunk = m_writing.remove(key);
+
+					if (chunk != null) {
+						insert(key, chunk);
+					}
+				}
+
+				if (chunk != null) {
+					m_lookup.set(slot(chunkX, chunkY), chunk);
+					return chunk;
+				}
+
+				if (!m_loading.contains(key)) {
+					break;
+				}
+
+				// another thread is loading it
+				try {
+					m_lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while waiting for chunk " + chunkX + ", " + chunkY, e);
+				}
+			}
+
+			m_loading.add(key);
+			generation = m_generation;
+		}
+
+		TileChunk chunk = null;
+
+		try {
+			chunk = loadChunk(chunkX, chunkY);
+		} finally {
+			synchronized (m_lock) {
+				m_loading.remove(key);
+				m_lock.notifyAll();
+
+				// not kept if the map has been reloaded meanwhile
+				if (chunk != null && generation == m_generation) {
+					insert(key, chunk);
+				}
+			}
+		}
+
+		return chunk;
+	}
+
+	private final TileChunk loadChunk(int chunkX, int chunkY) {
+		TileChunk chunk;
+
+		try {
+			chunk = m_source.loadChunk(chunkX, chunkY, m_chunkSize);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not load chunk " + chunkX + ", " + chunkY, e);
+		}
+
+		if (chunk == null) {
+			chunk = new TileChunk(chunkX, chunkY, m_chunkSize);
+			Arrays.fill(chunk.m_flags, m_fillFlags);
+		}
+
+		return chunk;
+	}
+
+	/*
+	 * Adds a loaded chunk and evicts the least recently used ones, needs
+	 * m_lock. Does no I/O, changed chunks are written in the background.
+	 */
+	private final void insert(Long key, TileChunk chunk) {
+		m_resident.put(key, chunk);
+		m_lookup.set(slot(chunk.getChunkX(), chunk.getChunkY()), chunk);
+
+		final Iterator<Map.Entry<Long, TileChunk>> it = m_resident.entrySet().iterator();
+
+		while (m_resident.size() > m_maxChunks) {
+			final Map.Entry<Long, TileChunk> eldest = it.next();
+			final TileChunk evicted = eldest.getValue();
+
+			it.remove();
+			m_lookup.compareAndSet(slot(evicted.getChunkX(), evicted.getChunkY()), evicted, null);
+
+			// kept until written, so nobody loads the old version
+			if (evicted.m_dirty || evicted.m_pendingWrites > 0) {
+				m_writing.put(eldest.getKey(), evicted);
+
+				if (evicted.m_dirty) {
+					write(evicted);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Queues a write of a changed chunk, needs m_lock
+	 */
+	private final void write(final TileChunk chunk) {
+		chunk.m_dirty = false;
+		++chunk.m_pendingWrites;
+
+		if (m_writer == null) {
+			m_writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "EpicRay-ChunkWrite");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		m_writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				Exception error = null;
+
+				try {
+					m_source.saveChunk(chunk);
+				} catch (IOException | RuntimeException e) {
+					error = e;
+				}
+
+				synchronized (m_lock) {
+					--chunk.m_pendingWrites;
+
+					if (error != null) {
+						// written again by the next flush, kept until then
+						chunk.m_dirty = true;
+
+						if (m_writeError == null) {
+							m_writeError = error;
+						}
+					} else if (chunk.m_pendingWrites == 0 && !chunk.m_dirty) {
+						m_writing.remove(key(chunk.getChunkX(), chunk.getChunkY()), chunk);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Loads the chunks around the viewer and ahead in its view direction in
+	 * the background.
+	 */
+	@Override
+	public void prefetch(IEntity viewer) {
+		final float x = viewer.getX();
+		final float y = viewer.getY();
+
+		final int chunkX = (int) Math.floor(x) >> m_chunkShift;
+		final int chunkY = (int) Math.floor(y) >> m_chunkShift;
+
+		for (int dy = -m_prefetchRadius; dy <= m_prefetchRadius; ++dy) {
+			for (int dx = -m_prefetchRadius; dx <= m_prefetchRadius; ++dx) {
+				requestChunk(chunkX + dx, chunkY + dy);
+			}
+		}
+
+		final float dirX = viewer.getViewDirectionX();
+		final float dirY = viewer.getViewDirectionY();
+		final float length = (float) Math.sqrt(dirX * dirX + dirY * dirY);
+
+		if (length == 0.0f) {
+			return;
+		}
+
+		// chunks further ahead, in steps of half a chunk
+		final float step = m_chunkSize * 0.5f / length;
+
+		for (int i = 1; i <= 4 * m_prefetchRadius; ++i) {
+			requestChunk((int) Math.floor(x + dirX * step * i) >> m_chunkShift,
+					(int) Math.floor(y + dirY * step * i) >> m_chunkShift);
+		}
+	}
+
+	private final void requestChunk(final int chunkX, final int chunkY) {
+		if (chunkX < 0 || chunkY < 0 || chunkX >= m_chunksX || chunkY >= m_chunksY) {
+			return;
+		}
+
+		final Long key = key(chunkX, chunkY);
+
+		synchronized (m_lock) {
+			// get() also marks resident chunks as recently used
+			if (m_resident.get(key) != null || m_loading.contains(key) || !m_queued.add(key)) {
+				return;
+			}
+
+			if (m_prefetcher == null) {
+				m_prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						final Thread thread = new Thread(r, "EpicRay-ChunkPrefetch");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+		}
+
+		m_prefetcher.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					getChunk(chunkX, chunkY);
+				} catch (RuntimeException e) {
+					// a render thread loading it again reports the error
+				} finally {
+					synchronized (m_lock) {
+						m_queued.remove(key);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Writes all changed chunks to the chunk source and waits for them
+	 * 
+	 * @throws IOException
+	 *             if a chunk could not be written since the last flush(),
+	 *             it is written again by the next one
+	 */
+	public void flush() throws IOException {
+		final Future<?> written;
+
+		synchronized (m_lock) {
+			for (TileChunk chunk : m_resident.values()) {
+				if (chunk.m_dirty) {
+					write(chunk);
+				}
+			}
+
+			// evicted chunks whose write failed
+			for (TileChunk chunk : m_writing.values()) {
+				if (chunk.m_dirty) {
+					write(chunk);
+				}
+			}
+
+			if (m_writer == null) {
+				return;
+			}
+
+			// runs after all writes queued before
+			written = m_writer.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			});
+		}
+
+		try {
+			written.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing chunks", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Could not write chunks", e.getCause());
+		}
+
+		synchronized (m_lock) {
+			final Exception error = m_writeError;
+			m_writeError = null;
+
+			if (error != null) {
+				throw new IOException("Could not write chunks", error);
+			}
+		}
+	}
+
+	/**
+	 * Stops prefetching and writes all changed chunks
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		final ExecutorService prefetcher;
+
+		synchronized (m_lock) {
+			prefetcher = m_prefetcher;
+			m_prefetcher = null;
+		}
+
+		if (prefetcher != null) {
+			prefetcher.shutdownNow();
+		}
+
+		flush();
+
+		final ExecutorService writer;
+
+		synchronized (m_lock) {
+			writer = m_writer;
+			m_writer = null;
+		}
+
+		// all writes are done after flush()
+		if (writer != null) {
+			writer.shutdown();
+		}
+	}
+
+	/**
+	 * Saves size and palette, the cells are flushed to the chunk source.
+	 */
+	@Override
+	public boolean saveToFile(IGameFile gameFile) throws IOException {
+		gameFile.writeInt(m_width);
+		gameFile.writeInt(m_height);
+		gameFile.writeInt(m_chunkSize);
+
+		final int types = m_palette.size();
+		gameFile.writeInt(types);
+
+		for (int i = 0; i < types; ++i) {
+			gameFile.saveSaveable(m_palette.get(i));
+		}
+
+		flush();
+		return true;
+	}
+
+	/**
+	 * Loads the palette, cells are loaded from the chunk source of this map on
+	 * demand. Size and chunk size have to match. Changes which have not been
+	 * flushed are discarded, chunks which are being loaded or prefetched
+	 * meanwhile are not kept.
+	 */
+	@Override
+	public boolean loadFromFile(IGameFile gameFile) throws IOException {
+		final int width = gameFile.readInt();
+		final int height = gameFile.readInt();
+		final int chunkSize = gameFile.readInt();
+
+		if (width != m_width || height != m_height || chunkSize != m_chunkSize) {
+			throw new IOException("Map is " + width + "x" + height + " in chunks of " + chunkSize
+					+ ", expected " + m_width + "x" + m_height + " in chunks of " + m_chunkSize);
+		}
+
+		final int typeCount = gameFile.readInt();
+
+		if (typeCount < 1) {
+			throw new IOException("Map has " + typeCount + " tile types");
+		}
+
+		final ITile types[] = new ITile[typeCount];
+
+		for (int i = 0; i < types.length; ++i) {
+			types[i] = (ITile) gameFile.readSaveable();
+		}
+
+		synchronized (m_lock) {
+			++m_generation;
+
+			// discarded, evicted chunks being written still reach the source
+			for (TileChunk chunk : m_resident.values()) {
+				chunk.m_dirty = false;
+			}
+
+			m_resident.clear();
+
+			// evicted chunks whose write failed
+			final Iterator<TileChunk> failed = m_writing.values().iterator();
+
+			while (failed.hasNext()) {
+				final TileChunk chunk = failed.next();
+
+				if (chunk.m_dirty && chunk.m_pendingWrites == 0) {
+					chunk.m_dirty = false;
+					failed.remove();
+				}
+			}
+
+			for (int i = 0; i < m_lookup.length(); ++i) {
+				m_lookup.set(i, null);
+			}
+
+			m_palette.clear();
+			clearCells();
+
+			for (ITile type : types) {
+				m_palette.indexOf(type);
+			}
+
+			m_fillFlags = TileFlags.of(m_palette.get(0));
+		}
+
+		return true;
+	}
+
+	@Override
+	public String getTag() {
+		return "ChunkedTileMap";
+	}
+
+	private final int slot(int chunkX, int chunkY) {
+		int hash = chunkX * 0x9E3779B1 + chunkY * 0x7FEB352D;
+		hash ^= hash >>> 15;
+		return hash & m_lookupMask;
+	}
+
+	private static Long key(int chunkX, int chunkY) {
+		return ((long) chunkY << 32) | (chunkX & 0xffffffffL);
+	}
+
+	/**
+	 * Chunks around the viewer loaded by prefetch, in each direction.
+	 * (2r+1)^2 + 4r chunks should fit into the cache.
+	 * 
+	 * @param radius
+	 */
+	public final void setPrefetchRadius(int radius) {
+		m_prefetchRadius = Math.max(0, radius);
+	}
+
+	public final int getChunkSize() {
+		return m_chunkSize;
+	}
+
+	public final int getMaxChunks() {
+		return m_maxChunks;
+	}
+
+	/**
+	 * Returns the number of chunks in memory
+	 * 
+	 * @return
+	 */
+	public final int getResidentCount() {
+		synchronized (m_lock) {
+			return m_resident.size();
+		}
+	}
+}
@@ -0,0 +1,381 @@
+package com.raycaster.Tile;
+import java.util.Arrays;
+import java.util.List;
+
+import com.raycaster.Entities.IEntity;
+
+/**
+ * EntityGrid
+ *
+ * Spatial index of the entities on a tile map. Entities are points sorted
+ * into the tile cells they are in, the cells are hashed into buckets, so
+ * the grid does not depend on the size of the map. Every entity has a slot
+ * which links it into the list of its bucket, all kept in int arrays:
+ * adding, moving and removing are O(1), and a move only relinks the slot
+ * when the entity crosses into another cell.
+ *
+ * Queries append the entities of the cells they cover to a list. Not thread
+ * safe, change and query the grid on the game thread.
+ */
+public final class EntityGrid {
+
+	/** Slot of no entity */
+	public static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	// per slot, m_entities is null for free slots, which are chained by
+	// m_next
+	private IEntity m_entities[];
+	private float m_x[];
+	private float m_y[];
+	private int m_cellX[];
+	private int m_cellY[];
+	private int m_next[];
+	private int m_prev[];
+
+	// first slot of each bucket
+	private int m_heads[];
+
+	private int m_free;
+	private int m_used;
+	private int m_count;
+
+	public EntityGrid() {
+		clear();
+	}
+
+	/**
+	 * Removes all entities, their slots become invalid
+	 */
+	public void clear() {
+		m_entities = new IEntity[INITIAL_CAPACITY];
+		m_x = new float[INITIAL_CAPACITY];
+		m_y = new float[INITIAL_CAPACITY];
+		m_cellX = new int[INITIAL_CAPACITY];
+		m_cellY = new int[INITIAL_CAPACITY];
+		m_next = new int[INITIAL_CAPACITY];
+		m_prev = new int[INITIAL_CAPACITY];
+
+		m_heads = new int[INITIAL_CAPACITY];
+		Arrays.fill(m_heads, NONE);
+
+		m_free = NONE;
+		m_used = 0;
+		m_count = 0;
+	}
+
+	/**
+	 * Adds an entity at x, y
+	 *
+	 * @param entity
+	 * @param x
+	 * @param y
+	 * @return the slot of the entity, for move() and remove()
+	 */
+	public int add(IEntity entity, float x, float y) {
+		final int slot;
+
+		if (m_free != NONE) {
+			slot = m_free;
+			m_free = m_next[slot];
+		} else {
+			if (m_used == m_entities.length) {
+				grow();
+			}
+			slot = m_used++;
+		}
+
+		m_entities[slot] = entity;
+		m_x[slot] = x;
+		m_y[slot] = y;
+		m_cellX[slot] = cell(x);
+		m_cellY[slot] = cell(y);
+
+		link(slot);
+
+		if (++m_count > m_heads.length) {
+			rehash(m_heads.length << 1);
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Moves the entity in slot to x, y
+	 *
+	 * @param slot
+	 * @param x
+	 * @param y
+	 * @return true if it moved into another cell
+	 */
+	public boolean move(int slot, float x, float y) {
+		m_x[slot] = x;
+		m_y[slot] = y;
+
+		final int cellX = cell(x);
+		final int cellY = cell(y);
+
+		if (cellX == m_cellX[slot] && cellY == m_cellY[slot]) {
+			return false;
+		}
+
+		unlink(slot);
+
+		m_cellX[slot] = cellX;
+		m_cellY[slot] = cellY;
+
+		link(slot);
+		return true;
+	}
+
+	/**
+	 * Removes the entity in slot, the slot may be reused by the next add()
+	 *
+	 * @param slot
+	 */
+	public void remove(int slot) {
+		if (get(slot) == null) {
+			throw new IllegalArgumentException("Slot " + slot + " is free");
+		}
+
+		unlink(slot);
+
+		m_entities[slot] = null;
+		m_next[slot] = m_free;
+		m_free = slot;
+
+		--m_count;
+	}
+
+	/**
+	 * Returns the entity in slot, null if the slot is free or invalid
+	 *
+	 * @param slot
+	 * @return
+	 */
+	public IEntity get(int slot) {
+		return (slot >= 0 && slot < m_used) ? m_entities[slot] : null;
+	}
+
+	/**
+	 * Returns the slot of entity in cell x, y, or NONE
+	 *
+	 * @param entity
+	 * @param cellX
+	 * @param cellY
+	 * @return
+	 */
+	public int indexOf(IEntity entity, int cellX, int cellY) {
+		for (int s = m_heads[bucket(cellX, cellY)]; s != NONE; s = m_next[s]) {
+			if (m_entities[s] == entity && m_cellX[s] == cellX && m_cellY[s] == cellY) {
+				return s;
+			}
+		}
+
+		return NONE;
+	}
+
+	/**
+	 * Appends the entities in cell x, y to out
+	 *
+	 * @param cellX
+	 * @param cellY
+	 * @param out
+	 * @return the number of entities appended
+	 */
+	public int getEntities(int cellX, int cellY, List<? super IEntity> out) {
+		int found = 0;
+
+		for (int s = m_heads[bucket(cellX, cellY)]; s != NONE; s = m_next[s]) {
+			if (m_cellX[s] == cellX && m_cellY[s] == cellY) {
+				out.add(m_entities[s]);
+				++found;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Appends all entities to out
+	 *
+	 * @param out
+	 * @return the number of entities appended
+	 */
+	public int getEntities(List<? super IEntity> out) {
+		for (int s = 0; s < m_used; ++s) {
+			if (m_entities[s] != null) {
+				out.add(m_entities[s]);
+			}
+		}
+
+		return m_count;
+	}
+
+	/**
+	 * Appends the entities with minX <= x <= maxX and minY <= y <= maxY to
+	 * out
+	 *
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @param out
+	 * @return the number of entities appended
+	 */
+	public int queryBox(float minX, float minY, float maxX, float maxY, List<? super IEntity> out) {
+		return query(minX, minY, maxX, maxY, 0, 0, -1, out);
+	}
+
+	/**
+	 * Appends the entities within radius of x, y to out
+	 *
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param out
+	 * @return the number of entities appended
+	 */
+	public int queryRadius(float x, float y, float radius, List<? super IEntity> out) {
+		return query(x - radius, y - radius, x + radius, y + radius, x, y, radius * radius, out);
+	}
+
+	/*
+	 * Box query, entities also have to be within sqrt(radius2) of x, y if
+	 * radius2 is not negative
+	 */
+	private final int query(float minX, float minY, float maxX, float maxY, float x, float y, float radius2,
+			List<? super IEntity> out) {
+		if (!(minX <= maxX && minY <= maxY)) {
+			return 0;
+		}
+
+		final int cellX0 = cell(minX);
+		final int cellY0 = cell(minY);
+		final int cellX1 = cell(maxX);
+		final int cellY1 = cell(maxY);
+
+		int found = 0;
+
+		// walking more cells than there are entities is slower than testing
+		// every entity
+		if ((long) (cellX1 - cellX0 + 1) * (cellY1 - cellY0 + 1) > m_count) {
+			for (int s = 0; s < m_used; ++s) {
+				if (m_entities[s] != null && contains(s, minX, minY, maxX, maxY, x, y, radius2)) {
+					out.add(m_entities[s]);
+					++found;
+				}
+			}
+
+			return found;
+		}
+
+		for (int cellY = cellY0; cellY <= cellY1; ++cellY) {
+			for (int cellX = cellX0; cellX <= cellX1; ++cellX) {
+				for (int s = m_heads[bucket(cellX, cellY)]; s != NONE; s = m_next[s]) {
+					if (m_cellX[s] == cellX && m_cellY[s] == cellY
+							&& contains(s, minX, minY, maxX, maxY, x, y, radius2)) {
+						out.add(m_entities[s]);
+						++found;
+					}
+				}
+			}
+		}
+
+		return found;
+	}
+
+	private final boolean contains(int slot, float minX, float minY, float maxX, float maxY, float x, float y,
+			float radius2) {
+		final float sx = m_x[slot];
+		final float sy = m_y[slot];
+
+		if (sx < minX || sx > maxX || sy < minY || sy > maxY) {
+			return false;
+		}
+
+		if (radius2 < 0) {
+			return true;
+		}
+
+		final float dx = sx - x;
+		final float dy = sy - y;
+
+		return dx * dx + dy * dy <= radius2;
+	}
+
+	private final void link(int slot) {
+		final int bucket = bucket(m_cellX[slot], m_cellY[slot]);
+		final int head = m_heads[bucket];
+
+		m_prev[slot] = NONE;
+		m_next[slot] = head;
+
+		if (head != NONE) {
+			m_prev[head] = slot;
+		}
+
+		m_heads[bucket] = slot;
+	}
+
+	private final void unlink(int slot) {
+		final int prev = m_prev[slot];
+		final int next = m_next[slot];
+
+		if (prev != NONE) {
+			m_next[prev] = next;
+		} else {
+			m_heads[bucket(m_cellX[slot], m_cellY[slot])] = next;
+		}
+
+		if (next != NONE) {
+			m_prev[next] = prev;
+		}
+	}
+
+	private final void grow() {
+		final int capacity = m_entities.length << 1;
+
+		m_entities = Arrays.copyOf(m_entities, capacity);
+		m_x = Arrays.copyOf(m_x, capacity);
+		m_y = Arrays.copyOf(m_y, capacity);
+		m_cellX = Arrays.copyOf(m_cellX, capacity);
+		m_cellY = Arrays.copyOf(m_cellY, capacity);
+		m_next = Arrays.copyOf(m_next, capacity);
+		m_prev = Arrays.copyOf(m_prev, capacity);
+	}
+
+	/*
+	 * Keeps the number of buckets at least the number of entities
+	 */
+	private final void rehash(int buckets) {
+		m_heads = new int[buckets];
+		Arrays.fill(m_heads, NONE);
+
+		for (int s = 0; s < m_used; ++s) {
+			if (m_entities[s] != null) {
+				link(s);
+			}
+		}
+	}
+
+	private final int bucket(int cellX, int cellY) {
+		final int h = (cellX * 0x9e3779b1) ^ (cellY * 0x85ebca77);
+
+		return (h ^ (h >>> 15)) & (m_heads.length - 1);
+	}
+
+	private static int cell(float position) {
+		return (int) Math.floor(position);
+	}
+
+	/**
+	 * Returns the number of entities
+	 *
+	 * @return
+	 */
+	public int getCount() {
+		return m_count;
+	}
+}
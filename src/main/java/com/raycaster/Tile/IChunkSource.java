@@ -0,0 +1,29 @@
+package com.raycaster.Tile;
+import java.io.IOException;
+
+/**
+ * Storage of the chunks of a ChunkedTileMap. Called from render threads and
+ * the prefetch thread, implementations need to be thread safe.
+ */
+public interface IChunkSource {
+
+	/**
+	 * Loads a chunk
+	 * 
+	 * @param chunkX
+	 * @param chunkY
+	 * @param size
+	 *            width and height in cells
+	 * @return the chunk or null if it has not been stored yet
+	 * @throws IOException
+	 */
+	public TileChunk loadChunk(int chunkX, int chunkY, int size) throws IOException;
+
+	/**
+	 * Stores a changed chunk
+	 * 
+	 * @param chunk
+	 * @throws IOException
+	 */
+	public void saveChunk(TileChunk chunk) throws IOException;
+}
@@ -73,6 +73,13 @@ public interface ITile extends Saveable<ITile> {
 	 */
 	public void addEntity(IEntity entity);
 
+	/**
+	 * Removes an Entity from the Tile, e.g. when it moved to another one.
+	 * 
+	 * @param entity
+	 */
+	public void removeEntity(IEntity entity);
+
 	/**
 	 * Adds a decorating Sprite to the Tile
 	 * 
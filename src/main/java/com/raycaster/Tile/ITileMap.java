@@ -1,4 +1,5 @@
 package com.raycaster.Tile;
+import com.raycaster.Entities.IEntity;
 import com.raycaster.IO.Saveable;
 
 public interface ITileMap extends Saveable<ITileMap> {
@@ -39,6 +40,50 @@ public interface ITileMap extends Saveable<ITileMap> {
 	 */
 	public void setTileAt(int x, int y, ITile tile);
 
+	/**
+	 * Returns the TileFlags of the tile at given tile coords, or
+	 * TileFlags.OUTSIDE if they are not on the map.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public byte getTileFlags(int x, int y);
+
+	/**
+	 * Returns the palette index of the tile at given tile coords, tiles with
+	 * equal type, flags and rendering attributes share an index.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public short getTileType(int x, int y);
+
+	/**
+	 * Returns a tile of the type with given palette index
+	 * 
+	 * @param type
+	 * @return
+	 */
+	public ITile getPaletteTile(int type);
+
+	/**
+	 * Called by renderers before every frame. Maps which are not completely
+	 * in memory can start loading the region around the viewer.
+	 * 
+	 * @param viewer
+	 *            camera entity
+	 */
+	public void prefetch(IEntity viewer);
+
+	/**
+	 * Returns the spatial index of the entities on the map
+	 * 
+	 * @return
+	 */
+	public EntityGrid getEntityGrid();
+
 	/**
 	 * Returns true if Map is changeable
 	 * 
@@ -0,0 +1,395 @@
+package com.raycaster.Tile;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.raycaster.IO.IGameFile;
+import com.raycaster.Renderer.EpicRayRenderingAttributes;
+import com.raycaster.Renderer.IRenderingAttributes;
+
+/**
+ * MappedTileMap
+ * 
+ * A read only tile map used in place from a binary map file mapped into
+ * memory. Opening only parses the header and the tile types, the cells are
+ * read by the OS when first touched.
+ * 
+ * Binary map format, version 1, big endian:
+ * 
+ * <pre>
+ * int   magic "ERMP"
+ * int   version
+ * int   width, height
+ * int   number of tile types
+ * long  offset of the cells, a multiple of 8
+ * types: string type id, string name, byte TileFlags, byte has attributes,
+ *        [int wall, floor, ceiling color, byte textured]
+ * cells: short type index per cell, row by row
+ * </pre>
+ * 
+ * Strings are an int length followed by UTF-8 bytes. Textures are not
+ * stored, like in the GameFile format. Files are limited to 2 GB and
+ * Short.MAX_VALUE tile types. Cells holding no valid type index are
+ * treated as outside of the map.
+ */
+public class MappedTileMap extends AbstractTileMap {
+
+	public static final int MAGIC = 0x45524D50; // "ERMP"
+	public static final int VERSION = 1;
+
+	// two empty strings, flags and has attributes
+	private static final int MIN_TYPE_SIZE = 10;
+
+	private final ShortBuffer m_cells;
+
+	// TileFlags of every palette index
+	private final byte m_typeFlags[];
+
+	private MappedTileMap(int width, int height, ShortBuffer cells, ITile types[]) throws IOException {
+		m_width = width;
+		m_height = height;
+		m_editable = false;
+
+		m_cells = cells;
+		m_typeFlags = new byte[types.length];
+
+		for (int i = 0; i < types.length; ++i) {
+			m_typeFlags[i] = TileFlags.of(types[i]);
+
+			if (m_palette.indexOf(types[i], m_typeFlags[i]) != i) {
+				throw new IOException("Duplicate tile type " + types[i].getTypeId());
+			}
+		}
+	}
+
+	/**
+	 * Maps a binary map file
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 *             if the file is not a binary map of a supported version,
+	 *             has a broken header or is larger than 2 GB
+	 */
+	public static MappedTileMap open(File file) throws IOException {
+		final MappedByteBuffer buffer;
+
+		// the mapping stays valid after the channel is closed
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			final long length = raf.length();
+
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException(file + " is larger than 2 GB");
+			}
+
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+		}
+
+		if (buffer.remaining() < 28 || buffer.getInt() != MAGIC) {
+			throw new IOException(file + " is not a binary map");
+		}
+
+		final int version = buffer.getInt();
+
+		if (version != VERSION) {
+			throw new IOException(file + " has unsupported version " + version);
+		}
+
+		final int width = buffer.getInt();
+		final int height = buffer.getInt();
+		final int typeCount = buffer.getInt();
+		final long cellOffset = buffer.getLong();
+
+		if (width < 0 || height < 0) {
+			throw new IOException(file + " has a size of " + width + " x " + height);
+		}
+
+		// every type record takes at least MIN_TYPE_SIZE bytes
+		if (typeCount < 0 || typeCount > Short.MAX_VALUE || typeCount > buffer.remaining() / MIN_TYPE_SIZE
+				|| (typeCount == 0 && width > 0 && height > 0)) {
+			throw new IOException(file + " has " + typeCount + " tile types");
+		}
+
+		final ITile types[] = new ITile[typeCount];
+
+		try {
+			for (int i = 0; i < typeCount; ++i) {
+				types[i] = readType(buffer);
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException(file + " is truncated", e);
+		} catch (IOException e) {
+			throw new IOException(file + " has a broken tile type", e);
+		}
+
+		if (cellOffset < buffer.position() || cellOffset > buffer.capacity() || (cellOffset & 7) != 0) {
+			throw new IOException(file + " has a bad cell offset " + cellOffset);
+		}
+
+		if (cellOffset + (long) width * height * 2 > buffer.capacity()) {
+			throw new IOException(file + " is truncated");
+		}
+
+		buffer.position((int) cellOffset);
+
+		return new MappedTileMap(width, height, buffer.slice().asShortBuffer(), types);
+	}
+
+	/**
+	 * Writes a tile map as binary map file. Only the tile types used by the
+	 * map are stored. Tile types which only differ by what a type record
+	 * does not hold, e.g. their textures, are stored as one type.
+	 * 
+	 * @param map
+	 * @param file
+	 * @throws IOException
+	 *             if the map is too large or uses more than Short.MAX_VALUE
+	 *             tile types
+	 */
+	public static void write(ITileMap map, File file) throws IOException {
+		final int width = map.getWidth();
+		final int height = map.getHeight();
+
+		if ((long) width * height * 2 > Integer.MAX_VALUE) {
+			throw new IOException("Map is too large for a binary map file");
+		}
+
+		// source palette index -> index in the file
+		short remap[] = new short[16];
+		Arrays.fill(remap, (short) -1);
+
+		final TilePalette types = new TilePalette();
+
+		for (int y = 0; y < height; ++y) {
+			for (int x = 0; x < width; ++x) {
+				final short type = map.getTileType(x, y);
+
+				if (type >= remap.length) {
+					final int oldLength = remap.length;
+					remap = Arrays.copyOf(remap, Math.max(type + 1, oldLength * 2));
+					Arrays.fill(remap, oldLength, remap.length, (short) -1);
+				}
+
+				if (remap[type] == -1) {
+					final int index = types.indexOf(storedType(map.getPaletteTile(type)));
+
+					if (index >= Short.MAX_VALUE) {
+						throw new IOException("Map uses more than " + Short.MAX_VALUE + " tile types");
+					}
+
+					remap[type] = (short) index;
+				}
+			}
+		}
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+
+			final FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(width);
+			buffer.putInt(height);
+			buffer.putInt(types.size());
+			buffer.putLong(0); // cell offset, known after the types
+
+			for (int i = 0; i < types.size(); ++i) {
+				buffer = writeType(buffer, types.get(i));
+			}
+
+			final int cellOffset = (buffer.position() + 7) & ~7;
+
+			while (buffer.position() < cellOffset) {
+				buffer.put((byte) 0);
+			}
+
+			buffer.putLong(20, cellOffset);
+
+			for (int y = 0; y < height; ++y) {
+				for (int x = 0; x < width; ++x) {
+					if (!buffer.hasRemaining()) {
+						flush(channel, buffer);
+					}
+
+					buffer.putShort(remap[map.getTileType(x, y)]);
+				}
+			}
+
+			flush(channel, buffer);
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+
+	private static ITile readType(ByteBuffer buffer) throws IOException {
+		final String typeID = readString(buffer);
+		final String name = readString(buffer);
+		final byte flags = buffer.get();
+
+		EpicRayRenderingAttributes ra = null;
+
+		if (buffer.get() != 0) {
+			ra = new EpicRayRenderingAttributes();
+			ra.m_wallColor = buffer.getInt();
+			ra.m_floorColor = buffer.getInt();
+			ra.m_ceilColor = buffer.getInt();
+			ra.m_textured = buffer.get() != 0;
+		}
+
+		return newType(typeID, name, flags, ra);
+	}
+
+	/*
+	 * Returns tile as it is read back from its type record, so types are
+	 * told apart by the same key when writing and when opening
+	 */
+	private static ITile storedType(ITile tile) {
+		final IRenderingAttributes attribs = tile.getRenderingAttributes();
+
+		EpicRayRenderingAttributes ra = null;
+
+		if (attribs instanceof EpicRayRenderingAttributes) {
+			final EpicRayRenderingAttributes source = (EpicRayRenderingAttributes) attribs;
+
+			ra = new EpicRayRenderingAttributes();
+			ra.m_wallColor = source.m_wallColor;
+			ra.m_floorColor = source.m_floorColor;
+			ra.m_ceilColor = source.m_ceilColor;
+			ra.m_textured = source.m_textured;
+		}
+
+		return newType(tile.getTypeId(), tile.getName(), TileFlags.of(tile), ra);
+	}
+
+	private static ITile newType(String typeID, String name, byte flags, EpicRayRenderingAttributes ra) {
+		final Tile tile = new Tile(typeID, (flags & TileFlags.OPAQUE) != 0, (flags & TileFlags.SOLID) != 0, ra);
+		tile.setName(name);
+
+		return tile;
+	}
+
+	private static ByteBuffer writeType(ByteBuffer buffer, ITile tile) {
+		final byte typeID[] = tile.getTypeId().getBytes(StandardCharsets.UTF_8);
+		final byte name[] = tile.getName().getBytes(StandardCharsets.UTF_8);
+
+		// room for strings, flags and attributes
+		final int size = 8 + typeID.length + name.length + 2 + 13;
+
+		if (buffer.remaining() < size) {
+			final ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+
+		buffer.putInt(typeID.length).put(typeID);
+		buffer.putInt(name.length).put(name);
+		buffer.put(TileFlags.of(tile));
+
+		final IRenderingAttributes attribs = tile.getRenderingAttributes();
+
+		if (attribs instanceof EpicRayRenderingAttributes) {
+			final EpicRayRenderingAttributes ra = (EpicRayRenderingAttributes) attribs;
+
+			buffer.put((byte) 1);
+			buffer.putInt(ra.m_wallColor);
+			buffer.putInt(ra.m_floorColor);
+			buffer.putInt(ra.m_ceilColor);
+			buffer.put((byte) (ra.m_textured ? 1 : 0));
+		} else {
+			buffer.put((byte) 0);
+		}
+
+		return buffer;
+	}
+
+	private static String readString(ByteBuffer buffer) throws IOException {
+		final int length = buffer.getInt();
+
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IOException("Bad string length " + length);
+		}
+
+		final byte bytes[] = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Returns the type index of cell i, -1 if the file holds no valid one
+	 */
+	private final int typeOf(int i) {
+		final short type = m_cells.get(i);
+
+		return (type >= 0 && type < m_typeFlags.length) ? type : -1;
+	}
+
+	@Override
+	public final byte getTileFlags(int x, int y) {
+		if (x < 0 || y < 0 || x >= m_width || y >= m_height) {
+			return TileFlags.OUTSIDE;
+		}
+
+		final int type = typeOf(x + y * m_width);
+
+		return (type >= 0) ? m_typeFlags[type] : TileFlags.OUTSIDE;
+	}
+
+	/**
+	 * Returns 0 for cells which hold no valid type index
+	 */
+	@Override
+	public final short getTileType(int x, int y) {
+		final int type = typeOf(x + y * m_width);
+
+		return (type >= 0) ? (short) type : 0;
+	}
+
+	@Override
+	protected void setCell(int x, int y, byte flags, short type) {
+		throw new UnsupportedOperationException("MappedTileMap is read only");
+	}
+
+	/**
+	 * Saves the map in the format of TileMap, so it is loaded as one.
+	 */
+	@Override
+	public boolean saveToFile(IGameFile gameFile) throws IOException {
+		gameFile.writeInt(m_width);
+		gameFile.writeInt(m_height);
+
+		final int length = m_width * m_height;
+
+		for (int i = 0; i < length; ++i) {
+			gameFile.saveSaveable(m_palette.get(Math.max(typeOf(i), 0)));
+		}
+		return true;
+	}
+
+	@Override
+	public boolean loadFromFile(IGameFile gameFile) throws IOException {
+		throw new IOException("A MappedTileMap can only be opened from a binary map file");
+	}
+
+	@Override
+	public String getTag() {
+		return "TileMap";
+	}
+}
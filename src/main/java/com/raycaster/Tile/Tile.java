@@ -136,6 +136,11 @@ public class Tile implements ITile {
 		entity.setCurrentTile(this);
 	}
 
+	@Override
+	public void removeEntity(IEntity entity) {
+		m_entities.remove(entity);
+	}
+
 	@Override
 	public void addSprite(ISprite sprite) {
 		m_sprites.add(sprite);
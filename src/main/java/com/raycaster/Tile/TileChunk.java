@@ -0,0 +1,65 @@
+package com.raycaster.Tile;
+
+/**
+ * A square block of cells of a ChunkedTileMap, stored row by row.
+ */
+public final class TileChunk {
+
+	private final int m_chunkX;
+	private final int m_chunkY;
+	private final int m_size;
+
+	final byte m_flags[];
+	final short m_types[];
+
+	// changed since loaded or last written, guarded by the map
+	boolean m_dirty;
+	// writes queued or running, guarded by the map
+	int m_pendingWrites;
+
+	/**
+	 * @param chunkX
+	 *            position in chunks
+	 * @param chunkY
+	 * @param size
+	 *            width and height in cells
+	 */
+	public TileChunk(final int chunkX, final int chunkY, final int size) {
+		m_chunkX = chunkX;
+		m_chunkY = chunkY;
+		m_size = size;
+
+		m_flags = new byte[size * size];
+		m_types = new short[size * size];
+	}
+
+	public final int getChunkX() {
+		return m_chunkX;
+	}
+
+	public final int getChunkY() {
+		return m_chunkY;
+	}
+
+	public final int getSize() {
+		return m_size;
+	}
+
+	/**
+	 * Returns the TileFlags of all cells, row by row
+	 * 
+	 * @return
+	 */
+	public final byte[] getFlags() {
+		return m_flags;
+	}
+
+	/**
+	 * Returns the palette indices of all cells, row by row
+	 * 
+	 * @return
+	 */
+	public final short[] getTypes() {
+		return m_types;
+	}
+}
@@ -0,0 +1,63 @@
+package com.raycaster.Tile;
+
+import com.raycaster.Renderer.EpicRayRenderingAttributes;
+import com.raycaster.Renderer.IRenderingAttributes;
+
+/**
+ * Bits of the per cell flags kept by tile maps, see
+ * {@link ITileMap#getTileFlags(int, int)}
+ */
+public final class TileFlags {
+
+	/** Tile does not let light pass, see {@link ITile#isOpaque()} */
+	public static final byte OPAQUE = 1;
+
+	/** Tile blocks movement, see {@link ITile#isSolid()} */
+	public static final byte SOLID = 2;
+
+	/** Tile is rendered with a floor texture */
+	public static final byte FLOOR_TEXTURE = 4;
+
+	/** Tile is rendered with a ceiling texture */
+	public static final byte CEIL_TEXTURE = 8;
+
+	/** Position is not on the map, no other bit is set */
+	public static final byte OUTSIDE = (byte) 0x80;
+
+	private TileFlags() {
+	}
+
+	/**
+	 * Computes the flags of a tile
+	 * 
+	 * @param tile
+	 * @return
+	 */
+	public static byte of(final ITile tile) {
+		byte flags = 0;
+
+		if (tile.isOpaque()) {
+			flags |= OPAQUE;
+		}
+
+		if (tile.isSolid()) {
+			flags |= SOLID;
+		}
+
+		final IRenderingAttributes attribs = tile.getRenderingAttributes();
+
+		if (attribs instanceof EpicRayRenderingAttributes) {
+			final EpicRayRenderingAttributes ra = (EpicRayRenderingAttributes) attribs;
+
+			if (ra.m_textured && (ra.m_floorTexture != null || ra.m_floorTextureId >= 0)) {
+				flags |= FLOOR_TEXTURE;
+			}
+
+			if (ra.m_textured && (ra.m_ceilTexture != null || ra.m_ceilTextureId >= 0)) {
+				flags |= CEIL_TEXTURE;
+			}
+		}
+
+		return flags;
+	}
+}
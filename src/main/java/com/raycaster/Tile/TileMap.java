@@ -1,19 +1,40 @@
 package com.raycaster.Tile;
 import java.awt.Color;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import com.raycaster.IO.IGameFile;
+import com.raycaster.IO.ISnapshot;
+import com.raycaster.IO.ISnapshotable;
 import com.raycaster.Renderer.EpicRayRenderingAttributes;
 import com.raycaster.utils.ResourceManager;
 
-public class TileMap implements ITileMap {
+/**
+ * TileMap
+ * 
+ * A tile map completely in memory. Flags and palette indices of all cells
+ * are kept in two flat arrays, so rays only read those while walking the
+ * map.
+ * 
+ * Changed cells are tracked in square regions, see TileMapJournal. The same
+ * regions are the unit of copy on write for snapshots.
+ */
+public class TileMap extends AbstractTileMap implements ISnapshotable {
 	
-	private ITile m_tiles[];
+	/** Width and height of a region of dirty tracking, in tiles */
+	public static final int DIRTY_REGION_SIZE = 16;
 	
-	private int m_width;
-	private int m_height;
-
-	private boolean m_editable;
+	private byte m_flags[];
+	private short m_types[];
+	
+	// regions changed since clearDirtyRegions(), row by row
+	private final BitSet m_dirtyRegions = new BitSet();
+	
+	private static final TileMapSnapshot NO_SNAPSHOTS[] = new TileMapSnapshot[0];
+	
+	// open snapshots, replaced as a whole
+	private volatile TileMapSnapshot m_snapshots[] = NO_SNAPSHOTS;
 	
 	public TileMap(){
 		m_width = 0;
@@ -21,7 +42,8 @@ public class TileMap implements ITileMap {
 		
 		m_editable = false;
 		
-		m_tiles = null;
+		m_flags = new byte[0];
+		m_types = new short[0];
 	}
 	
 	public TileMap(int p_w, int p_h, boolean p_editable){ 
@@ -30,7 +52,8 @@ public class TileMap implements ITileMap {
 		
 		m_editable = p_editable;
 		
-		m_tiles = new ITile[m_width * m_height];
+		m_flags = new byte[m_width * m_height];
+		m_types = new short[m_width * m_height];
 		
 		EpicRayRenderingAttributes air_ra = new EpicRayRenderingAttributes();
 		air_ra.m_wallColor = -1;
@@ -38,27 +61,39 @@ public class TileMap implements ITileMap {
 		
 		Tile air = new Tile("TileMapAir", false, false, air_ra);
 		
-		for (int i = 0; i < m_width * m_height; i++){
-			m_tiles[i] = new Tile(air, false);
-		}
+		final byte flags = TileFlags.of(air);
+		
+		Arrays.fill(m_types, m_palette.indexOf(air, flags));
+		Arrays.fill(m_flags, flags);
 	}
 	
+	/**
+	 * Fills the map with walls around it, pillars and textured floor. The
+	 * textures are bitmap 0, 1 and 2 of the ResourceManager, referenced by
+	 * bitmap and by their id in its TextureAtlas.
+	 */
 	public final void autoGenerate(){
+		final ResourceManager rm = ResourceManager.getInstance();
+		
 		EpicRayRenderingAttributes ra = new EpicRayRenderingAttributes();
 		ra.m_wallColor = Color.blue.getRGB();
-		ra.m_wallTexture = ResourceManager.getInstance().getBitmap(0);
+		ra.m_wallTexture = rm.getBitmap(0);
+		ra.m_wallTextureId = rm.indexOf(ra.m_wallTexture);
 		ra.m_floorColor = Color.white.getRGB();
 		ra.m_textured = true;
 		
 		EpicRayRenderingAttributes ra0 = new EpicRayRenderingAttributes();
 		ra0.m_textured = true;
-		ra0.m_floorTexture = ResourceManager.getInstance().getBitmap(2);
-		ra0.m_ceilTexture = ResourceManager.getInstance().getBitmap(1);
+		ra0.m_floorTexture = rm.getBitmap(2);
+		ra0.m_floorTextureId = rm.indexOf(ra0.m_floorTexture);
+		ra0.m_ceilTexture = rm.getBitmap(1);
+		ra0.m_ceilTextureId = rm.indexOf(ra0.m_ceilTexture);
 		
 		EpicRayRenderingAttributes ra1 = new EpicRayRenderingAttributes();
 		ra1.m_wallColor = Color.yellow.getRGB();
 		ra1.m_textured = true;
-		ra1.m_wallTexture = ResourceManager.getInstance().getBitmap(1);
+		ra1.m_wallTexture = rm.getBitmap(1);
+		ra1.m_wallTextureId = rm.indexOf(ra1.m_wallTexture);
 		
 		Tile wall1Tile = new Tile("TileMapGenWall1", true, true, ra); //Wall
 		Tile wall2Tile  = new Tile("TileMapGenWall2", true, true, ra1);
@@ -67,12 +102,12 @@ public class TileMap implements ITileMap {
 		
 		for (int i = 0; i < m_width * m_height; i++){
 			if(i < m_width || i > m_width * (m_height-1) || i % m_width == 0 || i % m_width == m_width-1) {
-				if (i % 10 == 0) m_tiles[i] = new Tile(wall1Tile, false);
-				else m_tiles[i] = new Tile(wall2Tile, false);
-			} else if(i % 25 == 0) m_tiles[i] = new Tile(wall1Tile, false);
+				if (i % 10 == 0) setTile(i, wall1Tile);
+				else setTile(i, wall2Tile);
+			} else if(i % 25 == 0) setTile(i, wall1Tile);
 			else {
-				if (i % 2 == 0) m_tiles[i] = new Tile(airTile, false);
-				else m_tiles[i] = new Tile(floorTile, false);
+				if (i % 2 == 0) setTile(i, airTile);
+				else setTile(i, floorTile);
 			}
 		}
 	}
@@ -82,8 +117,8 @@ public class TileMap implements ITileMap {
 		gameFile.writeInt(m_width);
 		gameFile.writeInt(m_height);
 		
-		for (ITile tile : m_tiles){
-			gameFile.saveSaveable(tile);
+		for (short type : m_types){
+			gameFile.saveSaveable(m_palette.get(type));
 		}
 		return true;
 	}
@@ -94,12 +129,23 @@ public class TileMap implements ITileMap {
 		m_height = gameFile.readInt();
 
 		int length = m_width * m_height;
-		m_tiles = new ITile[length];
+		m_flags = new byte[length];
+		m_types = new short[length];
+		
+		m_palette.clear();
+		clearCells();
+		
+		// open snapshots keep the old arrays, which do not change anymore
+		synchronized (this) {
+			m_snapshots = NO_SNAPSHOTS;
+		}
 		
 		for ( int i = 0; i < length; i++){
-			m_tiles[i] = (ITile) gameFile.readSaveable();
+			setTile(i, (ITile) gameFile.readSaveable());
 		}
 		
+		clearDirtyRegions();
+		
 		return true;
 	}
 
@@ -109,42 +155,120 @@ public class TileMap implements ITileMap {
 	}
 
 	@Override
-	public final ITile getTileAt(int x, int y) {
-//		if (x >= m_width || y >= m_height || x < 0 || y < 0) {
-//			return null;
-//		} 
+	protected final void setCell(int x, int y, byte flags, short type) {
+		final int i = x + y * m_width;
+		final int region = x / DIRTY_REGION_SIZE + (y / DIRTY_REGION_SIZE) * getRegionsX();
 		
-		return m_tiles[x + y * m_width];
+		final TileMapSnapshot snapshots[] = m_snapshots;
+		
+		for (int s = 0; s < snapshots.length; ++s) {
+			snapshots[s].preserve(region);
+		}
+		
+		m_flags[i] = flags;
+		m_types[i] = type;
+		
+		m_dirtyRegions.set(region);
 	}
-
+	
+	/**
+	 * Returns a copy on write snapshot of the map, saved like the map. Taking
+	 * it copies nothing, afterwards the first change of every region copies
+	 * that region until the snapshot is saved or closed.
+	 * 
+	 * Has to be called on the thread changing the map.
+	 */
 	@Override
-	public void setTileAt(int x, int y, ITile tile) {
-		m_tiles[x + y * m_width] = tile;
+	public final ISnapshot snapshot() {
+		final TileMapSnapshot snapshot = new TileMapSnapshot(this, m_types, m_width, m_height,
+				m_palette.entries());
+		
+		synchronized (this) {
+			final TileMapSnapshot snapshots[] = Arrays.copyOf(m_snapshots, m_snapshots.length + 1);
+			snapshots[snapshots.length - 1] = snapshot;
+			m_snapshots = snapshots;
+		}
+		
+		return snapshot;
 	}
-
-	@Override
-	public boolean isEditable() {
-		return m_editable;
+	
+	/*
+	 * Called when a snapshot is closed
+	 */
+	final synchronized void release(TileMapSnapshot snapshot) {
+		final TileMapSnapshot snapshots[] = m_snapshots;
+		
+		for (int i = 0; i < snapshots.length; ++i) {
+			if (snapshots[i] == snapshot) {
+				final TileMapSnapshot rest[] = new TileMapSnapshot[snapshots.length - 1];
+				System.arraycopy(snapshots, 0, rest, 0, i);
+				System.arraycopy(snapshots, i + 1, rest, i, rest.length - i);
+				m_snapshots = rest;
+				return;
+			}
+		}
 	}
-
-	@Override
-	public final ITile getTileAtPos(double x, double y) {
-		return getTileAt((int) x, (int) y);
+	
+	/**
+	 * Returns the number of snapshots which have not been closed yet
+	 * 
+	 * @return
+	 */
+	public final int getSnapshotCount() {
+		return m_snapshots.length;
 	}
-
-	@Override
-	public void setTileAtPos(double x, double y, ITile tile) {
-		setTileAt((int) x, (int) y, tile);
+	
+	/**
+	 * Returns the number of regions in x direction
+	 * 
+	 * @return
+	 */
+	public final int getRegionsX() {
+		return (m_width + DIRTY_REGION_SIZE - 1) / DIRTY_REGION_SIZE;
 	}
-
+	
+	/**
+	 * Returns the number of regions in y direction
+	 * 
+	 * @return
+	 */
+	public final int getRegionsY() {
+		return (m_height + DIRTY_REGION_SIZE - 1) / DIRTY_REGION_SIZE;
+	}
+	
+	/**
+	 * Returns the regions changed since the last clearDirtyRegions(), bit
+	 * rx + ry * getRegionsX() is set for a changed region. The set is live,
+	 * do not change it.
+	 * 
+	 * @return
+	 */
+	public final BitSet getDirtyRegions() {
+		return m_dirtyRegions;
+	}
+	
+	/**
+	 * Marks all regions as unchanged, e.g. after they have been saved.
+	 */
+	public final void clearDirtyRegions() {
+		m_dirtyRegions.clear();
+	}
+	
+	private final void setTile(int i, ITile tile) {
+		setTileAt(i % m_width, i / m_width, tile);
+	}
+	
 	@Override
-	public int getWidth() {
-		return m_width;
+	public final byte getTileFlags(int x, int y) {
+		if (x < 0 || y < 0 || x >= m_width || y >= m_height) {
+			return TileFlags.OUTSIDE;
+		}
+		
+		return m_flags[x + y * m_width];
 	}
-
+	
 	@Override
-	public int getHeight() {
-		return m_height;
+	public final short getTileType(int x, int y) {
+		return m_types[x + y * m_width];
 	}
-
 }
@@ -0,0 +1,206 @@
+package com.raycaster.Tile;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+
+import com.raycaster.Entities.IEntity;
+import com.raycaster.Entities.ISprite;
+import com.raycaster.IO.IGameFile;
+import com.raycaster.Renderer.IRenderingAttributes;
+
+/**
+ * View of a single cell of an AbstractTileMap.
+ * 
+ * Type properties are read from the shared palette tile of the cell, setting
+ * them assigns a changed copy to the cell. Entities are looked up in the
+ * EntityGrid of the map, getEntities returns a new list of them. Sprites
+ * belong to the cell, the first one added registers the view as occupied
+ * with the map. The sprite list of an unoccupied cell is empty and
+ * immutable, use addSprite.
+ */
+final class TileMapCell implements ITile {
+
+	private final AbstractTileMap m_map;
+	private final int m_x;
+	private final int m_y;
+	
+	// created when the cell gets occupied
+	private Vector<ISprite> m_sprites;
+	
+	TileMapCell(AbstractTileMap map, int x, int y) {
+		m_map = map;
+		m_x = x;
+		m_y = y;
+	}
+	
+	final int getX() {
+		return m_x;
+	}
+	
+	final int getY() {
+		return m_y;
+	}
+	
+	private final ITile type() {
+		return m_map.getPaletteTile(m_map.getTileType(m_x, m_y));
+	}
+	
+	private final Tile copyType() {
+		return new Tile(type(), false);
+	}
+	
+	/*
+	 * Returns the registered view of this cell, with its sprite list created
+	 */
+	private final TileMapCell occupied() {
+		final TileMapCell cell = m_map.occupy(this);
+		
+		if (cell.m_sprites == null) {
+			cell.m_sprites = new Vector<ISprite>();
+		}
+		
+		return cell;
+	}
+	
+	@Override
+	public boolean saveToFile(IGameFile gameFile) throws IOException {
+		return type().saveToFile(gameFile);
+	}
+
+	@Override
+	public boolean loadFromFile(IGameFile gameFile) throws IOException {
+		final Tile tile = new Tile();
+		
+		if (!tile.loadFromFile(gameFile)) {
+			return false;
+		}
+		
+		m_map.setTileAt(m_x, m_y, tile);
+		return true;
+	}
+
+	@Override
+	public String getTag() {
+		return type().getTag();
+	}
+
+	@Override
+	public boolean isOpaque() {
+		return type().isOpaque();
+	}
+
+	@Override
+	public boolean isSolid() {
+		return type().isSolid();
+	}
+
+	@Override
+	public void setOpaque(boolean b) {
+		final Tile tile = copyType();
+		tile.setOpaque(b);
+		m_map.setTileAt(m_x, m_y, tile);
+	}
+
+	@Override
+	public void setSolid(boolean b) {
+		final Tile tile = copyType();
+		tile.setSolid(b);
+		m_map.setTileAt(m_x, m_y, tile);
+	}
+
+	@Override
+	public String getName() {
+		return type().getName();
+	}
+
+	@Override
+	public String getTypeId() {
+		return type().getTypeId();
+	}
+
+	@Override
+	public List<ISprite> getSprites() {
+		final TileMapCell cell = m_map.getOccupied(m_x, m_y);
+		
+		return (cell != null) ? cell.m_sprites : Collections.<ISprite>emptyList();
+	}
+
+	@Override
+	public List<IEntity> getEntities() {
+		final List<IEntity> entities = new ArrayList<IEntity>();
+		
+		m_map.getEntityGrid().getEntities(m_x, m_y, entities);
+		return entities;
+	}
+
+	/**
+	 * Adds an entity to the EntityGrid of the map, at its position if that is
+	 * in this cell, else in the middle of the cell. Entities which keep their
+	 * grid slot, like StaticEntity, add themselves.
+	 */
+	@Override
+	public void addEntity(IEntity entity) {
+		final float x = ((int) Math.floor(entity.getX()) == m_x) ? entity.getX() : m_x + 0.5f;
+		final float y = ((int) Math.floor(entity.getY()) == m_y) ? entity.getY() : m_y + 0.5f;
+		
+		m_map.getEntityGrid().add(entity, x, y);
+		entity.setCurrentTile(this);
+	}
+
+	@Override
+	public void removeEntity(IEntity entity) {
+		final EntityGrid grid = m_map.getEntityGrid();
+		final int slot = grid.indexOf(entity, m_x, m_y);
+		
+		if (slot != EntityGrid.NONE) {
+			grid.remove(slot);
+		}
+	}
+
+	@Override
+	public void addSprite(ISprite sprite) {
+		occupied().m_sprites.add(sprite);
+	}
+
+	/**
+	 * Returns a copy of the attributes of the type, changing it does not
+	 * change the cell, use setRenderingAttributes()
+	 */
+	@Override
+	public IRenderingAttributes getRenderingAttributes() {
+		return TilePalette.copyOf(type().getRenderingAttributes());
+	}
+
+	@Override
+	public void setRenderingAttributes(IRenderingAttributes ra) {
+		final Tile tile = copyType();
+		tile.setRenderingAttributes(ra);
+		m_map.setTileAt(m_x, m_y, tile);
+	}
+
+	@Override
+	public void setName(String text) {
+		final Tile tile = copyType();
+		tile.setName(text);
+		m_map.setTileAt(m_x, m_y, tile);
+	}
+	
+	public boolean equals(Object o){
+		if (o instanceof ITile){
+			ITile t = (ITile) o;
+			
+			return getTypeId().equals(t.getTypeId());
+		}
+		return false;
+	}
+	
+	/**
+	 * Cells of the same type are equal, like in equals()
+	 */
+	@Override
+	public int hashCode() {
+		return getTypeId().hashCode();
+	}
+}
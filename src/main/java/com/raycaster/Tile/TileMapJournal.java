@@ -0,0 +1,440 @@
+package com.raycaster.Tile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.raycaster.IO.DeflateCodec;
+import com.raycaster.IO.GameFile;
+import com.raycaster.IO.Saveable;
+import com.raycaster.Renderer.EpicRayRenderingAttributes;
+import com.raycaster.Renderer.IRenderingAttributes;
+
+/**
+ * TileMapJournal
+ * 
+ * Incremental saving of a TileMap: a compressed GameFile snapshot plus an
+ * append-only journal of the regions changed since. save() only appends the
+ * dirty regions, so its cost depends on the edits and not on the map size.
+ * Once the journal grows larger than the compaction threshold, the snapshot
+ * is rewritten and the journal emptied. load() replays the journal over the
+ * snapshot.
+ * 
+ * Journal records:
+ * 
+ * <pre>
+ * TYPE    type id, name, TileFlags, [colors]: defines the next type id
+ * REGION  int rx, int ry, short type id per cell of the region, row by row
+ * COMMIT  end of one save, records after the last one are ignored
+ * </pre>
+ */
+public class TileMapJournal {
+
+	private static final byte RECORD_TYPE = 1;
+	private static final byte RECORD_REGION = 2;
+	private static final byte RECORD_COMMIT = 3;
+
+	private static final long DEFAULT_COMPACTION_BYTES = 1 << 20;
+
+	private final File m_snapshot;
+	private final File m_journal;
+
+	private long m_compactionBytes = DEFAULT_COMPACTION_BYTES;
+
+	// types defined in the journal, by journal id
+	private final ArrayList<ITile> m_types = new ArrayList<ITile>();
+	// journal id of each palette index of the map, -1 if not defined
+	private short m_journalIds[] = new short[0];
+
+	// the type table matches the journal file
+	private boolean m_synced;
+
+	/**
+	 * @param snapshot
+	 *            file of the snapshot
+	 * @param journal
+	 *            file of the journal
+	 */
+	public TileMapJournal(File snapshot, File journal) {
+		m_snapshot = snapshot;
+		m_journal = journal;
+	}
+
+	/**
+	 * Loads the snapshot and replays the journal. An incomplete save at the
+	 * end of the journal is discarded.
+	 * 
+	 * @return the map or null if there is no snapshot
+	 * @throws IOException
+	 */
+	public TileMap load() throws IOException {
+		final TileMap map;
+
+		try (GameFile file = new GameFile(m_snapshot.getPath())) {
+			final Saveable<?> saveable = file.readSaveable();
+
+			if (saveable == null) {
+				return null;
+			}
+
+			if (!(saveable instanceof TileMap)) {
+				throw new IOException(m_snapshot + " does not contain a TileMap");
+			}
+
+			map = (TileMap) saveable;
+		}
+
+		resetTypes();
+
+		if (m_journal.exists()) {
+			final long committed = replay(map);
+
+			// cut off a save interrupted before its commit
+			if (committed < m_journal.length()) {
+				try (RandomAccessFile raf = new RandomAccessFile(m_journal, "rw")) {
+					raf.setLength(committed);
+				}
+			}
+		}
+
+		map.clearDirtyRegions();
+		m_synced = true;
+
+		return map;
+	}
+
+	/*
+	 * Applies all committed records, returns the length of the committed part
+	 */
+	private final long replay(TileMap map) throws IOException {
+		final int size = TileMap.DIRTY_REGION_SIZE;
+
+		long committed = 0;
+
+		// types and regions of the current save, applied on its commit
+		final ArrayList<ITile> pendingTypes = new ArrayList<ITile>();
+		final ArrayList<int[]> pendingRegions = new ArrayList<int[]>();
+
+		final CountingInputStream counter = new CountingInputStream(
+				new BufferedInputStream(new FileInputStream(m_journal), 1 << 16));
+
+		try (DataInputStream in = new DataInputStream(counter)) {
+			while (true) {
+				final byte record = in.readByte();
+
+				if (record == RECORD_TYPE) {
+					pendingTypes.add(readType(in));
+				} else if (record == RECORD_REGION) {
+					final int region[] = new int[2 + size * size];
+					region[0] = in.readInt();
+					region[1] = in.readInt();
+
+					final int cells = regionCells(map, region[0], region[1]);
+
+					for (int i = 0; i < cells; ++i) {
+						region[2 + i] = in.readShort();
+					}
+
+					pendingRegions.add(region);
+				} else if (record == RECORD_COMMIT) {
+					m_types.addAll(pendingTypes);
+
+					for (int[] region : pendingRegions) {
+						applyRegion(map, region);
+					}
+
+					pendingTypes.clear();
+					pendingRegions.clear();
+					committed = counter.getCount();
+				} else {
+					break; // garbage after a torn write
+				}
+			}
+		} catch (EOFException e) {
+			// end of the journal
+		}
+
+		return committed;
+	}
+
+	private final void applyRegion(TileMap map, int region[]) throws IOException {
+		final int size = TileMap.DIRTY_REGION_SIZE;
+		final int x0 = region[0] * size;
+		final int y0 = region[1] * size;
+		final int x1 = Math.min(x0 + size, map.getWidth());
+		final int y1 = Math.min(y0 + size, map.getHeight());
+
+		int i = 2;
+
+		for (int y = y0; y < y1; ++y) {
+			for (int x = x0; x < x1; ++x) {
+				final int id = region[i++];
+
+				if (id < 0 || id >= m_types.size()) {
+					throw new IOException("Undefined type id " + id + " in " + m_journal);
+				}
+
+				map.setTileAt(x, y, m_types.get(id));
+			}
+		}
+	}
+
+	private static int regionCells(TileMap map, int rx, int ry) throws IOException {
+		final int size = TileMap.DIRTY_REGION_SIZE;
+
+		if (rx < 0 || ry < 0 || rx >= map.getRegionsX() || ry >= map.getRegionsY()) {
+			throw new IOException("Region " + rx + ", " + ry + " is not on the map");
+		}
+
+		return (Math.min(size, map.getWidth() - rx * size)) * (Math.min(size, map.getHeight() - ry * size));
+	}
+
+	/**
+	 * Saves the changes since the last save and compacts the journal once it
+	 * exceeds the compaction threshold. The first save of a new map writes
+	 * the snapshot.
+	 * 
+	 * @param map
+	 * @throws IOException
+	 */
+	public void save(TileMap map) throws IOException {
+		if (!m_synced || !m_snapshot.exists()) {
+			compact(map);
+			return;
+		}
+
+		append(map);
+
+		if (m_journal.length() > m_compactionBytes) {
+			compact(map);
+		}
+	}
+
+	/**
+	 * Appends the dirty regions of map to the journal and marks them clean.
+	 * 
+	 * @param map
+	 * @throws IOException
+	 */
+	public void append(TileMap map) throws IOException {
+		if (!m_synced) {
+			throw new IllegalStateException("Journal has not been loaded or compacted");
+		}
+
+		final BitSet dirty = map.getDirtyRegions();
+
+		if (dirty.isEmpty()) {
+			return;
+		}
+
+		final int size = TileMap.DIRTY_REGION_SIZE;
+		final int regionsX = map.getRegionsX();
+		final short region[] = new short[size * size];
+
+		final FileOutputStream file = new FileOutputStream(m_journal, true);
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+			for (int r = dirty.nextSetBit(0); r >= 0; r = dirty.nextSetBit(r + 1)) {
+				final int rx = r % regionsX;
+				final int ry = r / regionsX;
+
+				final int x0 = rx * size;
+				final int y0 = ry * size;
+				final int x1 = Math.min(x0 + size, map.getWidth());
+				final int y1 = Math.min(y0 + size, map.getHeight());
+
+				// define new types before the region using them
+				int cells = 0;
+
+				for (int y = y0; y < y1; ++y) {
+					for (int x = x0; x < x1; ++x) {
+						region[cells++] = journalId(map, map.getTileType(x, y), out);
+					}
+				}
+
+				out.writeByte(RECORD_REGION);
+				out.writeInt(rx);
+				out.writeInt(ry);
+
+				for (int i = 0; i < cells; ++i) {
+					out.writeShort(region[i]);
+				}
+			}
+
+			out.writeByte(RECORD_COMMIT);
+			out.flush();
+			file.getFD().sync();
+		} catch (IOException e) {
+			// types written without commit are ignored on load, forget them
+			m_synced = false;
+			throw e;
+		}
+
+		map.clearDirtyRegions();
+	}
+
+	private final short journalId(TileMap map, short type, DataOutputStream out) throws IOException {
+		if (type >= m_journalIds.length) {
+			final int oldLength = m_journalIds.length;
+			m_journalIds = Arrays.copyOf(m_journalIds, Math.max(type + 1, oldLength * 2));
+			Arrays.fill(m_journalIds, oldLength, m_journalIds.length, (short) -1);
+		}
+
+		short id = m_journalIds[type];
+
+		if (id == -1) {
+			final ITile tile = map.getPaletteTile(type);
+
+			id = (short) m_types.size();
+			m_types.add(tile);
+			m_journalIds[type] = id;
+
+			out.writeByte(RECORD_TYPE);
+			writeType(out, tile);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Rewrites the snapshot with the whole map and empties the journal.
+	 * 
+	 * @param map
+	 * @throws IOException
+	 */
+	public void compact(TileMap map) throws IOException {
+		if (m_synced && m_journal.exists()) {
+			// afterwards the journal ends with the current state of every
+			// region in it, so replaying it over the new snapshot after a
+			// crash before it is deleted changes nothing
+			append(map);
+		} else {
+			// journal of some other state of the map
+			Files.deleteIfExists(m_journal.toPath());
+		}
+
+		final File temp = new File(m_snapshot.getPath() + ".tmp");
+
+		try (GameFile file = new GameFile(temp.getPath(), new DeflateCodec())) {
+			file.saveSaveable(map);
+		}
+
+		Files.move(temp.toPath(), m_snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Files.deleteIfExists(m_journal.toPath());
+
+		resetTypes();
+		map.clearDirtyRegions();
+		m_synced = true;
+	}
+
+	private final void resetTypes() {
+		m_types.clear();
+		Arrays.fill(m_journalIds, (short) -1);
+	}
+
+	private static void writeType(DataOutputStream out, ITile tile) throws IOException {
+		out.writeUTF(tile.getTypeId());
+		out.writeUTF(tile.getName());
+		out.writeByte(TileFlags.of(tile));
+
+		final IRenderingAttributes attribs = tile.getRenderingAttributes();
+
+		if (attribs instanceof EpicRayRenderingAttributes) {
+			final EpicRayRenderingAttributes ra = (EpicRayRenderingAttributes) attribs;
+
+			out.writeBoolean(true);
+			out.writeInt(ra.m_wallColor);
+			out.writeInt(ra.m_floorColor);
+			out.writeInt(ra.m_ceilColor);
+			out.writeBoolean(ra.m_textured);
+		} else {
+			out.writeBoolean(false);
+		}
+	}
+
+	private static ITile readType(DataInputStream in) throws IOException {
+		final String typeID = in.readUTF();
+		final String name = in.readUTF();
+		final byte flags = in.readByte();
+
+		EpicRayRenderingAttributes ra = null;
+
+		if (in.readBoolean()) {
+			ra = new EpicRayRenderingAttributes();
+			ra.m_wallColor = in.readInt();
+			ra.m_floorColor = in.readInt();
+			ra.m_ceilColor = in.readInt();
+			ra.m_textured = in.readBoolean();
+		}
+
+		final Tile tile = new Tile(typeID, (flags & TileFlags.OPAQUE) != 0, (flags & TileFlags.SOLID) != 0, ra);
+		tile.setName(name);
+
+		return tile;
+	}
+
+	/**
+	 * Journal size in bytes after which save() compacts, 1 MB by default
+	 * 
+	 * @param bytes
+	 */
+	public final void setCompactionThreshold(long bytes) {
+		m_compactionBytes = bytes;
+	}
+
+	public final File getSnapshotFile() {
+		return m_snapshot;
+	}
+
+	public final File getJournalFile() {
+		return m_journal;
+	}
+
+	/*
+	 * Counts the bytes read, to find the end of the last commit
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+		private long m_count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+
+			if (b >= 0) {
+				++m_count;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte b[], int off, int len) throws IOException {
+			final int n = super.read(b, off, len);
+
+			if (n > 0) {
+				m_count += n;
+			}
+			return n;
+		}
+
+		final long getCount() {
+			return m_count;
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package com.raycaster.Tile;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.raycaster.IO.IGameFile;
+import com.raycaster.IO.ISnapshot;
+
+/**
+ * TileMapSnapshot
+ *
+ * Copy on write snapshot of a TileMap, saved in the format of a TileMap.
+ * Nothing is copied when it is taken. Before the map changes a cell, it
+ * calls preserve() for the dirty tracking region of the cell, which copies
+ * the region unless it was copied or saved already. While saving, regions
+ * are claimed one after the other, so copies only live until their region
+ * is written.
+ */
+final class TileMapSnapshot implements ISnapshot {
+
+	// marks regions which have been saved
+	private static final short SAVED[] = new short[0];
+
+	private final TileMap m_map;
+
+	private final short m_types[];
+	private final ITile m_palette[];
+
+	private final int m_width;
+	private final int m_height;
+	private final int m_regionsX;
+	private final int m_regionsY;
+
+	// per region: null if unchanged, a copy, or SAVED
+	private final AtomicReferenceArray<short[]> m_regions;
+
+	private volatile boolean m_closed;
+
+	TileMapSnapshot(TileMap map, short types[], int width, int height, ITile palette[]) {
+		m_map = map;
+		m_types = types;
+		m_palette = palette;
+
+		m_width = width;
+		m_height = height;
+		m_regionsX = map.getRegionsX();
+		m_regionsY = map.getRegionsY();
+
+		m_regions = new AtomicReferenceArray<short[]>(m_regionsX * m_regionsY);
+	}
+
+	/*
+	 * Called by the map before changing a cell of region
+	 */
+	final void preserve(int region) {
+		if (m_regions.get(region) != null) {
+			return;
+		}
+
+		final int size = TileMap.DIRTY_REGION_SIZE;
+
+		synchronized (this) {
+			if (m_regions.get(region) == null) {
+				final short copy[] = new short[size * size];
+				copyRegion(region, copy, 0, size);
+				m_regions.set(region, copy);
+			}
+		}
+	}
+
+	/*
+	 * Copies the state of region at the time of the snapshot to dest and
+	 * marks it saved
+	 */
+	private final synchronized void claim(int region, short dest[], int offset, int stride) {
+		final short copy[] = m_regions.get(region);
+
+		if (copy == null) {
+			copyRegion(region, dest, offset, stride);
+		} else {
+			final int size = TileMap.DIRTY_REGION_SIZE;
+			final int w = regionWidth(region);
+			final int h = regionHeight(region);
+
+			for (int y = 0; y < h; ++y) {
+				System.arraycopy(copy, y * size, dest, offset + y * stride, w);
+			}
+		}
+
+		m_regions.set(region, SAVED);
+	}
+
+	/*
+	 * Copies region from the map
+	 */
+	private final void copyRegion(int region, short dest[], int offset, int stride) {
+		final int size = TileMap.DIRTY_REGION_SIZE;
+		final int x0 = (region % m_regionsX) * size;
+		final int y0 = (region / m_regionsX) * size;
+		final int w = regionWidth(region);
+		final int h = regionHeight(region);
+
+		for (int y = 0; y < h; ++y) {
+			System.arraycopy(m_types, x0 + (y0 + y) * m_width, dest, offset + y * stride, w);
+		}
+	}
+
+	private final int regionWidth(int region) {
+		final int size = TileMap.DIRTY_REGION_SIZE;
+		return Math.min(size, m_width - (region % m_regionsX) * size);
+	}
+
+	private final int regionHeight(int region) {
+		final int size = TileMap.DIRTY_REGION_SIZE;
+		return Math.min(size, m_height - (region / m_regionsX) * size);
+	}
+
+	/**
+	 * Writes the map as it was when the snapshot was taken, like
+	 * TileMap.saveToFile. Can be called on any thread, but only once.
+	 */
+	@Override
+	public boolean saveToFile(IGameFile gameFile) throws IOException {
+		if (m_closed) {
+			throw new IllegalStateException("Snapshot has been closed");
+		}
+
+		final int size = TileMap.DIRTY_REGION_SIZE;
+
+		gameFile.writeInt(m_width);
+		gameFile.writeInt(m_height);
+
+		// one row of regions at a time, cells are written row by row
+		final short strip[] = new short[m_width * size];
+
+		for (int ry = 0; ry < m_regionsY; ++ry) {
+			for (int rx = 0; rx < m_regionsX; ++rx) {
+				claim(rx + ry * m_regionsX, strip, rx * size, m_width);
+			}
+
+			final int rows = Math.min(size, m_height - ry * size);
+
+			for (int i = 0; i < rows * m_width; ++i) {
+				gameFile.saveSaveable(m_palette[strip[i]]);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Snapshots cannot be loaded, files they were saved to contain a TileMap.
+	 */
+	@Override
+	public boolean loadFromFile(IGameFile gameFile) throws IOException {
+		throw new UnsupportedOperationException("Snapshots are loaded as TileMap");
+	}
+
+	@Override
+	public String getTag() {
+		return m_map.getTag();
+	}
+
+	/**
+	 * Stops copying changed regions. Can be called more than once.
+	 */
+	@Override
+	public void close() {
+		if (m_closed) {
+			return;
+		}
+
+		m_closed = true;
+		m_map.release(this);
+	}
+}
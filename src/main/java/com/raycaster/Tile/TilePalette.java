@@ -0,0 +1,172 @@
+package com.raycaster.Tile;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.raycaster.Renderer.EpicRayRenderingAttributes;
+import com.raycaster.Renderer.IRenderingAttributes;
+
+/**
+ * TilePalette
+ * 
+ * The shared tile types of a map, referenced per cell by a short index.
+ * Tiles with the same type id, name and flags and equal rendering attributes
+ * get the same index. Entries are private copies without entities or sprites,
+ * with their own copy of the rendering attributes, and are never changed.
+ * Changing the attributes of a tile after it has been added does not change
+ * its entry.
+ * 
+ * Adding is synchronized, reading is not: the entries are replaced as a
+ * whole, so render threads can read them while tiles are being set.
+ */
+public final class TilePalette {
+
+	private volatile ITile m_tiles[] = new ITile[0];
+	private final HashMap<TileType, Short> m_index = new HashMap<TileType, Short>();
+
+	/**
+	 * Returns the index of the type of tile, adding it if needed
+	 * 
+	 * @param tile
+	 * @param flags
+	 *            TileFlags of tile
+	 * @return
+	 */
+	public synchronized short indexOf(ITile tile, byte flags) {
+		final TileType type = new TileType(tile, flags);
+		final Short index = m_index.get(type);
+
+		if (index != null) {
+			return index;
+		}
+
+		final ITile tiles[] = m_tiles;
+
+		if (tiles.length > Short.MAX_VALUE) {
+			throw new IllegalStateException("More than " + (Short.MAX_VALUE + 1) + " tile types");
+		}
+
+		final short newIndex = (short) tiles.length;
+
+		final Tile entry = new Tile(tile, false);
+		entry.setRenderingAttributes(copyOf(tile.getRenderingAttributes()));
+
+		final ITile newTiles[] = Arrays.copyOf(tiles, tiles.length + 1);
+		newTiles[newIndex] = entry;
+
+		// the key has a copy of its own, the attributes of the entry can be
+		// reached through get()
+		m_index.put(new TileType(tile, flags, copyOf(tile.getRenderingAttributes())), newIndex);
+		m_tiles = newTiles;
+
+		return newIndex;
+	}
+
+	/**
+	 * Returns the index of the type of tile, adding it if needed
+	 * 
+	 * @param tile
+	 * @return
+	 */
+	public short indexOf(ITile tile) {
+		return indexOf(tile, TileFlags.of(tile));
+	}
+
+	/**
+	 * Returns the tile of an index
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public ITile get(int index) {
+		return m_tiles[index];
+	}
+
+	/*
+	 * Returns all tile types, the array is never changed but replaced when
+	 * types are added
+	 */
+	final ITile[] entries() {
+		return m_tiles;
+	}
+
+	/**
+	 * Returns the number of tile types
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return m_tiles.length;
+	}
+
+	/**
+	 * Removes all tile types
+	 */
+	public synchronized void clear() {
+		m_index.clear();
+		m_tiles = new ITile[0];
+	}
+
+	/**
+	 * Returns a copy of attribs, attributes of unknown types as they are
+	 * 
+	 * @param attribs
+	 *            may be null
+	 * @return
+	 */
+	public static IRenderingAttributes copyOf(IRenderingAttributes attribs) {
+		if (attribs instanceof EpicRayRenderingAttributes) {
+			return new EpicRayRenderingAttributes((EpicRayRenderingAttributes) attribs);
+		}
+
+		return attribs;
+	}
+
+	/*
+	 * Key of the palette: tiles of the same type, name and flags with equal
+	 * rendering attributes are drawn the same way.
+	 */
+	private static final class TileType {
+		private final String m_typeID;
+		private final String m_name;
+		private final byte m_flags;
+		private final IRenderingAttributes m_renderingAttribs;
+
+		TileType(ITile tile, byte flags) {
+			this(tile, flags, tile.getRenderingAttributes());
+		}
+
+		TileType(ITile tile, byte flags, IRenderingAttributes renderingAttribs) {
+			m_typeID = tile.getTypeId();
+			m_name = tile.getName();
+			m_flags = flags;
+			m_renderingAttribs = renderingAttribs;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof TileType)) {
+				return false;
+			}
+
+			final TileType t = (TileType) o;
+
+			return m_flags == t.m_flags
+					&& equal(m_typeID, t.m_typeID)
+					&& equal(m_name, t.m_name)
+					&& equal(m_renderingAttribs, t.m_renderingAttribs);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = m_flags;
+			hash = hash * 31 + ((m_typeID == null) ? 0 : m_typeID.hashCode());
+			hash = hash * 31 + ((m_name == null) ? 0 : m_name.hashCode());
+			hash = hash * 31 + ((m_renderingAttribs == null) ? 0 : m_renderingAttribs.hashCode());
+			return hash;
+		}
+
+		private static boolean equal(Object a, Object b) {
+			return (a == null) ? b == null : a.equals(b);
+		}
+	}
+}
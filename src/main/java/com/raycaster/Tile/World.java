@@ -1,19 +1,58 @@
 package com.raycaster.Tile;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Vector;
+import java.util.Set;
 
+import com.raycaster.ECS.EntityStore;
+import com.raycaster.ECS.ISystem;
+import com.raycaster.ECS.MovementSystem;
+import com.raycaster.Entities.CollisionDetector;
+import com.raycaster.Entities.EntityScheduler;
 import com.raycaster.Entities.IEntity;
 import com.raycaster.IO.IGameFile;
+import com.raycaster.IO.ISnapshot;
+import com.raycaster.IO.ISnapshotable;
 import com.raycaster.utils.IWorld;
 
-public class World implements IWorld {
+public class World implements IWorld, ISnapshotable {
 
 	protected ITileMap m_tileMap;
-	protected Vector<IEntity> m_entities;
+	
+	protected final ArrayList<IEntity> m_entities = new ArrayList<IEntity>();
+	private final List<IEntity> m_entityView = Collections.unmodifiableList(m_entities);
+	
+	// changes to m_entities requested during onUpdate
+	private final ArrayList<IEntity> m_added = new ArrayList<IEntity>();
+	private final ArrayList<IEntity> m_removed = new ArrayList<IEntity>();
+	private final Set<IEntity> m_removedSet = Collections.newSetFromMap(new IdentityHashMap<IEntity, Boolean>());
+	private boolean m_updating;
+	
+	protected final EntityScheduler m_scheduler;
+	protected final CollisionDetector m_collisions = new CollisionDetector();
+	
+	protected final EntityStore m_store = new EntityStore();
+	private final ArrayList<ISystem> m_systems = new ArrayList<ISystem>();
+	private long m_systemNanos;
 	
 	public World(ITileMap p_tileMap){
+		this(p_tileMap, new EntityScheduler());
+	}
+	
+	/**
+	 * @param p_tileMap
+	 * @param scheduler
+	 *            scheduler of the entity objects, the entities in the
+	 *            EntityStore are moved by a MovementSystem
+	 */
+	public World(ITileMap p_tileMap, EntityScheduler scheduler){
 		m_tileMap = p_tileMap;
+		m_scheduler = scheduler;
+		
+		m_systems.add(new MovementSystem(this));
 	}
 	
 	@Override
@@ -32,10 +71,180 @@ public class World implements IWorld {
 	public String getTag() {
 		return "World";
 	}
+	
+	/**
+	 * Returns a snapshot saved like the World, needs a tile map which can
+	 * take snapshots.
+	 */
+	@Override
+	public ISnapshot snapshot() {
+		if (!canSnapshot()) {
+			throw new UnsupportedOperationException(m_tileMap.getClass().getSimpleName()
+					+ " does not support snapshots");
+		}
+		
+		return new WorldSnapshot(((ISnapshotable) m_tileMap).snapshot(), getTag());
+	}
 
+	/**
+	 * Returns true if snapshot() is supported, which depends on the tile map
+	 * 
+	 * @return
+	 */
+	public boolean canSnapshot() {
+		return m_tileMap instanceof ISnapshotable;
+	}
+	
+	/**
+	 * Runs the systems on the EntityStore, then updates all entity objects,
+	 * see EntityScheduler, and tells the entity objects which collide, see
+	 * CollisionDetector
+	 */
 	@Override
 	public void onUpdate(float timeDiff) {
-		//Do nothing yet
+		m_updating = true;
+		
+		try {
+			final long start = System.nanoTime();
+			
+			for (int i = 0; i < m_systems.size(); ++i) {
+				m_systems.get(i).update(m_store, timeDiff);
+			}
+			
+			m_systemNanos = System.nanoTime() - start;
+			
+			m_scheduler.tick(m_entities, timeDiff);
+			m_collisions.detect(m_entities);
+		} finally {
+			m_updating = false;
+		}
+		
+		if (!m_removed.isEmpty()) {
+			for (IEntity entity : m_removed) {
+				removeFromGrid(entity);
+			}
+			
+			final Iterator<IEntity> iterator = m_entities.iterator();
+			while (iterator.hasNext()) {
+				if (m_removedSet.contains(iterator.next())) {
+					iterator.remove();
+				}
+			}
+			
+			m_removed.clear();
+			m_removedSet.clear();
+			m_scheduler.invalidate();
+		}
+		
+		if (!m_added.isEmpty()) {
+			m_entities.addAll(m_added);
+			m_added.clear();
+			m_scheduler.invalidate();
+		}
+	}
+	
+	@Override
+	public void addEntity(IEntity entity) {
+		if (m_updating) {
+			m_added.add(entity);
+		} else {
+			m_entities.add(entity);
+			m_scheduler.invalidate();
+		}
+	}
+	
+	@Override
+	public void removeEntity(IEntity entity) {
+		if (m_updating) {
+			// an entity added in this update is never put into the list,
+			// but still has to leave the grid
+			removePendingAdd(entity);
+			
+			if (m_removedSet.add(entity)) {
+				m_removed.add(entity);
+			}
+		} else if (m_entities.remove(entity)) {
+			removeFromGrid(entity);
+			m_scheduler.invalidate();
+		}
+	}
+	
+	@Override
+	public boolean isPendingRemoval(IEntity entity) {
+		return m_removedSet.contains(entity);
+	}
+	
+	private final void removePendingAdd(IEntity entity) {
+		for (int i = m_added.size() - 1; i >= 0; --i) {
+			if (m_added.get(i) == entity) {
+				m_added.remove(i);
+				return;
+			}
+		}
+	}
+	
+	/*
+	 * Removes entity by the slot it keeps, its position may have changed
+	 * since it was last moved in the grid. Entities which do not keep their
+	 * slot are looked up at their position.
+	 */
+	private final void removeFromGrid(IEntity entity) {
+		final EntityGrid grid = m_tileMap.getEntityGrid();
+		int slot = entity.getGridSlot();
+		
+		if (grid.get(slot) != entity) {
+			slot = grid.indexOf(entity, (int) Math.floor(entity.getX()), (int) Math.floor(entity.getY()));
+		}
+		
+		if (slot != EntityGrid.NONE) {
+			grid.remove(slot);
+		}
+	}
+	
+	/**
+	 * Adds a system, systems run in the order they were added
+	 * 
+	 * @param system
+	 */
+	public void addSystem(ISystem system) {
+		m_systems.add(system);
+	}
+	
+	public void removeSystem(ISystem system) {
+		m_systems.remove(system);
+	}
+	
+	@Override
+	public EntityStore getEntityStore() {
+		return m_store;
+	}
+	
+	/**
+	 * Returns the nanoseconds the systems took in the last update
+	 * 
+	 * @return
+	 */
+	public long getSystemNanos() {
+		return m_systemNanos;
+	}
+	
+	/**
+	 * Returns the scheduler updating the entities, e.g. for its timings
+	 * 
+	 * @return
+	 */
+	public EntityScheduler getScheduler() {
+		return m_scheduler;
+	}
+	
+	/**
+	 * Returns the detector of collisions between entities, e.g. for its
+	 * timings
+	 * 
+	 * @return
+	 */
+	public CollisionDetector getCollisionDetector() {
+		return m_collisions;
 	}
 
 	@Override
@@ -43,9 +252,47 @@ public class World implements IWorld {
 		return m_tileMap;
 	}
 
+	/**
+	 * Returns the entities in the order they were added, as an unmodifiable
+	 * view. Use the EntityGrid of the tile map to find entities by position.
+	 */
 	@Override
 	public List<IEntity> getEntities() {
-		return m_entities;
+		return m_entityView;
+	}
+
+	/*
+	 * Saves like World.saveToFile with the snapshot of the tile map
+	 */
+	private static final class WorldSnapshot implements ISnapshot {
+		private final ISnapshot m_tileMap;
+		private final String m_tag;
+		
+		WorldSnapshot(ISnapshot tileMap, String tag) {
+			m_tileMap = tileMap;
+			m_tag = tag;
+		}
+		
+		@Override
+		public boolean saveToFile(IGameFile gameFile) throws IOException {
+			gameFile.saveSaveable(m_tileMap);
+			return true;
+		}
+		
+		@Override
+		public boolean loadFromFile(IGameFile gameFile) throws IOException {
+			throw new UnsupportedOperationException("Snapshots are loaded as World");
+		}
+		
+		@Override
+		public String getTag() {
+			return m_tag;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			m_tileMap.close();
+		}
 	}
 
 }
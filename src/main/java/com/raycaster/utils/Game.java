@@ -1,5 +1,10 @@
 package com.raycaster.utils;
+import java.io.File;
+import java.io.IOException;
+
 import com.raycaster.Entities.Player;
+import com.raycaster.IO.AsyncSaver;
+import com.raycaster.IO.ISnapshotable;
 import com.raycaster.Renderer.Screen;
 import com.raycaster.Renderer.Viewport3D;
 import com.raycaster.Tile.ITileMap;
@@ -13,6 +18,12 @@ public class Game implements IGame, Runnable {
 	private Thread thread;
 	private IWorld m_world;
 	private Player m_player;
+	
+	private AsyncSaver m_saver;
+	private File m_saveFile;
+	private AsyncSaver.ISaveCallback m_saveCallback;
+	private float m_saveInterval;
+	private float m_timeSinceSave;
 
 	public Game(ITileMap map){
 		this(map, 640, 480);
@@ -44,7 +55,46 @@ public class Game implements IGame, Runnable {
 			m_player.setSpin(0);
 		}
 		
-		m_player.onUpdate(timeDiff);
+		m_world.onUpdate(timeDiff);
+		
+		if (m_saver != null) {
+			m_timeSinceSave += timeDiff;
+			
+			// a rejected save is retried next tick
+			if (m_timeSinceSave >= m_saveInterval
+					&& m_saver.save((ISnapshotable) m_world, m_saveFile, m_saveCallback)) {
+				m_timeSinceSave = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Saves the world every interval seconds of game time on a background
+	 * thread, see AsyncSaver. Needs a world with a tile map which can take
+	 * snapshots.
+	 * 
+	 * @param file
+	 * @param interval
+	 *            seconds between saves
+	 * @param callback
+	 *            result of each save, called on the save thread, may be null
+	 * @throws UnsupportedOperationException
+	 *             if the tile map of the world can not take snapshots
+	 */
+	public void enableAutoSave(File file, float interval, AsyncSaver.ISaveCallback callback) {
+		if (!(m_world instanceof World) || !((World) m_world).canSnapshot()) {
+			throw new UnsupportedOperationException(m_world.getTileMap().getClass().getSimpleName()
+					+ " does not support snapshots");
+		}
+		
+		if (m_saver == null) {
+			m_saver = new AsyncSaver();
+		}
+		
+		m_saveFile = file;
+		m_saveInterval = interval;
+		m_saveCallback = callback;
+		m_timeSinceSave = 0;
 	}
 	
 	@Override
@@ -81,6 +131,15 @@ public class Game implements IGame, Runnable {
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
+		screen.close();
+		
+		if (m_saver != null) {
+			try {
+				m_saver.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 	
 	@Override
@@ -1,6 +1,6 @@
 package com.raycaster.utils;
 
-import com.raycaster.Bitmap.IBitmap;
+import com.raycaster.Bitmap.IntBitmap;
 
 /**
  * ResourceManager
@@ -28,7 +28,7 @@ public interface IResourceManager {
 	 * @param filename
 	 * @return
 	 */
-	public IBitmap<Integer> loadBitmap(String filename);
+	public IntBitmap loadBitmap(String filename);
 
 	/**
 	 * Get ITexture by Index
@@ -36,5 +36,5 @@ public interface IResourceManager {
 	 * @param index
 	 * @return
 	 */
-	public IBitmap<Integer> getBitmap(int index);
+	public IntBitmap getBitmap(int index);
 }
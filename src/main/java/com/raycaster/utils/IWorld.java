@@ -1,6 +1,7 @@
 package com.raycaster.utils;
 import java.util.List;
 
+import com.raycaster.ECS.EntityStore;
 import com.raycaster.Entities.IEntity;
 import com.raycaster.IO.Saveable;
 import com.raycaster.Tile.ITileMap;
@@ -19,4 +20,37 @@ public interface IWorld extends Saveable<IWorld>, Updateable {
 	 * @return
 	 */
 	public List<IEntity> getEntities();
+
+	/**
+	 * Adds an Entity which is updated with the World. Entities added while
+	 * the World is updated are added after the update.
+	 * 
+	 * @param entity
+	 */
+	public void addEntity(IEntity entity);
+
+	/**
+	 * Removes an Entity from the World and the EntityGrid of its TileMap.
+	 * Entities removed while the World is updated are removed after the
+	 * update.
+	 * 
+	 * @param entity
+	 */
+	public void removeEntity(IEntity entity);
+
+	/**
+	 * Returns true if entity has been removed during the current update and
+	 * is only still in the list of entities until the update ends
+	 * 
+	 * @param entity
+	 * @return
+	 */
+	public boolean isPendingRemoval(IEntity entity);
+
+	/**
+	 * Returns the component arrays of the entities updated by systems
+	 * 
+	 * @return
+	 */
+	public EntityStore getEntityStore();
 }
@@ -1,25 +1,87 @@
 package com.raycaster.utils;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 
 import com.raycaster.Bitmap.FastIntBitmap;
 import com.raycaster.Bitmap.IBitmap;
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.Bitmap.MipMapBuilder;
 import com.raycaster.Bitmap.PowerOf2IntBitmap;
 import com.raycaster.Bitmap.PowerOf2IntMipMap;
+import com.raycaster.Bitmap.TextureAtlas;
+import com.raycaster.IO.MipMapCache;
 
 public class ResourceManager implements IResourceManager {
 	private static ResourceManager m_instance;
 	
 	private Vector<ISound> m_sounds;
-	private Vector<IBitmap<Integer>> m_bitmaps;
+	private Vector<IntBitmap> m_bitmaps;
+	
+	// handles of the bitmaps loaded from files, null for added bitmaps
+	private final Vector<TextureCache.Handle> m_handles = new Vector<TextureCache.Handle>();
+	
+	// reserved indices whose bitmap is still being loaded
+	private final BitSet m_loading = new BitSet();
+	
+	private final TextureCache m_textureCache = new TextureCache(new TextureCache.ILoader() {
+		@Override
+		public IntBitmap load(URL file) throws IOException {
+			return readBitmap(file);
+		}
+	});
+	
+	// mip maps of the bitmaps in the texture cache are kept there
+	private final TextureCache.ITextureBuilder m_textureBuilder = new TextureCache.ITextureBuilder() {
+		@Override
+		public IntBitmap build(IntBitmap bitmap) {
+			return buildTexture(bitmap);
+		}
+	};
+	
+	private volatile TextureAtlas m_atlas;
+	
+	private volatile MipMapCache m_mipMapCache;
+	private volatile boolean m_gammaCorrectMipMaps = false;
+	
+	// hash of the source file of loaded bitmaps, key of the mip map cache
+	private final Map<IntBitmap, String> m_sourceKeys =
+			Collections.synchronizedMap(new WeakHashMap<IntBitmap, String>());
+	
+	// rows of an image converted and transposed at a time
+	private static final int TRANSPOSE_ROWS = 32;
 	
 	private ResourceManager(){
 		m_sounds   = new Vector<ISound>();
-		m_bitmaps  = new Vector<IBitmap<Integer>>();
+		m_bitmaps  = new Vector<IntBitmap>();
 	}
 
 	@Override
@@ -27,36 +89,276 @@ public class ResourceManager implements IResourceManager {
 		throw new RuntimeException("Unimplemented Method!");
 	}
 
-	public IBitmap<Integer> loadBitmap(URL file) {
+	/**
+	 * Loads a bitmap, a placeholder texture if it cannot be read. A file
+	 * which is loaded already is not loaded again, its bitmap gets another
+	 * index.
+	 * 
+	 * @param file
+	 * @return
+	 */
+	public IntBitmap loadBitmap(URL file) {
+		final int index = reserveBitmaps(1);
+		
+		return acquireBitmap(index, file);
+	}
+	
+	/**
+	 * Loads a bitmap on the common ForkJoinPool. Its index for
+	 * getBitmap(int) is reserved right away, so bitmaps get their indices in
+	 * the order they are requested, not in the order they finish. Until then
+	 * getBitmap(int) returns null for it.
+	 * 
+	 * @param file
+	 * @return the bitmap, a placeholder texture if it cannot be read
+	 */
+	public CompletableFuture<IBitmap<Integer>> loadBitmapAsync(final URL file) {
+		return loadBitmapAsync(reserveBitmaps(1), file);
+	}
+	
+	private CompletableFuture<IBitmap<Integer>> loadBitmapAsync(final int index, final URL file) {
+		return CompletableFuture.supplyAsync(new Supplier<IBitmap<Integer>>() {
+			@Override
+			public IBitmap<Integer> get() {
+				return acquireBitmap(index, file);
+			}
+		}, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Loads all files in parallel, see loadBitmapAsync(URL). The bitmaps get
+	 * consecutive indices in the order of files.
+	 * 
+	 * @param files
+	 * @return the bitmaps in the order of files
+	 */
+	public CompletableFuture<List<IntBitmap>> loadBitmapsAsync(List<URL> files) {
+		final int first = reserveBitmaps(files.size());
+		final List<CompletableFuture<IBitmap<Integer>>> loads =
+				new ArrayList<CompletableFuture<IBitmap<Integer>>>(files.size());
+		
+		for (int i = 0; i < files.size(); ++i) {
+			loads.add(loadBitmapAsync(first + i, files.get(i)));
+		}
+		
+		return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[loads.size()]))
+				.thenApply(new Function<Void, List<IntBitmap>>() {
+					@Override
+					public List<IntBitmap> apply(Void done) {
+						final List<IntBitmap> bitmaps = new ArrayList<IntBitmap>(loads.size());
+						
+						for (CompletableFuture<IBitmap<Integer>> load : loads) {
+							bitmaps.add((IntBitmap) load.join());
+						}
+						
+						return bitmaps;
+					}
+				});
+	}
+	
+	/**
+	 * loadBitmapsAsync() and waits for all bitmaps
+	 * 
+	 * @param files
+	 * @return the bitmaps in the order of files
+	 */
+	public List<IntBitmap> loadBitmaps(List<URL> files) {
+		return loadBitmapsAsync(files).join();
+	}
+	
+	/*
+	 * Appends count empty slots to the bitmaps, returns the index of the first
+	 */
+	private synchronized int reserveBitmaps(int count) {
+		final int first = m_bitmaps.size();
+		
+		m_bitmaps.setSize(first + count);
+		m_handles.setSize(first + count);
+		m_loading.set(first, first + count);
+		return first;
+	}
+	
+	private IntBitmap acquireBitmap(int index, URL file) {
+		TextureCache.Handle handle = null;
+		IntBitmap bitmap;
+		
 		try {
-			BufferedImage img = ImageIO.read(file);
-
-			int w = img.getWidth();
-			int h = img.getHeight();
-
-			FastIntBitmap loaded = new FastIntBitmap(w, h);
-			
-			img.getRGB(0, 0, w, h, loaded.m_pixels, 0, w);
+			handle = m_textureCache.acquire(file);
+			bitmap = handle.getBitmap();
+		} catch(Exception e) {
+			System.out.println("FILE LOAD FAILED: " + file);
+			bitmap = createMissingTexture();
+		}
+		
+		synchronized (this) {
+			if (m_loading.get(index)) {
+				m_loading.clear(index);
+				m_handles.set(index, handle);
+				m_bitmaps.set(index, bitmap);
+				return bitmap;
+			}
+		}
+		
+		// released while loading, the index stays empty
+		if (handle != null) {
+			handle.close();
+		}
+		
+		return bitmap;
+	}
+	
+	/**
+	 * Releases the bitmap at index, getBitmap(index) returns null afterwards.
+	 * Bitmaps loaded from files stay in the texture cache until it needs
+	 * the memory, loading them again is cheap until then. A bitmap still
+	 * being loaded is released as soon as it is loaded.
+	 * 
+	 * @param index
+	 */
+	public synchronized void releaseBitmap(int index) {
+		final TextureCache.Handle handle = m_handles.get(index);
+		
+		m_loading.clear(index);
+		m_bitmaps.set(index, null);
+		m_handles.set(index, null);
+		
+		if (handle != null) {
+			handle.close();
+		}
+	}
+	
+	/**
+	 * Returns the cache the bitmaps loaded from files are kept in, to set
+	 * its budget or read its statistics
+	 * 
+	 * @return
+	 */
+	public TextureCache getTextureCache() {
+		return m_textureCache;
+	}
+	
+	/**
+	 * Decodes a bitmap without adding it to the resource manager. Power of 2
+	 * sized images are returned as PowerOf2IntBitmap.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 *             if the file cannot be read or decoded
+	 */
+	public FastIntBitmap readBitmap(URL file) throws IOException {
+		final byte data[] = readFully(file);
+		
+		// in memory, ImageIO would buffer streams in a temporary file
+		final BufferedImage img = ImageIO.read(new MemoryCacheImageInputStream(new ByteArrayInputStream(data)));
+		
+		if (img == null) {
+			throw new IOException("No image reader for " + file);
+		}
+		
+		final FastIntBitmap result = toBitmap(img);
+		
+		if (m_mipMapCache != null) {
+			m_sourceKeys.put(result, MipMapCache.hash(data));
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * Converts a row major image to a column major bitmap. The image is
+	 * converted in strips of rows, which are transposed while they are in
+	 * the cache.
+	 */
+	private static FastIntBitmap toBitmap(BufferedImage img) {
+		final int w = img.getWidth();
+		final int h = img.getHeight();
+		
+		final FastIntBitmap result = (isPowerOf2(w) && isPowerOf2(h))
+				? new PowerOf2IntBitmap(w, h) : new FastIntBitmap(w, h);
+		final int pixels[] = result.m_pixels;
+		
+		final int strip[] = new int[w * Math.min(h, TRANSPOSE_ROWS)];
+		
+		for (int y0 = 0; y0 < h; y0 += TRANSPOSE_ROWS) {
+			final int rows = Math.min(TRANSPOSE_ROWS, h - y0);
 			
-			FastIntBitmap result;
+			getRows(img, y0, rows, strip);
 			
-			if (isPowerOf2(loaded.getWidth()) && isPowerOf2(loaded.getHeight())) {
-				result = new PowerOf2IntBitmap(h, w);
-			} else {
-				result = new FastIntBitmap(h, w);
+			for (int x = 0; x < w; ++x) {
+				final int column = x * h + y0;
+				
+				for (int y = 0; y < rows; ++y) {
+					pixels[column + y] = strip[y * w + x];
+				}
 			}
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * Reads rows of img as ARGB into dest, directly from the raster for the
+	 * types ImageIO decodes to most often, instead of through the
+	 * ColorModel pixel by pixel.
+	 */
+	private static void getRows(BufferedImage img, int y0, int rows, int dest[]) {
+		final int w = img.getWidth();
+		final int type = img.getType();
+		
+		final WritableRaster raster = img.getRaster();
+		final DataBuffer buffer = raster.getDataBuffer();
+		final SampleModel model = raster.getSampleModel();
+		
+		final boolean untranslated = raster.getSampleModelTranslateX() == 0
+				&& raster.getSampleModelTranslateY() == 0;
+		
+		if (untranslated && (type == BufferedImage.TYPE_4BYTE_ABGR || type == BufferedImage.TYPE_3BYTE_BGR)
+				&& buffer instanceof DataBufferByte && model instanceof ComponentSampleModel) {
+			final ComponentSampleModel components = (ComponentSampleModel) model;
+			final byte data[] = ((DataBufferByte) buffer).getData();
+			
+			final int pixelStride = components.getPixelStride();
+			final int scanlineStride = components.getScanlineStride();
+			final int offsets[] = components.getBandOffsets();
 			
-			for (int i = 0; i < w * h; ++i){
-				Tuple<Integer, Integer> p = result.indexToPoint(i);
-				result.m_pixels[i] = loaded.getPixel((int)p.getB(), (int)p.getA());
+			final int r = offsets[0];
+			final int g = offsets[1];
+			final int b = offsets[2];
+			final boolean hasAlpha = offsets.length > 3;
+			final int a = hasAlpha ? offsets[3] : 0;
+			
+			for (int y = 0; y < rows; ++y) {
+				int src = buffer.getOffset() + (y0 + y) * scanlineStride;
+				final int row = y * w;
+				
+				for (int x = 0; x < w; ++x, src += pixelStride) {
+					final int alpha = hasAlpha ? (data[src + a] & 0xff) << 24 : 0xff000000;
+					
+					dest[row + x] = alpha | (data[src + r] & 0xff) << 16 | (data[src + g] & 0xff) << 8
+							| (data[src + b] & 0xff);
+				}
 			}
-			//switch vertical and horizontal
-			m_bitmaps.add(result);
+		} else if (untranslated && (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+				&& buffer instanceof DataBufferInt && model instanceof SinglePixelPackedSampleModel) {
+			final int data[] = ((DataBufferInt) buffer).getData();
+			final int scanlineStride = ((SinglePixelPackedSampleModel) model).getScanlineStride();
+			final int alpha = (type == BufferedImage.TYPE_INT_RGB) ? 0xff000000 : 0;
 			
-			return result;
-		} catch(Exception e) {
-			System.out.println("FILE LOAD FAILED");
+			for (int y = 0; y < rows; ++y) {
+				final int src = buffer.getOffset() + (y0 + y) * scanlineStride;
+				final int row = y * w;
+				
+				for (int x = 0; x < w; ++x) {
+					dest[row + x] = data[src + x] | alpha;
+				}
+			}
+		} else {
+			img.getRGB(0, y0, w, rows, dest, 0, w);
 		}
+	}
+	
+	private static FastIntBitmap createMissingTexture() {
 		FastIntBitmap result = new FastIntBitmap(16, 16);
 		int[][] TextureNotFound = {
 			{0, 0, 0, 0, 0, 0, 0, 0,  1, 1, 1, 1, 1, 1, 1, 1},
@@ -84,13 +386,12 @@ public class ResourceManager implements IResourceManager {
 				else result.putPixel(x, y, Color.BLACK.getRGB());
 			}
 		}
-		m_bitmaps.add(result);
 
 		return result;
 	}
 
 	@Override
-	public IBitmap<Integer> loadBitmap(String filename) {
+	public IntBitmap loadBitmap(String filename) {
 		URL file = null;
 		try {
 			file = new URL(filename);
@@ -100,46 +401,155 @@ public class ResourceManager implements IResourceManager {
 		return loadBitmap(file);
 	}
 	
-	private boolean isPowerOf2(int x) {
+	private static byte[] readFully(URL file) throws IOException {
+		try (InputStream in = file.openStream()) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+			final byte buffer[] = new byte[1 << 16];
+			
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
+			}
+			
+			return out.toByteArray();
+		}
+	}
+	
+	private static boolean isPowerOf2(int x) {
 		return (x & (x - 1)) == 0;
 	}
 	
-	public IBitmap<Integer> createTexture(IBitmap<Integer> bitmap) {
-
-		IBitmap<Integer> texture = bitmap;
+	/**
+	 * Returns a mip mapped texture of square power of 2 bitmaps, other
+	 * bitmaps are returned as they are. The texture of a bitmap loaded from a
+	 * file is built once and kept in the texture cache with the bitmap, its
+	 * mip levels count into the budget of the cache.
+	 * 
+	 * @param bitmap
+	 * @return
+	 */
+	public IntBitmap createTexture(IntBitmap bitmap) {
+		final TextureCache.Handle handle = findHandle(bitmap);
+		
+		if (handle != null) {
+			try {
+				return handle.getTexture(m_textureBuilder);
+			} catch (IllegalStateException e) {
+				// released meanwhile
+			}
+		}
+		
+		return buildTexture(bitmap);
+	}
+	
+	/*
+	 * Returns the open handle of bitmap, null if it has not been loaded from a
+	 * file or has been released
+	 */
+	private synchronized TextureCache.Handle findHandle(IntBitmap bitmap) {
+		for (int i = 0; i < m_handles.size(); ++i) {
+			final TextureCache.Handle handle = m_handles.get(i);
+			
+			if (handle != null && m_bitmaps.get(i) == bitmap) {
+				return handle;
+			}
+		}
+		
+		return null;
+	}
+	
+	private IntBitmap buildTexture(IntBitmap bitmap) {
+		IntBitmap texture = bitmap;
 		if (bitmap.getHeight() == bitmap.getWidth() && bitmap instanceof PowerOf2IntBitmap) {
-			texture = createMitMap((PowerOf2IntBitmap) bitmap);
+			texture = new PowerOf2IntMipMap(createMipLevels((PowerOf2IntBitmap) bitmap));
 		} 
 		
 		return texture;
 	}
-
-	private IBitmap<Integer> createMitMap(PowerOf2IntBitmap bitmap) {
-		int exp = (int) (Math.log(bitmap.getHeight())/ Math.log(2));
+	
+	/**
+	 * createTexture() for many bitmaps at once, spread over the common
+	 * ForkJoinPool.
+	 * 
+	 * @param bitmaps
+	 * @return the textures in the order of bitmaps
+	 */
+	public List<IntBitmap> createTextures(List<? extends IntBitmap> bitmaps) {
+		final List<ForkJoinTask<IntBitmap>> tasks = new ArrayList<ForkJoinTask<IntBitmap>>(bitmaps.size());
 		
-		PowerOf2IntBitmap[] bitmaps = new PowerOf2IntBitmap[exp];
+		for (final IntBitmap bitmap : bitmaps) {
+			tasks.add(ForkJoinPool.commonPool().submit(new Callable<IntBitmap>() {
+				@Override
+				public IntBitmap call() {
+					return createTexture(bitmap);
+				}
+			}));
+		}
 		
-		bitmaps[0] = bitmap;
+		final List<IntBitmap> textures = new ArrayList<IntBitmap>(tasks.size());
 		
-		for (int i = 1; i < exp; ++i) {
-			bitmaps[i] = resizeSquaredBitmap(bitmap, 1 << exp-i);
+		for (ForkJoinTask<IntBitmap> task : tasks) {
+			textures.add(task.join());
 		}
 		
-		return new PowerOf2IntMipMap(bitmaps);
+		return textures;
 	}
 
-	private PowerOf2IntBitmap resizeSquaredBitmap(PowerOf2IntBitmap bitmap, int size) {
-		PowerOf2IntBitmap resized = new PowerOf2IntBitmap(size, size);
-		
-		for (int x = 0; x < resized.getWidth(); ++x) {
-			int srcX = (int) ((float)x / (float) size * (float)bitmap.getWidth());
-			for (int y = 0; y < resized.getHeight(); ++y) {
-				int srcY = (int) ((float)y / (float) size * (float)bitmap.getHeight());
-				resized.putPixel(x, y, bitmap.getPixel(srcX, srcY));
+	private PowerOf2IntBitmap[] createMipLevels(PowerOf2IntBitmap bitmap) {
+		final MipMapCache cache = m_mipMapCache;
+		final boolean gammaCorrect = m_gammaCorrectMipMaps;
+		final String key = (cache != null) ? m_sourceKeys.get(bitmap) : null;
+		
+		PowerOf2IntBitmap[] levels = null;
+		
+		if (key != null) {
+			try {
+				levels = cache.load(key, bitmap, gammaCorrect);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			
+			if (levels != null) {
+				return levels;
+			}
+		}
+		
+		levels = MipMapBuilder.build(bitmap, gammaCorrect);
+		
+		if (key != null) {
+			try {
+				cache.store(key, levels, gammaCorrect);
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
 		}
 		
-		return resized;
+		return levels;
+	}
+	
+	/**
+	 * Keeps generated mip maps in a directory, so they are only generated
+	 * again if their source file changes. Only bitmaps loaded after setting
+	 * the cache are cached.
+	 * 
+	 * @param cache
+	 *            null to disable caching
+	 */
+	public void setMipMapCache(MipMapCache cache) {
+		m_mipMapCache = cache;
+	}
+	
+	/**
+	 * Filter mip maps in linear light instead of on the stored sRGB values.
+	 * Off by default.
+	 * 
+	 * @param gammaCorrect
+	 */
+	public void setGammaCorrectMipMaps(boolean gammaCorrect) {
+		if (m_gammaCorrectMipMaps != gammaCorrect) {
+			m_gammaCorrectMipMaps = gammaCorrect;
+			m_textureCache.clearTextures();
+		}
 	}
 
 	public static ResourceManager getInstance() {
@@ -149,9 +559,73 @@ public class ResourceManager implements IResourceManager {
 		return m_instance;
 	}
 	
-	public IBitmap<Integer> getBitmap(int index){
+	/**
+	 * Adds an already created bitmap, for example a generated one
+	 * 
+	 * @param bitmap
+	 * @return index to get it with getBitmap(int)
+	 */
+	public synchronized int addBitmap(IntBitmap bitmap) {
+		m_bitmaps.add(bitmap);
+		m_handles.add(null);
+		return m_bitmaps.size() - 1;
+	}
+	
+	/**
+	 * Packs all bitmaps with their mip maps into a TextureAtlas, the id of
+	 * each texture is its index for getBitmap(int). Bitmaps added later are
+	 * not in the atlas, build it again after adding them. Released bitmaps
+	 * are replaced by the placeholder texture.
+	 * 
+	 * @return
+	 */
+	public TextureAtlas buildTextureAtlas() {
+		final List<IntBitmap> bitmaps = new ArrayList<IntBitmap>(m_bitmaps);
+		final IntBitmap missing = createMissingTexture();
+		
+		for (int i = 0; i < bitmaps.size(); ++i) {
+			if (bitmaps.get(i) == null) {
+				bitmaps.set(i, missing);
+			}
+		}
+		
+		final List<IntBitmap> textures = createTextures(bitmaps);
+		
+		m_atlas = TextureAtlas.build(textures);
+		return m_atlas;
+	}
+	
+	/**
+	 * Returns the atlas of the last buildTextureAtlas(), or null
+	 * 
+	 * @return
+	 */
+	public TextureAtlas getTextureAtlas() {
+		return m_atlas;
+	}
+	
+	public IntBitmap getBitmap(int index){
 		if (index >= m_bitmaps.size()) return null;
 		return m_bitmaps.get(index);
 	}
 	
+	/**
+	 * Returns the index of bitmap for getBitmap(int), which is also its id
+	 * in the TextureAtlas of buildTextureAtlas()
+	 * 
+	 * @param bitmap
+	 * @return TextureAtlas.NO_TEXTURE if bitmap is null or not added
+	 */
+	public synchronized int indexOf(IntBitmap bitmap) {
+		if (bitmap != null) {
+			for (int i = 0; i < m_bitmaps.size(); ++i) {
+				if (m_bitmaps.get(i) == bitmap) {
+					return i;
+				}
+			}
+		}
+		
+		return TextureAtlas.NO_TEXTURE;
+	}
+	
 }
@@ -0,0 +1,398 @@
+package com.raycaster.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import com.raycaster.Bitmap.IntBitmap;
+import com.raycaster.Bitmap.PowerOf2IntMipMap;
+
+/**
+ * TextureCache
+ *
+ * Textures by source file, each file is loaded once no matter how often it
+ * is acquired. Every acquire() returns a Handle which has to be closed when
+ * the texture is no longer needed. Textures without open handles stay
+ * cached while the pixel data of all textures fits into the budget, beyond
+ * that the least recently used of them are dropped.
+ *
+ * Textures with open handles are never dropped, so the budget can be
+ * exceeded by them.
+ *
+ * The texture drawn from a bitmap, e.g. one with mip levels, is built once
+ * per cached bitmap by Handle.getTexture() and counts into the budget too.
+ */
+public class TextureCache {
+
+	/**
+	 * Loads the texture of a file, called without holding the cache lock.
+	 */
+	public interface ILoader {
+		public IntBitmap load(URL file) throws IOException;
+	}
+
+	/**
+	 * Builds the texture drawn from a loaded bitmap, called without holding
+	 * the cache lock.
+	 */
+	public interface ITextureBuilder {
+		public IntBitmap build(IntBitmap bitmap);
+	}
+
+	/**
+	 * A reference to a cached texture. Close it to release the texture.
+	 */
+	public static final class Handle implements Closeable {
+		private final TextureCache m_cache;
+		private final Entry m_entry;
+		private final AtomicBoolean m_closed = new AtomicBoolean();
+
+		private Handle(TextureCache cache, Entry entry) {
+			m_cache = cache;
+			m_entry = entry;
+		}
+
+		public final IntBitmap getBitmap() {
+			if (m_closed.get()) {
+				throw new IllegalStateException("Handle has been closed");
+			}
+
+			return m_entry.m_bitmap;
+		}
+
+		/**
+		 * Returns the texture builder builds from the bitmap. It is built once
+		 * and kept with the bitmap until clearTextures() or until the bitmap
+		 * is dropped.
+		 *
+		 * @param builder
+		 * @return
+		 */
+		public final IntBitmap getTexture(ITextureBuilder builder) {
+			return m_cache.texture(m_entry, getBitmap(), builder);
+		}
+
+		public final String getKey() {
+			return m_entry.m_key;
+		}
+
+		/**
+		 * Releases the texture. Can be called more than once.
+		 */
+		@Override
+		public void close() {
+			if (m_closed.compareAndSet(false, true)) {
+				m_cache.release(m_entry);
+			}
+		}
+	}
+
+	private static final class Entry {
+		private final String m_key;
+		private final CompletableFuture<IntBitmap> m_loaded = new CompletableFuture<IntBitmap>();
+
+		private IntBitmap m_bitmap;
+		private IntBitmap m_texture;
+		// of the bitmap and the texture
+		private long m_bytes;
+		private int m_references;
+
+		private Entry(String key) {
+			m_key = key;
+		}
+	}
+
+	public static final long DEFAULT_BUDGET = 256L << 20;
+
+	private final ILoader m_loader;
+
+	// in access order, the least recently used first
+	private final LinkedHashMap<String, Entry> m_entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+
+	private long m_budget;
+	private long m_bytes;
+
+	private long m_hits;
+	private long m_misses;
+	private long m_evictions;
+
+	public TextureCache(ILoader loader) {
+		this(loader, DEFAULT_BUDGET);
+	}
+
+	/**
+	 * @param loader
+	 * @param budget
+	 *            bytes of pixel data, mip levels included
+	 */
+	public TextureCache(ILoader loader, long budget) {
+		m_loader = loader;
+		m_budget = budget;
+	}
+
+	/**
+	 * Returns a handle to the texture of file, loading it if it is not
+	 * cached. If another thread is loading it already, waits for it.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 *             if the texture could not be loaded, it is not cached then
+	 */
+	public Handle acquire(URL file) throws IOException {
+		final String key = getKey(file);
+		final Entry entry;
+		final boolean load;
+
+		synchronized (this) {
+			final Entry cached = m_entries.get(key);
+
+			if (cached != null) {
+				entry = cached;
+				load = false;
+				++m_hits;
+			} else {
+				entry = new Entry(key);
+				load = true;
+				++m_misses;
+				m_entries.put(key, entry);
+			}
+
+			++entry.m_references;
+		}
+
+		if (load) {
+			load(entry, file);
+		}
+
+		try {
+			entry.m_loaded.join();
+		} catch (CompletionException e) {
+			throw new IOException("Could not load " + file, e.getCause());
+		}
+
+		return new Handle(this, entry);
+	}
+
+	/**
+	 * acquire() on the common ForkJoinPool
+	 *
+	 * @param file
+	 * @return
+	 */
+	public CompletableFuture<Handle> acquireAsync(final URL file) {
+		return CompletableFuture.supplyAsync(new Supplier<Handle>() {
+			@Override
+			public Handle get() {
+				try {
+					return acquire(file);
+				} catch (IOException e) {
+					throw new CompletionException(e);
+				}
+			}
+		}, ForkJoinPool.commonPool());
+	}
+
+	private final void load(Entry entry, URL file) {
+		final IntBitmap bitmap;
+
+		try {
+			bitmap = m_loader.load(file);
+		} catch (IOException | RuntimeException e) {
+			synchronized (this) {
+				m_entries.remove(entry.m_key);
+			}
+
+			entry.m_loaded.completeExceptionally(e);
+			return;
+		}
+
+		synchronized (this) {
+			entry.m_bitmap = bitmap;
+			entry.m_bytes = sizeOf(bitmap);
+			m_bytes += entry.m_bytes;
+
+			trim();
+		}
+
+		entry.m_loaded.complete(bitmap);
+	}
+
+	private final IntBitmap texture(Entry entry, IntBitmap bitmap, ITextureBuilder builder) {
+		synchronized (this) {
+			if (entry.m_texture != null) {
+				return entry.m_texture;
+			}
+		}
+
+		final IntBitmap texture = builder.build(bitmap);
+
+		synchronized (this) {
+			// another thread may have built it meanwhile
+			if (entry.m_texture == null) {
+				final long bytes = sizeOfTexture(texture, bitmap);
+
+				entry.m_texture = texture;
+				entry.m_bytes += bytes;
+				m_bytes += bytes;
+
+				trim();
+			}
+
+			return entry.m_texture;
+		}
+	}
+
+	/**
+	 * Drops the textures built by Handle.getTexture(), e.g. after the way
+	 * they are built has changed. The bitmaps stay cached.
+	 */
+	public synchronized void clearTextures() {
+		for (Entry entry : m_entries.values()) {
+			if (entry.m_texture != null) {
+				final long bytes = sizeOfTexture(entry.m_texture, entry.m_bitmap);
+
+				entry.m_texture = null;
+				entry.m_bytes -= bytes;
+				m_bytes -= bytes;
+			}
+		}
+	}
+
+	private final synchronized void release(Entry entry) {
+		if (--entry.m_references == 0 && m_bytes > m_budget) {
+			trim();
+		}
+	}
+
+	/*
+	 * Drops unreferenced textures, least recently used first, until the
+	 * budget is met
+	 */
+	private final void trim() {
+		final Iterator<Entry> iterator = m_entries.values().iterator();
+
+		while (m_bytes > m_budget && iterator.hasNext()) {
+			final Entry entry = iterator.next();
+
+			if (entry.m_references == 0 && entry.m_bitmap != null) {
+				iterator.remove();
+				m_bytes -= entry.m_bytes;
+				++m_evictions;
+			}
+		}
+	}
+
+	/**
+	 * Returns the key of file, the canonical path for files, so different
+	 * URLs of one file share a texture
+	 *
+	 * @param file
+	 * @return
+	 */
+	public static String getKey(URL file) {
+		try {
+			if ("file".equals(file.getProtocol())) {
+				return new File(file.toURI()).getCanonicalPath();
+			}
+
+			return file.toURI().normalize().toString();
+		} catch (URISyntaxException | IOException | IllegalArgumentException e) {
+			return file.toExternalForm();
+		}
+	}
+
+	/**
+	 * Returns the bytes of pixel data of bitmap, with all mip levels
+	 *
+	 * @param bitmap
+	 * @return
+	 */
+	public static long sizeOf(IntBitmap bitmap) {
+		if (bitmap instanceof PowerOf2IntMipMap) {
+			final PowerOf2IntMipMap mipMap = (PowerOf2IntMipMap) bitmap;
+			long size = 0;
+
+			for (int l = 0; l < mipMap.getNumMips(); ++l) {
+				size += sizeOf(mipMap.getMipImage(l));
+			}
+
+			return size;
+		}
+
+		return 4L * bitmap.getWidth() * bitmap.getHeight();
+	}
+
+	/*
+	 * Bytes of texture which are not shared with bitmap, the first mip level
+	 * usually is the bitmap itself
+	 */
+	private static long sizeOfTexture(IntBitmap texture, IntBitmap bitmap) {
+		if (texture == bitmap) {
+			return 0;
+		}
+
+		long size = sizeOf(texture);
+
+		if (texture instanceof PowerOf2IntMipMap && ((PowerOf2IntMipMap) texture).getMipImage(0) == bitmap) {
+			size -= sizeOf(bitmap);
+		}
+
+		return size;
+	}
+
+	/**
+	 * Sets the budget, dropping unreferenced textures if it is exceeded
+	 *
+	 * @param budget
+	 *            bytes of pixel data, mip levels included
+	 */
+	public synchronized void setBudget(long budget) {
+		m_budget = budget;
+		trim();
+	}
+
+	public final synchronized long getBudget() {
+		return m_budget;
+	}
+
+	/**
+	 * Returns the bytes of pixel data of all cached textures
+	 *
+	 * @return
+	 */
+	public final synchronized long getMemoryUsage() {
+		return m_bytes;
+	}
+
+	public final synchronized int getTextureCount() {
+		return m_entries.size();
+	}
+
+	/**
+	 * Returns the number of acquire() calls which found the texture cached
+	 * or being loaded
+	 *
+	 * @return
+	 */
+	public final synchronized long getHitCount() {
+		return m_hits;
+	}
+
+	public final synchronized long getMissCount() {
+		return m_misses;
+	}
+
+	public final synchronized long getEvictionCount() {
+		return m_evictions;
+	}
+}
@@ -0,0 +1,127 @@
+package com.raycaster.IO;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.raycaster.TestWorlds;
+import com.raycaster.Entities.Player;
+import com.raycaster.Renderer.EpicRayRenderer;
+import com.raycaster.Tile.ITile;
+import com.raycaster.Tile.TileMap;
+import com.raycaster.Tile.World;
+
+/**
+ * Saving a large world with AsyncSaver must not stall the frames rendered
+ * meanwhile: taking the snapshot copies nothing and the tiles changed while
+ * it is written only copy their region.
+ */
+public class AsyncSaverFrameTimeTest {
+
+	private static final int MAP_SIZE = 2048;
+	private static final int EDITS_PER_FRAME = 50;
+
+	private static final int WARM_FRAMES = 200;
+	private static final int BASELINE_FRAMES = 100;
+
+	// the save thread shares the CPU with the frames, so they may take some
+	// times as long as without a save. A frame waiting for the save would
+	// take seconds.
+	private static final int MAX_SLOWDOWN = 4;
+	private static final long SLACK_NANOS = 50000000L;
+
+	@Rule
+	public final TemporaryFolder m_folder = new TemporaryFolder();
+
+	private final Random m_random = new Random(15);
+
+	private World m_world;
+	private TileMap m_map;
+	private ITile m_edits[];
+	private EpicRayRenderer m_renderer;
+	private AsyncSaver m_saver;
+
+	@Before
+	public void setUp() {
+		m_world = TestWorlds.autoGenerated(MAP_SIZE);
+		m_map = (TileMap) m_world.getTileMap();
+		m_edits = new ITile[] { m_map.getTileAt(0, 0), m_map.getTileAt(1, 1) };
+
+		final Player camera = new Player(TestWorlds.freeX(m_map), MAP_SIZE >> 1, 1, 1, null, m_world);
+
+		m_renderer = new EpicRayRenderer(m_world, camera, 320, 240, 0, 0);
+		m_saver = new AsyncSaver();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		m_saver.close();
+		m_renderer.close();
+	}
+
+	@Test
+	public void framesDoNotStallWhileSaving() throws Exception {
+		for (int i = 0; i < WARM_FRAMES; ++i) {
+			frame();
+		}
+
+		long baseline = 0;
+
+		for (int i = 0; i < BASELINE_FRAMES; ++i) {
+			baseline = Math.max(baseline, frame());
+		}
+
+		final File file = m_folder.newFile("world.sav");
+		final Exception failure[] = new Exception[1];
+
+		final long start = System.nanoTime();
+
+		assertTrue(m_saver.save(m_world, file, new AsyncSaver.ISaveCallback() {
+			@Override
+			public void onSaved(File file, long nanos) {
+			}
+
+			@Override
+			public void onFailed(File file, Exception error) {
+				failure[0] = error;
+			}
+		}));
+
+		long saving = frame() + (System.nanoTime() - start);
+		int frames = 1;
+
+		while (m_saver.getPendingCount() > 0) {
+			saving = Math.max(saving, frame());
+			++frames;
+		}
+
+		assertNull("save failed", failure[0]);
+		assertTrue("the save finished within " + frames + " frames", frames > 1);
+		assertTrue("longest frame while saving took " + saving / 1000 + " us, without " + baseline / 1000
+				+ " us", saving <= baseline * MAX_SLOWDOWN + SLACK_NANOS);
+	}
+
+	/*
+	 * Changes some tiles and renders, returns the nanoseconds taken
+	 */
+	private long frame() {
+		final long start = System.nanoTime();
+
+		for (int i = 0; i < EDITS_PER_FRAME; ++i) {
+			m_map.setTileAt(1 + m_random.nextInt(MAP_SIZE - 2), 1 + m_random.nextInt(MAP_SIZE - 2),
+					m_edits[i & 1]);
+		}
+
+		m_renderer.render();
+
+		return System.nanoTime() - start;
+	}
+}
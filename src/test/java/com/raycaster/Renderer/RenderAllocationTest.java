@@ -0,0 +1,105 @@
+package com.raycaster.Renderer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.raycaster.TestWorlds;
+import com.raycaster.Entities.Player;
+import com.raycaster.Entities.Sprite;
+import com.raycaster.Entities.StaticEntity;
+import com.raycaster.Tile.World;
+
+/**
+ * Rendering a frame once the renderer is warm must not allocate, the rays,
+ * cursors and sprite lists are reused from frame to frame. Their buffers
+ * only grow when a view needs more than any view before, so the frames
+ * measured look in the same directions as the warm up frames.
+ */
+public class RenderAllocationTest {
+
+	private static final int DIRECTIONS = 64;
+	private static final int WARM_TURNS = 3;
+
+	private com.sun.management.ThreadMXBean m_threads;
+
+	private World m_world;
+	private Camera m_camera;
+	private EpicRayRenderer m_renderer;
+
+	@Before
+	public void setUp() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+
+		m_threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(m_threads.isThreadAllocatedMemorySupported());
+		m_threads.setThreadAllocatedMemoryEnabled(true);
+
+		m_world = TestWorlds.autoGenerated(64);
+		m_camera = new Camera(m_world);
+
+		// sprites around the camera, so the sprite pass has work too
+		for (int i = 0; i < 16; ++i) {
+			final int x = 26 + (i % 4) * 4;
+			final int y = 26 + (i / 4) * 4;
+
+			if (!m_world.getTileMap().getTileAt(x, y).isSolid()) {
+				new StaticEntity(x, y, 32, 32, new Sprite(0, 0, 32, 32, TestWorlds.texture(32, 0x00ff00)),
+						m_world);
+			}
+		}
+
+		// single threaded, so all work happens on the measured thread
+		m_renderer = new EpicRayRenderer(m_world, m_camera, 640, 480, 0, 0);
+	}
+
+	@After
+	public void tearDown() {
+		if (m_renderer != null) {
+			m_renderer.close();
+		}
+	}
+
+	@Test
+	public void warmFramesDoNotAllocate() {
+		for (int i = 0; i < WARM_TURNS * DIRECTIONS; ++i) {
+			m_camera.look(i);
+			m_renderer.render();
+		}
+
+		final long thread = Thread.currentThread().getId();
+		long allocated = 0;
+
+		for (int i = 0; i < DIRECTIONS; ++i) {
+			m_camera.look(i);
+
+			final long before = m_threads.getThreadAllocatedBytes(thread);
+			m_renderer.render();
+			allocated += m_threads.getThreadAllocatedBytes(thread) - before;
+		}
+
+		assertEquals("bytes allocated by " + DIRECTIONS + " warm frames", 0, allocated);
+	}
+
+	/*
+	 * A player which looks in one of DIRECTIONS directions, each time in
+	 * exactly the same one
+	 */
+	private static final class Camera extends Player {
+		Camera(World world) {
+			super(TestWorlds.freeX(world.getTileMap()), world.getTileMap().getHeight() >> 1, 1, 1, null, world);
+		}
+
+		void look(int direction) {
+			final double angle = direction * 2 * Math.PI / DIRECTIONS;
+
+			m_dirX = (float) Math.cos(angle);
+			m_dirY = (float) Math.sin(angle);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.raycaster;
+
+import com.raycaster.Bitmap.PowerOf2IntBitmap;
+import com.raycaster.Tile.ITileMap;
+import com.raycaster.Tile.TileMap;
+import com.raycaster.Tile.World;
+import com.raycaster.utils.ResourceManager;
+
+/**
+ * Shared setup of the renderer tests: a textured map and a free spot on it.
+ */
+public final class TestWorlds {
+
+	private static boolean s_texturesAdded = false;
+
+	private TestWorlds() {
+	}
+
+	/**
+	 * A size x size map of TileMap.autoGenerate(), with textures added to
+	 * the ResourceManager for it on the first call
+	 *
+	 * @param size
+	 * @return
+	 */
+	public static synchronized World autoGenerated(final int size) {
+		if (!s_texturesAdded) {
+			final ResourceManager rm = ResourceManager.getInstance();
+
+			rm.addBitmap(texture(256, 0x8b4513));
+			rm.addBitmap(texture(256, 0x404040));
+			rm.addBitmap(texture(256, 0x228b22));
+
+			s_texturesAdded = true;
+		}
+
+		final TileMap map = new TileMap(size, size, true);
+		map.autoGenerate();
+
+		return new World(map);
+	}
+
+	/**
+	 * A texture of a single color, what it shows does not matter to the tests
+	 *
+	 * @param size
+	 *            power of 2
+	 * @param rgb
+	 * @return
+	 */
+	public static PowerOf2IntBitmap texture(final int size, final int rgb) {
+		final PowerOf2IntBitmap bmp = new PowerOf2IntBitmap(size, size);
+
+		for (int x = 0; x < size; ++x) {
+			for (int y = 0; y < size; ++y) {
+				bmp.putPixel(x, y, rgb);
+			}
+		}
+
+		return bmp;
+	}
+
+	/**
+	 * Returns x of the first tile in the middle row, from the middle on,
+	 * which a camera can stand on
+	 *
+	 * @param map
+	 * @return
+	 */
+	public static int freeX(final ITileMap map) {
+		int x = map.getWidth() >> 1;
+		final int y = map.getHeight() >> 1;
+
+		while (map.getTileAt(x, y).isSolid()) {
+			++x;
+		}
+
+		return x;
+	}
+}